@@ -11,6 +11,9 @@ import com.ehs.elearning.repository.ModuleComponentRepository;
 import com.ehs.elearning.repository.QuestionRepository;
 import com.ehs.elearning.repository.UserRepository;
 import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.service.ActivityHistoryService;
+import com.ehs.elearning.service.KeysetCursor;
+import com.ehs.elearning.service.KeysetPage;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +31,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class AssessmentController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ModuleComponentRepository componentRepository;
     
@@ -40,6 +45,39 @@ public class AssessmentController {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private ActivityHistoryService activityHistoryService;
+    
+    // Page through submitted answers, newest first; learners only see their own
+    @GetMapping("/answers")
+    public ResponseEntity<?> getAnswers(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) UUID questionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        
+        if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
+            if (userId != null && !userId.equals(userDetails.getId())) {
+                return ResponseEntity.status(403).body(new MessageResponse("Not authorized to access this user's answers"));
+            }
+            userId = userDetails.getId();
+        }
+        
+        try {
+            KeysetPage<Map<String, Object>> answers = activityHistoryService.findAnswers(userId, questionId,
+                    KeysetCursor.decode(cursor), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+            
+            return PagingHeaders.forCursorPage(answers,
+                            withTotal ? activityHistoryService.estimateAnswerTotal(userId, questionId) : null)
+                    .body(answers.getContent());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+    
     // Get questions for a component
     @GetMapping("/components/{id}/questions")
     public ResponseEntity<?> getQuestions(@PathVariable UUID id) {
@@ -1,10 +1,14 @@
 package com.ehs.elearning.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -21,11 +25,19 @@ import com.ehs.elearning.payload.request.RegisterRequest;
 import com.ehs.elearning.payload.response.JwtResponse;
 import com.ehs.elearning.payload.response.MessageResponse;
 import com.ehs.elearning.repository.UserRepository;
+import com.ehs.elearning.security.JwtClaims;
 import com.ehs.elearning.security.JwtTokenProvider;
+import com.ehs.elearning.security.PasswordHashingService;
+import com.ehs.elearning.security.TokenRevocationList;
 import com.ehs.elearning.security.UserDetailsImpl;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping(value = "/api/auth", produces = "application/json")
@@ -38,29 +50,63 @@ public class AuthController {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    @Autowired
+    private PasswordHashingService passwordHashingService;
 
+    // BCrypt runs on the password hashing pool; the request thread is released while it waits
     @PostMapping(path = "/login", produces = "application/json")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
-        );
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        CompletableFuture<Authentication> authenticationFuture;
+        try {
+            authenticationFuture = passwordHashingService.submit(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
+            ));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(loginOverloaded());
+        }
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtTokenProvider.generateToken(authentication);
+        return authenticationFuture.<ResponseEntity<?>>thenApply(authentication -> {
+            String jwt = jwtTokenProvider.generateToken(authentication);
 
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-        String role = userDetails.getAuthorities().stream()
-                .findFirst()
-                .map(item -> item.getAuthority().replace("ROLE_", ""))
-                .orElse("");
+            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+            String role = userDetails.getAuthorities().stream()
+                    .findFirst()
+                    .map(item -> item.getAuthority().replace("ROLE_", ""))
+                    .orElse("");
 
-        return ResponseEntity.ok(new JwtResponse(
-            jwt,
-            userDetails.getId(),
-            userDetails.getUsername(),
-            userDetails.getEmail(),
-            role
-        ));
+            return ResponseEntity.ok(new JwtResponse(
+                jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getEmail(),
+                role
+            ));
+        }).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof AuthenticationException) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Unauthorized"));
+            }
+            if (cause instanceof RejectedExecutionException) {
+                return loginOverloaded();
+            }
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(cause);
+        });
+    }
+    
+    // Queue depth, wait times and rejections of the password hashing pool (admin only)
+    @GetMapping("/login/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getLoginStats() {
+        return ResponseEntity.ok(passwordHashingService.getStats());
+    }
+
+    private ResponseEntity<?> loginOverloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "2")
+            .body(new MessageResponse("Error: Too many sign-in attempts right now, please try again"));
     }
 
     @PostMapping("/register")
@@ -121,4 +167,17 @@ public class AuthController {
             role
         ));
     }
-}
\ No newline at end of file
+    
+    // Revoke the token this request was made with
+    @PostMapping("/logout")
+    public ResponseEntity<?> logoutUser(HttpServletRequest request) {
+        JwtClaims claims = (JwtClaims) request.getAttribute("jwtClaims");
+        if (claims == null) {
+            return ResponseEntity.status(401).body(new MessageResponse("Not signed in"));
+        }
+        
+        tokenRevocationList.revokeToken(claims);
+        SecurityContextHolder.clearContext();
+        return ResponseEntity.ok(new MessageResponse("Signed out successfully"));
+    }
+}
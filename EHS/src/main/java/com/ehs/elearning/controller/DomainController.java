@@ -3,19 +3,27 @@ package com.ehs.elearning.controller;
 import com.ehs.elearning.model.Domain;
 import com.ehs.elearning.model.Users;
 import com.ehs.elearning.payload.response.MessageResponse;
+import com.ehs.elearning.payload.response.UserSummaryResponse;
 import com.ehs.elearning.repository.DomainRepository;
 import com.ehs.elearning.repository.UserRepository;
 import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.service.CatalogChangedEvent;
+import com.ehs.elearning.service.DomainService;
+import com.ehs.elearning.service.UserSearchService;
 
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,9 +36,17 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/domains")
 public class DomainController {
     
+    private static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private DomainRepository domainRepository;
     
+    @Autowired
+    private DomainService domainService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Autowired
     private UserRepository userRepository;
 
@@ -88,6 +104,7 @@ public class DomainController {
         }
 
         Domain newDomain = domainRepository.save(domain);
+        eventPublisher.publishEvent(CatalogChangedEvent.domain(newDomain.getId()));
         return ResponseEntity.ok(newDomain);
     }
 
@@ -100,6 +117,7 @@ public class DomainController {
                     domain.setName(domainDetails.getName());
                     domain.setDescription(domainDetails.getDescription());
                     Domain updatedDomain = domainRepository.save(domain);
+                    eventPublisher.publishEvent(CatalogChangedEvent.domain(id));
                     return ResponseEntity.ok(updatedDomain);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -112,12 +130,13 @@ public class DomainController {
         return domainRepository.findById(id)
                 .map(domain -> {
                     // Check if domain is assigned to any users
-                    if (!domain.getUsers().isEmpty()) {
+                    if (domainService.countUsersForDomain(id) > 0) {
                         return ResponseEntity.badRequest()
                                 .body(new MessageResponse("Cannot delete domain assigned to users"));
                     }
                     
                     domainRepository.delete(domain);
+                    eventPublisher.publishEvent(CatalogChangedEvent.domain(id));
                     return ResponseEntity.ok(new MessageResponse("Domain deleted successfully!"));
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -130,16 +149,37 @@ public class DomainController {
         return ResponseEntity.ok(matchingDomains);
     }
     
-    // Get users assigned to a domain (admin only)
+    // Get users assigned to a domain, one page at a time (admin only)
     @GetMapping("/{id}/users")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> getDomainUsers(@PathVariable UUID id) {
-        return domainRepository.findById(id)
-                .map(domain -> {
-                    List<Users> users = new ArrayList<>(domain.getUsers());
-                    return ResponseEntity.ok(users);
-                })
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> getDomainUsers(@PathVariable UUID id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "username") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction) {
+        if (!UserSearchService.SORTABLE_PROPERTIES.contains(sortBy)) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Cannot sort by " + sortBy));
+        }
+        
+        Sort sort = "desc".equalsIgnoreCase(direction) ? Sort.by(sortBy).descending() : Sort.by(sortBy);
+        // Id as tie-breaker keeps pages stable when sort values repeat
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE),
+                sort.and(Sort.by("id")));
+        Page<UserSummaryResponse> users;
+        try {
+            users = domainService.getUsersForDomain(id, pageable);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return PagingHeaders.forSlice(users).body(users.getContent());
+    }
+    
+    // Number of users in each domain (admin only)
+    @GetMapping("/member-counts")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getMemberCounts() {
+        return ResponseEntity.ok(domainService.countUsersByDomain());
     }
     
     // Get domain details with enrollment statistics (admin only)
@@ -152,7 +192,7 @@ public class DomainController {
                     stats.put("id", domain.getId());
                     stats.put("name", domain.getName());
                     stats.put("description", domain.getDescription());
-                    stats.put("enrolledUsers", domain.getUsers().size());
+                    stats.put("enrolledUsers", domainService.countUsersForDomain(id));
                     
                     return ResponseEntity.ok(stats);
                 })
@@ -1,45 +1,87 @@
 package com.ehs.elearning.controller;
 
+import com.ehs.elearning.service.FileDeliveryService;
 import com.ehs.elearning.service.FileStorageService;
+import com.ehs.elearning.service.HotContentCache;
+import com.ehs.elearning.service.ImageDerivativeService;
+import com.ehs.elearning.service.StoredFileMetadataService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
 
 @RestController
 @RequestMapping("/api/files")
 public class FileController {
 
+    // Derivatives never change under their name, so clients may keep them without revalidating
+    private static final String IMMUTABLE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+    
+    @Autowired
+    private FileDeliveryService fileDeliveryService;
+    
+    @Autowired
+    private HotContentCache hotContentCache;
+    
+    @Autowired
+    private StoredFileMetadataService metadataService;
+    
     @Autowired
-    private FileStorageService fileStorageService;
+    private ImageDerivativeService imageDerivativeService;
     
+    /**
+     * Serve a stored file. For images, size (a width in pixels, or "thumbnail") selects the
+     * smallest generated variant that is at least that wide.
+     */
     @GetMapping("/{fileName:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String fileName) {
+    public ResponseEntity<?> serveFile(@PathVariable String fileName,
+                                       @RequestParam(value = "size", required = false) String size,
+                                       HttpServletRequest request, HttpServletResponse response) {
+        // Derived files are only served through negotiation
+        if (fileName.indexOf(FileStorageService.DERIVED_FILE_SEPARATOR) >= 0) {
+            return ResponseEntity.notFound().build();
+        }
+        
         try {
-            Path filePath = fileStorageService.getFilePath(fileName);
-            Resource resource = new UrlResource(filePath.toUri());
+            // Use the type detected at upload; older files fall back to their extension
+            StoredFileMetadataService.StoredFileMetadata metadata = metadataService.getMetadata(fileName);
+            String contentType = metadata.getContentType() != null
+                    ? metadata.getContentType()
+                    : determineContentType(fileName);
             
-            if (resource.exists() || resource.isReadable()) {
-                // Determine content type
-                String contentType = determineContentType(fileName);
-                
-                return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            String variantFileName = imageDerivativeService.resolveVariant(fileName, contentType, size);
+            if (variantFileName != null) {
+                return fileDeliveryService.deliver(variantFileName,
+                        imageDerivativeService.getVariantContentType(contentType),
+                        null, fileName, IMMUTABLE_CACHE_CONTROL, request, response);
             }
+            
+            // The delivery service writes the response itself (memory cache, sendfile, transferTo or proxy offload).
+            // No separate existence check, so hot files are served without touching storage.
+            return fileDeliveryService.deliver(fileName, contentType, metadata.getCompressedEncodings(), fileName,
+                    request, response);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
+            if (response.isCommitted()) {
+                // Part of the body is out; the status can no longer change
+                return ResponseEntity.status(response.getStatus()).build();
+            }
             return ResponseEntity.status(500).body(null);
         }
     }
     
+    // Hit, miss and eviction counters of the in-memory hot file cache
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(hotContentCache.getStats());
+    }
+    
     private String determineContentType(String fileName) {
         if (fileName.toLowerCase().endsWith(".mp4")) {
             return "video/mp4";
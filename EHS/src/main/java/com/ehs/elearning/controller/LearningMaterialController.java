@@ -1,15 +1,22 @@
 package com.ehs.elearning.controller;
 
 import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.model.MaterialUpload;
 import com.ehs.elearning.model.ModuleComponent;
 import com.ehs.elearning.model.ComponentType;
 import com.ehs.elearning.payload.request.LearningMaterialRequest;
 import com.ehs.elearning.payload.response.MessageResponse;
 import com.ehs.elearning.repository.LearningMaterialRepository;
 import com.ehs.elearning.repository.ModuleComponentRepository;
+import com.ehs.elearning.service.ChunkedUploadService;
+import com.ehs.elearning.service.FileDeliveryService;
 import com.ehs.elearning.service.FileStorageService;
+import com.ehs.elearning.service.LearningMaterialService;
+import com.ehs.elearning.service.PreviewRenderingService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,17 +29,15 @@ import com.ehs.elearning.repository.UserRepository;
 import com.ehs.elearning.security.UserDetailsImpl;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import java.nio.file.Path;
-import java.net.MalformedURLException;
 import java.util.Optional;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -43,6 +48,9 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class LearningMaterialController {
 
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
     @Autowired
     private LearningMaterialRepository materialRepository;
     
@@ -52,6 +60,18 @@ public class LearningMaterialController {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private FileDeliveryService fileDeliveryService;
+    
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+    
+    @Autowired
+    private LearningMaterialService materialService;
+    
+    @Autowired
+    private PreviewRenderingService previewRenderingService;
+    
     @Autowired
     private MaterialProgressRepository progressRepository;
 
@@ -225,10 +245,13 @@ public class LearningMaterialController {
     }
 
     /**
-     * Stream or download a learning material file
+     * Stream or download a learning material file.
+     * Range requests (including multiple ranges) are answered with 206 Partial Content and
+     * If-None-Match / If-Modified-Since with 304, based on validators from the stored file.
      */
     @GetMapping("/materials/{id}/stream")
-    public ResponseEntity<?> streamFile(@PathVariable UUID id) {
+    public ResponseEntity<?> streamFile(@PathVariable UUID id, HttpServletRequest request,
+                                        HttpServletResponse response) {
         try {
             Optional<LearningMaterial> materialOpt = materialRepository.findById(id);
             if (!materialOpt.isPresent()) {
@@ -247,22 +270,83 @@ public class LearningMaterialController {
                 return ResponseEntity.notFound().build();
             }
             
-            // Get file resource
-            Path filePath = fileStorageService.getFilePath(material.getFilePath());
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            // Determine content type
-            String contentType = determineContentType(material.getFileType());
-            
-            // Build response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + material.getTitle() + "\"");
+            // Use the type detected at upload; older materials fall back to their file type label
+            String contentType = material.getContentType() != null
+                    ? material.getContentType()
+                    : determineContentType(material.getFileType());
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .headers(headers)
-                    .body(resource);
-        } catch (MalformedURLException e) {
+            // The delivery service writes the response itself (sendfile, transferTo or proxy offload)
+            return fileDeliveryService.deliver(material.getFilePath(), contentType,
+                    material.getCompressedEncodings(), material.getTitle(), request, response);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                // Client went away mid-transfer; nothing more can be sent
+                return ResponseEntity.status(response.getStatus()).build();
+            }
+            return ResponseEntity.badRequest()
+                .body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the text outline of a presentation or document: slide titles and text, or headings.
+     * Answers 202 while the previews are still being rendered.
+     */
+    @GetMapping("/materials/{id}/preview")
+    public ResponseEntity<?> getPreviewOutline(@PathVariable UUID id, HttpServletRequest request,
+                                               HttpServletResponse response) {
+        Optional<LearningMaterial> materialOpt = materialRepository.findById(id);
+        if (!materialOpt.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        LearningMaterial material = materialOpt.get();
+        if (material.getFilePath() == null || !previewRenderingService.supports(material.getContentType())) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        String outlineFileName = previewRenderingService.getOutlineFileName(material.getFilePath());
+        if (!fileStorageService.fileExists(outlineFileName)) {
+            if (previewRenderingService.isPending(material.getFilePath())) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new MessageResponse("Preview is being generated"));
+            }
+            return ResponseEntity.notFound().build();
+        }
+        
+        return deliverPreviewFile(outlineFileName, "application/json", material.getTitle() + ".json",
+                request, response);
+    }
+    
+    /**
+     * Get the rendered image of one slide (1-based), so a deck can be browsed page by page
+     */
+    @GetMapping("/materials/{id}/preview/pages/{page}")
+    public ResponseEntity<?> getPreviewPage(@PathVariable UUID id, @PathVariable int page,
+                                            HttpServletRequest request, HttpServletResponse response) {
+        Optional<LearningMaterial> materialOpt = materialRepository.findById(id);
+        if (!materialOpt.isPresent() || materialOpt.get().getFilePath() == null || page < 1) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        LearningMaterial material = materialOpt.get();
+        String pageFileName = previewRenderingService.getPageFileName(material.getFilePath(), page);
+        if (!fileStorageService.fileExists(pageFileName)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        return deliverPreviewFile(pageFileName, "image/png", material.getTitle() + "-" + page + ".png",
+                request, response);
+    }
+    
+    private ResponseEntity<?> deliverPreviewFile(String fileName, String contentType, String downloadName,
+                                                 HttpServletRequest request, HttpServletResponse response) {
+        try {
+            return fileDeliveryService.deliver(fileName, contentType, downloadName, request, response);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                return ResponseEntity.status(response.getStatus()).build();
+            }
             return ResponseEntity.badRequest()
                 .body(new MessageResponse("Error: " + e.getMessage()));
         }
@@ -345,7 +429,7 @@ public class LearningMaterialController {
                         material.setTitle(title);
                         material.setDescription(description);
                         material.setFileType(fileType);
-                        material.setFilePath(fileName);
+                        materialService.attachFile(material, fileName, file.getOriginalFilename());
                         material.setEstimatedDuration(estimatedDuration);
                         
                         // Set sequence order
@@ -363,6 +447,117 @@ public class LearningMaterialController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    // Start a resumable (tus-style) upload for a file-based learning material
+    @PostMapping("/components/{componentId}/materials/file/uploads")
+    public ResponseEntity<?> createFileUpload(
+            @PathVariable UUID componentId,
+            @RequestHeader("Upload-Length") long uploadLength,
+            @RequestParam("fileName") String fileName,
+            @RequestParam("title") String title,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "estimatedDuration", required = false) Integer estimatedDuration) {
+        
+        try {
+            MaterialUpload upload = chunkedUploadService.createUpload(componentId, fileName, uploadLength,
+                    determineFileType(fileName), title, description, estimatedDuration);
+            
+            Map<String, Object> body = new HashMap<>();
+            body.put("uploadId", upload.getId());
+            body.put("offset", 0L);
+            body.put("length", upload.getUploadLength());
+            
+            return ResponseEntity.created(URI.create("/api/components/" + componentId
+                        + "/materials/file/uploads/" + upload.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .body(body);
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest()
+                .body(new MessageResponse("Failed to start upload: " + e.getMessage()));
+        }
+    }
+    
+    // Report how many bytes of a resumable upload have been received
+    @RequestMapping(value = "/components/{componentId}/materials/file/uploads/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<?> getFileUploadOffset(@PathVariable UUID componentId, @PathVariable UUID uploadId) {
+        Optional<MaterialUpload> uploadOpt = chunkedUploadService.getUpload(uploadId);
+        if (!uploadOpt.isPresent() || !uploadOpt.get().getComponent().getId().equals(componentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            MaterialUpload upload = uploadOpt.get();
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(chunkedUploadService.getOffset(upload)))
+                    .header(UPLOAD_LENGTH, String.valueOf(upload.getUploadLength()))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    // Append a chunk to a resumable upload; the request body is streamed straight to storage
+    @PatchMapping(value = "/components/{componentId}/materials/file/uploads/{uploadId}",
+                  consumes = "application/offset+octet-stream")
+    public ResponseEntity<?> appendFileUploadChunk(
+            @PathVariable UUID componentId,
+            @PathVariable UUID uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request) {
+        
+        Optional<MaterialUpload> uploadOpt = chunkedUploadService.getUpload(uploadId);
+        if (!uploadOpt.isPresent() || !uploadOpt.get().getComponent().getId().equals(componentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        MaterialUpload upload = uploadOpt.get();
+        try {
+            long currentOffset = chunkedUploadService.getOffset(upload);
+            if (offset != currentOffset) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .header(UPLOAD_OFFSET, String.valueOf(currentOffset))
+                        .body(new MessageResponse("Upload offset mismatch, expected " + currentOffset));
+            }
+            
+            ChunkedUploadService.ChunkResult result =
+                chunkedUploadService.appendChunk(upload, offset, request.getInputStream());
+            
+            if (result.getMaterial() != null) {
+                // Last chunk received: the material now exists
+                return ResponseEntity.ok()
+                        .header(UPLOAD_OFFSET, String.valueOf(result.getOffset()))
+                        .body(result.getMaterial());
+            }
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET, String.valueOf(result.getOffset()))
+                    .build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            // The client resumes from the offset reported by HEAD
+            return ResponseEntity.badRequest()
+                .body(new MessageResponse("Failed to store chunk: " + e.getMessage()));
+        }
+    }
+    
+    // Abort a resumable upload and discard the received data
+    @DeleteMapping("/components/{componentId}/materials/file/uploads/{uploadId}")
+    public ResponseEntity<?> abortFileUpload(@PathVariable UUID componentId, @PathVariable UUID uploadId) {
+        Optional<MaterialUpload> uploadOpt = chunkedUploadService.getUpload(uploadId);
+        if (!uploadOpt.isPresent() || !uploadOpt.get().getComponent().getId().equals(componentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            chunkedUploadService.abortUpload(uploadOpt.get());
+            return ResponseEntity.noContent().build();
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                .body(new MessageResponse("Failed to abort upload: " + e.getMessage()));
+        }
+    }
+    
     // Add content-based learning material (HTML, text, etc.)
     @PostMapping("/components/{componentId}/materials/content")
     public ResponseEntity<?> addContentMaterial(
@@ -510,19 +705,19 @@ public class LearningMaterialController {
                     ModuleComponent component = material.getComponent();
                     int deletedOrder = material.getSequenceOrder();
                     
-                    // If file-based, delete the file
+                    // Delete the material
+                    materialRepository.delete(material);
+                    
+                    // If file-based, delete the file unless another material shares it
                     if (material.getFilePath() != null && !material.getFilePath().isEmpty()) {
                         try {
-                            fileStorageService.deleteFile(material.getFilePath());
+                            materialService.releaseFile(material.getFilePath());
                         } catch (IOException e) {
                             // Log error but continue with deletion
                             System.err.println("Error deleting file: " + e.getMessage());
                         }
                     }
                     
-                    // Delete the material
-                    materialRepository.delete(material);
-                    
                     // Reorder remaining materials
                     List<LearningMaterial> remainingMaterials = 
                         materialRepository.findByComponentOrderBySequenceOrderAsc(component);
@@ -643,7 +838,7 @@ public class LearningMaterialController {
                         material.setTitle(title);
                         material.setDescription(description);
                         material.setFileType(fileType);
-                        material.setFilePath(fileName);
+                        materialService.attachFile(material, fileName, file.getOriginalFilename());
                         material.setEstimatedDuration(estimatedDuration);
                         
                         // Set sequence order
@@ -0,0 +1,47 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.service.KeysetPage;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Response headers of paged listings, so every listing reports its position the same way
+ */
+final class PagingHeaders {
+
+    private PagingHeaders() {
+    }
+
+    /**
+     * X-Has-Next, plus X-Total-Pages and X-Total-Elements when the slice is a page with totals
+     */
+    static ResponseEntity.BodyBuilder forSlice(Slice<?> slice) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header("X-Has-Next", String.valueOf(slice.hasNext()));
+        if (slice instanceof Page) {
+            Page<?> page = (Page<?>) slice;
+            builder.header("X-Total-Pages", String.valueOf(page.getTotalPages()))
+                    .header("X-Total-Elements", String.valueOf(page.getTotalElements()));
+        }
+        return builder;
+    }
+
+    /**
+     * X-Has-Next and X-Next-Cursor. Cursor listings only report a total when asked, and then
+     * a cached one.
+     *
+     * @param totalEstimate The X-Total-Estimate value, or null to leave it out
+     */
+    static ResponseEntity.BodyBuilder forCursorPage(KeysetPage<?> keysetPage, Long totalEstimate) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header("X-Has-Next", String.valueOf(keysetPage.getNextCursor() != null));
+        if (keysetPage.getNextCursor() != null) {
+            builder.header("X-Next-Cursor", keysetPage.getNextCursor().encode());
+        }
+        if (totalEstimate != null) {
+            builder.header("X-Total-Estimate", String.valueOf(totalEstimate));
+        }
+        return builder;
+    }
+}
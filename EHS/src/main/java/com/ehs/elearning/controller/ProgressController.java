@@ -10,6 +10,9 @@ import com.ehs.elearning.repository.TrainingModuleRepository;
 import com.ehs.elearning.repository.UserProgressRepository;
 import com.ehs.elearning.repository.UserRepository;
 import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.service.ActivityHistoryService;
+import com.ehs.elearning.service.KeysetCursor;
+import com.ehs.elearning.service.KeysetPage;
 import com.ehs.elearning.service.ProgressTrackingService;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +34,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/progress")
 public class ProgressController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private UserProgressRepository progressRepository;
     
@@ -46,6 +51,9 @@ public class ProgressController {
     @Autowired
     private ProgressTrackingService progressService;
     
+    @Autowired
+    private ActivityHistoryService activityHistoryService;
+    
     // Get progress for current user
     @GetMapping("/user")
     public ResponseEntity<?> getCurrentUserProgress() {
@@ -73,6 +81,36 @@ public class ProgressController {
         return ResponseEntity.ok(progress);
     }
     
+    // Page through progress records, newest first; learners only see their own
+    @GetMapping("/history")
+    public ResponseEntity<?> getProgressHistory(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) UUID moduleId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        
+        if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
+            if (userId != null && !userId.equals(userDetails.getId())) {
+                return ResponseEntity.status(403).body(new MessageResponse("Not authorized to access this user's progress"));
+            }
+            userId = userDetails.getId();
+        }
+        
+        try {
+            KeysetPage<Map<String, Object>> history = activityHistoryService.findProgress(userId, moduleId,
+                    KeysetCursor.decode(cursor), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+            
+            return PagingHeaders.forCursorPage(history,
+                            withTotal ? activityHistoryService.estimateProgressTotal(userId, moduleId) : null)
+                    .body(history.getContent());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+    
     // Get progress for a specific module for all users (admin only)
     @GetMapping("/module/{moduleId}")
     @PreAuthorize("hasRole('ADMIN')")
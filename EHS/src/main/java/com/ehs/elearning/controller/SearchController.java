@@ -0,0 +1,66 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.payload.response.MessageResponse;
+import com.ehs.elearning.payload.response.SearchHitResponse;
+import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.service.ContentSearchService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final int MAX_RESULTS = 50;
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    // Search modules, components, materials and questions; learners only find published content
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam String q,
+            @RequestParam(required = false) List<String> types,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (q.isBlank() || q.length() > MAX_QUERY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Search text must be 1 to " + MAX_QUERY_LENGTH + " characters"));
+        }
+
+        Set<String> searchTypes = ContentSearchService.TYPES;
+        if (types != null && !types.isEmpty()) {
+            searchTypes = new HashSet<>();
+            for (String type : types) {
+                String normalized = type.trim().toUpperCase(Locale.ROOT);
+                if (!ContentSearchService.TYPES.contains(normalized)) {
+                    return ResponseEntity.badRequest().body(new MessageResponse("Unknown search type: " + type));
+                }
+                searchTypes.add(normalized);
+            }
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        boolean isAdmin = userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        try {
+            List<SearchHitResponse> hits = contentSearchService.search(q.trim(), searchTypes, isAdmin,
+                    Math.min(Math.max(limit, 1), MAX_RESULTS));
+            return ResponseEntity.ok(hits);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new MessageResponse("Search is not available yet, please try again later"));
+        }
+    }
+}
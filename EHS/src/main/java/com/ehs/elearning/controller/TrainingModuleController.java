@@ -7,16 +7,28 @@ import com.ehs.elearning.model.TrainingModule;
 import com.ehs.elearning.model.Users;
 import com.ehs.elearning.payload.request.ModuleRequest;
 import com.ehs.elearning.payload.response.MessageResponse;
+import com.ehs.elearning.payload.response.ModuleSummaryResponse;
+import com.ehs.elearning.payload.response.TypeaheadSuggestion;
 import com.ehs.elearning.repository.DomainRepository;
 import com.ehs.elearning.repository.TrainingModuleRepository;
 import com.ehs.elearning.repository.UserRepository;
 import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.security.UserDomainCache;
+import com.ehs.elearning.service.CatalogChangedEvent;
+import com.ehs.elearning.service.CatalogTypeaheadIndex;
+import com.ehs.elearning.service.KeysetCursor;
+import com.ehs.elearning.service.KeysetPage;
+import com.ehs.elearning.service.ModuleQuery;
+import com.ehs.elearning.service.ModuleQueryService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -25,6 +37,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,16 +45,30 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api")
 public class TrainingModuleController {
+    
+    private static final int MAX_SUGGESTIONS = 20;
 
     @Autowired
     private TrainingModuleRepository moduleRepository;
     
+    @Autowired
+    private ModuleQueryService moduleQueryService;
+    
     @Autowired
     private DomainRepository domainRepository;
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private CatalogTypeaheadIndex typeaheadIndex;
+    
+    @Autowired
+    private UserDomainCache userDomainCache;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Get all published modules (for all users)
     @GetMapping("/modules/all")
     public ResponseEntity<List<TrainingModule>> getAllPublishedModules(
@@ -76,10 +103,7 @@ public class TrainingModuleController {
                 pageModules = moduleRepository.findByStatus(ModuleStatus.PUBLISHED, paging);
             }
             
-            return ResponseEntity.ok()
-                    .header("X-Total-Pages", String.valueOf(pageModules.getTotalPages()))
-                    .header("X-Total-Elements", String.valueOf(pageModules.getTotalElements()))
-                    .body(pageModules.getContent());
+            return PagingHeaders.forSlice(pageModules).body(pageModules.getContent());
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ArrayList<>());
@@ -88,122 +112,86 @@ public class TrainingModuleController {
     
     // Get all modules with filtering options (with domain access information)
     @GetMapping("/modules")
-    public ResponseEntity<List<Map<String, Object>>> getAllModules(
+    public ResponseEntity<List<ModuleSummaryResponse>> getAllModules(
             @RequestParam(required = false) String title,
             @RequestParam(required = false) UUID domainId,
             @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID createdBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+            @RequestParam(defaultValue = "false") boolean assignedOnly,
+            @RequestParam(defaultValue = "true") boolean count,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "title") String sortBy) {
+            @RequestParam(defaultValue = "title") String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         try {
             // Get current authenticated user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            UUID userId = userDetails.getId();
+            boolean isAdmin = isAdmin(userDetails);
             
-            // Fetch the user to access their domains
-            Optional<Users> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
+            // Only the ids are needed, not the user entity and its domain set
+            Set<UUID> userDomainIds = userDomainCache.getDomainIds(userDetails.getId());
+            
+            ModuleQuery moduleQuery = buildModuleQuery(title, domainId, status, createdBy, createdFrom,
+                    createdBefore, assignedOnly, isAdmin, userDomainIds);
+            if (moduleQuery == null || !ModuleQueryService.SORTABLE_PROPERTIES.contains(sortBy)) {
                 return ResponseEntity.badRequest().body(new ArrayList<>());
             }
             
-            Users user = userOpt.get();
-            boolean isAdmin = user.getRole() == Role.ADMIN;
-            Set<Domain> userDomains = user.getDomains();
-            
-            // Create pageable object for pagination and sorting
-            Pageable paging = PageRequest.of(page, size, Sort.by(sortBy));
-            Page<TrainingModule> pageModules;
-            
-            // Apply filters if provided
-            if (title != null && !title.isEmpty()) {
-                if (domainId != null && status != null && !status.isEmpty()) {
-                    // Filter by title, domain, and status
-                    Optional<Domain> domain = domainRepository.findById(domainId);
-                    if (domain.isPresent()) {
-                        pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndDomainAndStatus(
-                                title, domain.get(), ModuleStatus.valueOf(status), paging);
-                    } else {
-                        return ResponseEntity.badRequest().body(new ArrayList<>());
-                    }
-                } else if (domainId != null) {
-                    // Filter by title and domain
-                    Optional<Domain> domain = domainRepository.findById(domainId);
-                    if (domain.isPresent()) {
-                        pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndDomain(
-                                title, domain.get(), paging);
-                    } else {
-                        return ResponseEntity.badRequest().body(new ArrayList<>());
-                    }
-                } else if (status != null && !status.isEmpty()) {
-                    // Filter by title and status
-                    pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndStatus(
-                            title, ModuleStatus.valueOf(status), paging);
-                } else {
-                    // Filter by title only
-                    pageModules = moduleRepository.findByTitleContainingIgnoreCase(title, paging);
-                }
-            } else if (domainId != null) {
-                Optional<Domain> domain = domainRepository.findById(domainId);
-                if (domain.isPresent()) {
-                    if (status != null && !status.isEmpty()) {
-                        // Filter by domain and status
-                        pageModules = moduleRepository.findByDomainAndStatus(
-                                domain.get(), ModuleStatus.valueOf(status), paging);
-                    } else {
-                        // Filter by domain only
-                        pageModules = moduleRepository.findByDomain(domain.get(), paging);
-                    }
-                } else {
-                    return ResponseEntity.badRequest().body(new ArrayList<>());
-                }
-            } else if (status != null && !status.isEmpty()) {
-                // Filter by status only
-                pageModules = moduleRepository.findByStatus(ModuleStatus.valueOf(status), paging);
+            List<ModuleSummaryResponse> modules;
+            ResponseEntity.BodyBuilder response;
+            if (cursor != null) {
+                KeysetPage<ModuleSummaryResponse> keysetPage = moduleQueryService.findAfter(moduleQuery, sortBy, true,
+                        KeysetCursor.decode(cursor), size);
+                modules = keysetPage.getContent();
+                response = PagingHeaders.forCursorPage(keysetPage,
+                        withTotal ? moduleQueryService.estimateTotal(moduleQuery) : null);
             } else {
-                // No filters - get modules based on user role
-                if (isAdmin) {
-                    pageModules = moduleRepository.findAll(paging);
-                } else {
-                    // Regular users can see all published modules
-                    pageModules = moduleRepository.findByStatus(ModuleStatus.PUBLISHED, paging);
-                }
+                Slice<ModuleSummaryResponse> pageModules = moduleQueryService.find(moduleQuery,
+                        PageRequest.of(page, size, Sort.by(sortBy)), count);
+                modules = pageModules.getContent();
+                response = PagingHeaders.forSlice(pageModules);
             }
             
-            // Convert modules to include access information
-            List<Map<String, Object>> modulesWithAccessInfo = pageModules.getContent().stream()
-                    .map(module -> {
-                        Map<String, Object> moduleInfo = new HashMap<>();
-                        moduleInfo.put("id", module.getId());
-                        moduleInfo.put("title", module.getTitle());
-                        moduleInfo.put("description", module.getDescription());
-                        moduleInfo.put("domain", module.getDomain());
-                        moduleInfo.put("status", module.getStatus());
-                        moduleInfo.put("createdAt", module.getCreatedAt());
-                        moduleInfo.put("estimatedDuration", module.getEstimatedDuration());
-                        moduleInfo.put("requiredCompletionScore", module.getRequiredCompletionScore());
-                        
-                        // Check if user has access to this module
-                        boolean hasAccess = isAdmin || 
-                                (module.getStatus() == ModuleStatus.PUBLISHED && 
-                                 (userDomains.isEmpty() || userDomains.contains(module.getDomain())));
-                        
-                        moduleInfo.put("hasAccess", hasAccess);
-                        return moduleInfo;
-                    })
-                    .collect(Collectors.toList());
+            // Check if user has access to each module
+            for (ModuleSummaryResponse module : modules) {
+                module.setHasAccess(isAdmin || 
+                        (module.getStatus() == ModuleStatus.PUBLISHED && 
+                         (userDomainIds.isEmpty() || userDomainIds.contains(module.getDomain().getId()))));
+            }
             
-            return ResponseEntity.ok()
-                    .header("X-Total-Pages", String.valueOf(pageModules.getTotalPages()))
-                    .header("X-Total-Elements", String.valueOf(pageModules.getTotalElements()))
-                    .body(modulesWithAccessInfo);
+            return response.body(modules);
             
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor or a sort key that cannot be paged by
+            return ResponseEntity.badRequest().body(new ArrayList<>());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ArrayList<>());
         }
     }
     
+    // Suggest published module and domain titles while the user types; served from memory
+    @GetMapping("/modules/typeahead")
+    public ResponseEntity<List<TypeaheadSuggestion>> typeahead(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        
+        // Users without assignments may see every domain, as for access checks
+        Set<UUID> domainIds = null;
+        if (!isAdmin(userDetails)) {
+            Set<UUID> userDomainIds = userDomainCache.getDomainIds(userDetails.getId());
+            domainIds = userDomainIds.isEmpty() ? null : userDomainIds;
+        }
+        
+        return ResponseEntity.ok(typeaheadIndex.suggest(q, domainIds, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS)));
+    }
+    
     // Get modules by domain
     @GetMapping("/modules/domain/{domainId}")
     public ResponseEntity<?> getModulesByDomain(@PathVariable UUID domainId) {
@@ -316,63 +304,56 @@ public class TrainingModuleController {
     @GetMapping("/modules/available")
     public ResponseEntity<?> getAvailableModules(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         try {
             // Get current user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            UUID userId = userDetails.getId();
-            
-            Optional<Users> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
-                return ResponseEntity.badRequest().body(new MessageResponse("User not found"));
+            boolean isAdmin = isAdmin(userDetails);
+            
+            // Admins see all modules, regular users all published ones
+            ModuleQuery moduleQuery = new ModuleQuery();
+            if (!isAdmin) {
+                moduleQuery.setStatus(ModuleStatus.PUBLISHED);
+            }
+            
+            List<ModuleSummaryResponse> modules;
+            ResponseEntity.BodyBuilder response;
+            if (cursor != null) {
+                KeysetPage<ModuleSummaryResponse> keysetPage = moduleQueryService.findAfter(moduleQuery, "title", true,
+                        KeysetCursor.decode(cursor), size);
+                modules = keysetPage.getContent();
+                response = PagingHeaders.forCursorPage(keysetPage,
+                        withTotal ? moduleQueryService.estimateTotal(moduleQuery) : null);
+            } else {
+                Page<ModuleSummaryResponse> modulePage = moduleQueryService.findPage(
+                        moduleQuery, PageRequest.of(page, size, Sort.by("title")));
+                modules = modulePage.getContent();
+                response = PagingHeaders.forSlice(modulePage)
+                        .header("X-Total-Count", String.valueOf(modulePage.getTotalElements()));
             }
             
-            Users user = userOpt.get();
-            boolean isAdmin = user.getRole() == Role.ADMIN;
-            
-            Pageable pageable = PageRequest.of(page, size, Sort.by("title"));
-            Page<TrainingModule> modules;
-            
-            // For admins, return all modules
             if (isAdmin) {
-                modules = moduleRepository.findAll(pageable);
-                return ResponseEntity.ok()
-                        .header("X-Total-Count", String.valueOf(modules.getTotalElements()))
-                        .header("X-Total-Pages", String.valueOf(modules.getTotalPages()))
-                        .body(modules.getContent());
+                return response.body(modules);
             }
             
-            // For regular users, return all published modules
-            modules = moduleRepository.findByStatus(ModuleStatus.PUBLISHED, pageable);
-            
             // Add access information
-            List<Map<String, Object>> modulesWithAccess = modules.getContent().stream()
-                    .map(module -> {
-                        Map<String, Object> moduleInfo = new HashMap<>();
-                        moduleInfo.put("id", module.getId());
-                        moduleInfo.put("title", module.getTitle());
-                        moduleInfo.put("description", module.getDescription());
-                        moduleInfo.put("domain", module.getDomain());
-                        moduleInfo.put("status", module.getStatus());
-                        moduleInfo.put("estimatedDuration", module.getEstimatedDuration());
-                        
-                        // Check if user has access to this module through domain assignment
-                        boolean assignedAccess = user.getDomains().isEmpty() || user.getDomains().contains(module.getDomain());
-                        moduleInfo.put("hasAssignedAccess", assignedAccess);
-                        
-                        // All published modules are available for browsing even without domain assignment
-                        moduleInfo.put("canView", true);
-                        
-                        return moduleInfo;
-                    })
-                    .collect(Collectors.toList());
+            Set<UUID> userDomainIds = userDomainCache.getDomainIds(userDetails.getId());
+            for (ModuleSummaryResponse module : modules) {
+                // Check if user has access to this module through domain assignment
+                module.setHasAssignedAccess(userDomainIds.isEmpty() || userDomainIds.contains(module.getDomain().getId()));
+                
+                // All published modules are available for browsing even without domain assignment
+                module.setCanView(true);
+            }
             
-            return ResponseEntity.ok()
-                    .header("X-Total-Count", String.valueOf(modules.getTotalElements()))
-                    .body(modulesWithAccess);
+            return response.body(modules);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Error fetching available modules: " + e.getMessage()));
@@ -417,6 +398,7 @@ public class TrainingModuleController {
             }
             
             TrainingModule savedModule = moduleRepository.save(module);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(savedModule.getId()));
             return ResponseEntity.status(HttpStatus.CREATED).body(savedModule);
             
         } catch (Exception e) {
@@ -482,6 +464,7 @@ public class TrainingModuleController {
             }
             
             TrainingModule updatedModule = moduleRepository.save(module);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(id));
             return ResponseEntity.ok(updatedModule);
             
         } else {
@@ -509,6 +492,7 @@ public class TrainingModuleController {
             }
             
             moduleRepository.deleteById(id);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(id));
             return ResponseEntity.ok(new MessageResponse("Module deleted successfully."));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -536,6 +520,7 @@ public class TrainingModuleController {
             module.setStatus(ModuleStatus.PUBLISHED);
             
             moduleRepository.save(module);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(id));
             return ResponseEntity.ok(new MessageResponse("Module published successfully."));
         } else {
             return ResponseEntity.notFound().build();
@@ -562,6 +547,7 @@ public class TrainingModuleController {
             module.setStatus(ModuleStatus.ARCHIVED);
             
             moduleRepository.save(module);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(id));
             return ResponseEntity.ok(new MessageResponse("Module archived successfully."));
         } else {
             return ResponseEntity.notFound().build();
@@ -597,6 +583,7 @@ public class TrainingModuleController {
             clonedModule.setRequiredCompletionScore(originalModule.getRequiredCompletionScore());
             
             TrainingModule savedClone = moduleRepository.save(clonedModule);
+            eventPublisher.publishEvent(CatalogChangedEvent.module(savedClone.getId()));
             
             // TODO: Clone components and their associated data (questions, materials, etc.)
             // This would typically be handled by a service layer
@@ -793,38 +780,39 @@ public class TrainingModuleController {
     @GetMapping("/modules/recent")
     public ResponseEntity<?> getRecentModules(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "5") int size) {
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         try {
             // Get current user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            UUID userId = userDetails.getId();
             
-            Optional<Users> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
-                return ResponseEntity.badRequest().body(new MessageResponse("User not found"));
+            // Admins can see all recently added modules, regular users only published ones
+            ModuleQuery moduleQuery = new ModuleQuery();
+            if (!isAdmin(userDetails)) {
+                moduleQuery.setStatus(ModuleStatus.PUBLISHED);
             }
             
-            Users user = userOpt.get();
-            boolean isAdmin = user.getRole() == Role.ADMIN;
+            if (cursor != null) {
+                KeysetPage<ModuleSummaryResponse> keysetPage = moduleQueryService.findAfter(moduleQuery, "createdAt", false,
+                        KeysetCursor.decode(cursor), size);
+                return PagingHeaders.forCursorPage(keysetPage,
+                        withTotal ? moduleQueryService.estimateTotal(moduleQuery) : null)
+                        .body(keysetPage.getContent());
+            }
             
             // Get recently added modules
-            Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-            Page<TrainingModule> modules;
-            
-            if (isAdmin) {
-                // Admins can see all recently added modules
-                modules = moduleRepository.findAll(pageable);
-            } else {
-                // Regular users can only see recently added published modules
-                modules = moduleRepository.findByStatus(ModuleStatus.PUBLISHED, pageable);
-            }
+            Page<ModuleSummaryResponse> modules = moduleQueryService.findPage(
+                    moduleQuery, PageRequest.of(page, size, Sort.by("createdAt").descending()));
             
             return ResponseEntity.ok()
                     .header("X-Total-Count", String.valueOf(modules.getTotalElements()))
                     .body(modules.getContent());
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Error fetching recent modules: " + e.getMessage()));
@@ -930,107 +918,91 @@ public class TrainingModuleController {
             @RequestParam(required = false) String query,
             @RequestParam(required = false) UUID domainId,
             @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID createdBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+            @RequestParam(defaultValue = "false") boolean assignedOnly,
+            @RequestParam(defaultValue = "true") boolean count,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "title") String sortBy) {
+            @RequestParam(defaultValue = "title") String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         try {
             // Get current authenticated user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            UUID userId = userDetails.getId();
+            boolean isAdmin = isAdmin(userDetails);
             
-            // Fetch the user to access their domains
-            Optional<Users> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
-                return ResponseEntity.badRequest().body(new ArrayList<>());
-            }
-            
-            Users user = userOpt.get();
-            boolean isAdmin = user.getRole() == Role.ADMIN;
-            
-            // Create pageable object for pagination and sorting
-            Pageable paging = PageRequest.of(page, size, Sort.by(sortBy));
-            Page<TrainingModule> pageModules;
+            Set<UUID> userDomainIds = assignedOnly
+                    ? userDomainCache.getDomainIds(userDetails.getId())
+                    : Collections.emptySet();
             
-            // Apply filters based on query parameters
-            if (query != null && !query.isEmpty()) {
-                if (domainId != null && status != null && !status.isEmpty()) {
-                    // Search by query, domain, and status
-                    Optional<Domain> domain = domainRepository.findById(domainId);
-                    if (domain.isPresent()) {
-                        pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndDomainAndStatus(
-                                query, domain.get(), ModuleStatus.valueOf(status), paging);
-                    } else {
-                        return ResponseEntity.badRequest().body(new ArrayList<>());
-                    }
-                } else if (domainId != null) {
-                    // Search by query and domain
-                    Optional<Domain> domain = domainRepository.findById(domainId);
-                    if (domain.isPresent()) {
-                        pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndDomain(
-                                query, domain.get(), paging);
-                    } else {
-                        return ResponseEntity.badRequest().body(new ArrayList<>());
-                    }
-                } else if (status != null && !status.isEmpty()) {
-                    // Search by query and status
-                    pageModules = moduleRepository.findByTitleContainingIgnoreCaseAndStatus(
-                            query, ModuleStatus.valueOf(status), paging);
-                } else {
-                    // Search by query only
-                    pageModules = moduleRepository.findByTitleContainingIgnoreCase(query, paging);
-                }
-            } else {
-                // No search query provided, apply other filters
-                if (domainId != null) {
-                    Optional<Domain> domain = domainRepository.findById(domainId);
-                    if (domain.isPresent()) {
-                        if (status != null && !status.isEmpty()) {
-                            // Filter by domain and status
-                            pageModules = moduleRepository.findByDomainAndStatus(
-                                    domain.get(), ModuleStatus.valueOf(status), paging);
-                        } else {
-                            // Filter by domain only
-                            pageModules = moduleRepository.findByDomain(domain.get(), paging);
-                        }
-                    } else {
-                        return ResponseEntity.badRequest().body(new ArrayList<>());
-                    }
-                } else if (status != null && !status.isEmpty()) {
-                    // Filter by status only
-                    pageModules = moduleRepository.findByStatus(ModuleStatus.valueOf(status), paging);
-                } else {
-                    // No filters - get all modules or published modules based on user role
-                    if (isAdmin) {
-                        pageModules = moduleRepository.findAll(paging);
-                    } else {
-                        pageModules = moduleRepository.findByStatus(ModuleStatus.PUBLISHED, paging);
-                    }
-                }
+            ModuleQuery moduleQuery = buildModuleQuery(query, domainId, status, createdBy, createdFrom,
+                    createdBefore, assignedOnly, isAdmin, userDomainIds);
+            if (moduleQuery == null) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Invalid status: " + status));
+            }
+            if (!ModuleQueryService.SORTABLE_PROPERTIES.contains(sortBy)) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Cannot sort by " + sortBy));
             }
             
-            // If not admin, filter to only show published modules
-            if (!isAdmin && pageModules.getContent().stream()
-                    .anyMatch(module -> module.getStatus() != ModuleStatus.PUBLISHED)) {
-                
-                List<TrainingModule> filteredModules = pageModules.getContent().stream()
-                        .filter(module -> module.getStatus() == ModuleStatus.PUBLISHED)
-                        .collect(Collectors.toList());
-                
-                return ResponseEntity.ok()
-                        .header("X-Total-Count", String.valueOf(filteredModules.size()))
-                        .body(filteredModules);
+            if (cursor != null) {
+                KeysetPage<ModuleSummaryResponse> keysetPage = moduleQueryService.findAfter(moduleQuery, sortBy, true,
+                        KeysetCursor.decode(cursor), size);
+                return PagingHeaders.forCursorPage(keysetPage,
+                        withTotal ? moduleQueryService.estimateTotal(moduleQuery) : null)
+                        .body(keysetPage.getContent());
             }
             
-            return ResponseEntity.ok()
-                    .header("X-Total-Pages", String.valueOf(pageModules.getTotalPages()))
-                    .header("X-Total-Elements", String.valueOf(pageModules.getTotalElements()))
-                    .body(pageModules.getContent());
+            Slice<ModuleSummaryResponse> pageModules = moduleQueryService.find(moduleQuery,
+                    PageRequest.of(page, size, Sort.by(sortBy)), count);
+            
+            return PagingHeaders.forSlice(pageModules).body(pageModules.getContent());
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Error searching modules: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+    
+    private boolean isAdmin(UserDetailsImpl userDetails) {
+        return userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    }
+    
+    /**
+     * Collect the listing filters into one query; learners only ever see published modules
+     * 
+     * @return The query, or null if the status is not valid
+     */
+    private ModuleQuery buildModuleQuery(String title, UUID domainId, String status, UUID createdBy,
+            LocalDateTime createdFrom, LocalDateTime createdBefore, boolean assignedOnly,
+            boolean isAdmin, Set<UUID> userDomainIds) {
+        ModuleQuery moduleQuery = new ModuleQuery();
+        moduleQuery.setTitle(title);
+        moduleQuery.setDomainId(domainId);
+        moduleQuery.setCreatedBy(createdBy);
+        moduleQuery.setCreatedFrom(createdFrom);
+        moduleQuery.setCreatedBefore(createdBefore);
+        
+        if (status != null && !status.isEmpty()) {
+            try {
+                moduleQuery.setStatus(ModuleStatus.valueOf(status.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (!isAdmin) {
+            moduleQuery.setStatus(ModuleStatus.PUBLISHED);
+        }
+        
+        // Users without assignments may see every domain, as for access checks
+        if (assignedOnly && !userDomainIds.isEmpty()) {
+            moduleQuery.setDomainIds(userDomainIds);
+        }
+        return moduleQuery;
+    }
+}
@@ -4,20 +4,44 @@ import com.ehs.elearning.model.Domain;
 import com.ehs.elearning.model.Role;
 import com.ehs.elearning.model.Users;
 import com.ehs.elearning.payload.response.MessageResponse;
+import com.ehs.elearning.payload.response.UserSummaryResponse;
 import com.ehs.elearning.repository.DomainRepository;
 import com.ehs.elearning.repository.UserRepository;
+import com.ehs.elearning.security.PasswordGenerator;
+import com.ehs.elearning.security.TokenRevocationList;
 import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.security.UserDomainCache;
+import com.ehs.elearning.security.UserRoleCache;
+import com.ehs.elearning.service.BulkUserDeletionJob;
+import com.ehs.elearning.service.BulkUserDeletionService;
+import com.ehs.elearning.service.BulkUserJob;
+import com.ehs.elearning.service.BulkUserProvisioningService;
+import com.ehs.elearning.service.DomainService;
+import com.ehs.elearning.service.KeysetCursor;
+import com.ehs.elearning.service.KeysetPage;
+import com.ehs.elearning.service.UserImportService;
+import com.ehs.elearning.service.UserSearchService;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
-import java.security.SecureRandom;
+import java.io.IOException;
+import java.net.URI;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -25,6 +49,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -34,11 +60,43 @@ public class UserController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
-    // Get all users (admin only)
+    @Autowired
+    private PasswordGenerator passwordGenerator;
+
+    @Autowired
+    private UserRoleCache userRoleCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private BulkUserProvisioningService bulkUserProvisioningService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private DomainService domainService;
+
+    @Autowired
+    private BulkUserDeletionService bulkUserDeletionService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private UserDomainCache userDomainCache;
+
+    // Get all users, one page at a time (admin only)
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public List<Users> getAllUsers() {
-        return userRepository.findAll();
+    public ResponseEntity<?> getAllUsers(@RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "username") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        return searchUsers(null, null, null, null, null, null, page, size, sortBy, direction, cursor, withTotal);
     }
 
     // Get user by ID
@@ -110,6 +168,8 @@ public class UserController {
             }
 
             Users updatedUser = userRepository.save(user);
+            // Tokens already issued pick up a new role on their next request
+            userRoleCache.invalidate(id);
             return ResponseEntity.ok(updatedUser);
         }).orElse(ResponseEntity.notFound().build());
     }
@@ -120,41 +180,74 @@ public class UserController {
     public ResponseEntity<?> deleteUser(@PathVariable UUID id) {
         return userRepository.findById(id).map(user -> {
             userRepository.delete(user);
+            userRoleCache.invalidate(id);
             return ResponseEntity.ok(new MessageResponse("User deleted successfully"));
         }).orElse(ResponseEntity.notFound().build());
     }
     
-    // Search users by criteria
+    // Force a user to sign in again by revoking every token issued so far (admin only)
+    @PostMapping("/{id}/sign-out")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> forceSignOut(@PathVariable UUID id) {
+        if (!userRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        tokenRevocationList.revokeUser(id);
+        return ResponseEntity.ok(new MessageResponse("User signed out from all sessions"));
+    }
+    
+    // Search users by criteria; filtering, sorting and paging run in the database
     @GetMapping("/search")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> searchUsers(@RequestParam(required = false) String username,
-            @RequestParam(required = false) String email, @RequestParam(required = false) String role) {
+    public ResponseEntity<?> searchUsers(@RequestParam(required = false) String q,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) String jobTitle,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "username") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
 
-        List<Users> allUsers = userRepository.findAll();
-        List<Users> filteredUsers = allUsers;
-
-        if (username != null && !username.isEmpty()) {
-            filteredUsers = filteredUsers.stream()
-                    .filter(u -> u.getUsername().toLowerCase().contains(username.toLowerCase()))
-                    .collect(Collectors.toList());
+        Role roleEnum = null;
+        if (role != null && !role.isEmpty()) {
+            try {
+                roleEnum = Role.valueOf(role.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Invalid role"));
+            }
         }
 
-        if (email != null && !email.isEmpty()) {
-            filteredUsers = filteredUsers.stream().filter(u -> u.getEmail().toLowerCase().contains(email.toLowerCase()))
-                    .collect(Collectors.toList());
+        if (!UserSearchService.SORTABLE_PROPERTIES.contains(sortBy)) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Cannot sort by " + sortBy));
         }
 
-        if (role != null && !role.isEmpty()) {
+        // An empty cursor asks for the first page of a cursor listing
+        if (cursor != null) {
             try {
-                Role roleEnum = Role.valueOf(role.toUpperCase());
-                filteredUsers = filteredUsers.stream().filter(u -> u.getRole() == roleEnum)
-                        .collect(Collectors.toList());
+                KeysetPage<UserSummaryResponse> users = userSearchService.searchAfter(q, username, email, roleEnum,
+                        department, jobTitle, sortBy, !"desc".equalsIgnoreCase(direction),
+                        KeysetCursor.decode(cursor), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+                return PagingHeaders.forCursorPage(users, withTotal
+                                ? userSearchService.estimateTotal(q, username, email, roleEnum, department, jobTitle)
+                                : null)
+                        .body(users.getContent());
             } catch (IllegalArgumentException e) {
-                return ResponseEntity.badRequest().body(new MessageResponse("Invalid role"));
+                return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
             }
         }
 
-        return ResponseEntity.ok(filteredUsers);
+        Sort sort = "desc".equalsIgnoreCase(direction) ? Sort.by(sortBy).descending() : Sort.by(sortBy);
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE), sort);
+
+        Page<UserSummaryResponse> users = userSearchService.search(q, username, email, roleEnum,
+                department, jobTitle, pageable);
+
+        return PagingHeaders.forSlice(users).body(users.getContent());
     }
 
     // Assign domains to user
@@ -171,6 +264,7 @@ public class UserController {
             // Clear current domains and set new ones
             user.setDomains(domains);
             Users updatedUser = userRepository.save(user);
+            userDomainCache.invalidate(id);
 
             return ResponseEntity.ok(updatedUser);
         }).orElse(ResponseEntity.notFound().build());
@@ -217,6 +311,7 @@ public class UserController {
         // Add domain to user
         user.addDomain(domain);
         userRepository.save(user);
+        userDomainCache.invalidate(id);
         
         return ResponseEntity.ok(new MessageResponse("Domain added to user successfully"));
     }
@@ -275,6 +370,7 @@ public class UserController {
         // Remove domain from user
         user.removeDomain(domain);
         userRepository.save(user);
+        userDomainCache.invalidate(id);
         
         return ResponseEntity.ok(new MessageResponse("Domain removed from user successfully"));
     }
@@ -301,7 +397,7 @@ public class UserController {
         }
         
         // Generate password
-        String password = generateSecurePassword();
+        String password = passwordGenerator.generate();
         
         // Create user
         Users user = new Users(username, email, passwordEncoder.encode(password));
@@ -347,88 +443,76 @@ public class UserController {
     @PostMapping("/bulk")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> bulkCreateUsers(@RequestBody List<Map<String, String>> usersData) {
-        List<Map<String, Object>> userResponses = new ArrayList<>();
+        BulkUserJob job;
+        try {
+            job = bulkUserProvisioningService.startJob(usersData);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(new MessageResponse("Too many bulk user jobs are running, please try again later"));
+        }
         
-        for (Map<String, String> userData : usersData) {
-            String username = userData.get("username");
-            String email = userData.get("email");
-            String role = userData.get("role");
-            
-            // Validate input
-            if (username == null || email == null || username.isEmpty() || email.isEmpty()) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("username", username);
-                errorResponse.put("email", email);
-                errorResponse.put("status", "error");
-                errorResponse.put("message", "Username and email are required");
-                userResponses.add(errorResponse);
-                continue;
-            }
-            
-            // Check if user already exists
-            if (userRepository.existsByUsername(username) || userRepository.existsByEmail(email)) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("username", username);
-                errorResponse.put("email", email);
-                errorResponse.put("status", "error");
-                errorResponse.put("message", "User already exists");
-                userResponses.add(errorResponse);
-                continue;
-            }
-            
-            // Generate password
-            String password = generateSecurePassword();
-            
-            // Create user
-            Users user = new Users(username, email, passwordEncoder.encode(password));
-            
-            // Set role (default to USER)
-            if (role == null || role.isEmpty()) {
-                user.setRole(Role.USER);
-            } else {
-                try {
-                    user.setRole(Role.valueOf(role.toUpperCase()));
-                } catch (IllegalArgumentException e) {
-                    user.setRole(Role.USER);
-                }
-            }
-            
-            // Set other fields if provided
-            if (userData.containsKey("firstName")) {
-                user.setFirstName(userData.get("firstName"));
-            }
-            
-            if (userData.containsKey("lastName")) {
-                user.setLastName(userData.get("lastName"));
-            }
-            
-            if (userData.containsKey("jobTitle")) {
-                user.setJobTitle(userData.get("jobTitle"));
-            }
-            
-            if (userData.containsKey("department")) {
-                user.setDepartment(userData.get("department"));
-            }
-            
-            Users savedUser = userRepository.save(user);
-            
-            Map<String, Object> userResponse = new HashMap<>();
-            userResponse.put("id", savedUser.getId());
-            userResponse.put("username", savedUser.getUsername());
-            userResponse.put("email", savedUser.getEmail());
-            userResponse.put("role", savedUser.getRole());
-            userResponse.put("password", password); // Return plaintext password in response
-            userResponse.put("status", "success");
-            userResponses.add(userResponse);
+        // Results are polled from the job, as hashing thousands of passwords takes a while
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/bulk/jobs/" + job.getId()))
+                .body(job);
+    }
+    
+    // Status and per-row results of a bulk user job
+    @GetMapping("/bulk/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBulkUserJob(@PathVariable UUID jobId) {
+        BulkUserJob job = bulkUserProvisioningService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse("Bulk user job not found or expired"));
+        }
+        return ResponseEntity.ok(job);
+    }
+    
+    // Import users from a CSV or XLSX file; the per-row report is streamed back as CSV
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importUsers(@RequestParam("file") MultipartFile file, HttpServletResponse response) {
+        if (file.isEmpty() || !userImportService.supports(file.getOriginalFilename())) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Please upload a CSV or XLSX file"));
         }
         
-        return ResponseEntity.ok(userResponses);
+        try {
+            userImportService.importUsers(file, response);
+            // The report has been streamed to the response
+            return ResponseEntity.status(response.getStatus()).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(new MessageResponse("Too many user imports are running, please try again later"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            System.err.println("User import failed: " + e.getMessage());
+            if (response.isCommitted()) {
+                return ResponseEntity.status(response.getStatus()).build();
+            }
+            return ResponseEntity.status(500).body(new MessageResponse("Error: " + e.getMessage()));
+        }
     }
     
     // Bulk assign domains to multiple users
     @PutMapping("/domains/assign")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> assignBulkDomains(@RequestBody Map<String, Object> request) {
+        return updateBulkDomains(request, true);
+    }
+    
+    // Bulk remove domains from multiple users
+    @PutMapping("/domains/revoke")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> revokeBulkDomains(@RequestBody Map<String, Object> request) {
+        return updateBulkDomains(request, false);
+    }
+    
+    // Memberships are written directly to the join table; only counts are returned
+    private ResponseEntity<?> updateBulkDomains(Map<String, Object> request, boolean assign) {
         try {
             @SuppressWarnings("unchecked")
             List<String> userIdStrings = (List<String>) request.get("userIds");
@@ -448,23 +532,14 @@ public class UserController {
                 .map(UUID::fromString)
                 .collect(Collectors.toList());
             
-            Set<Domain> domains = new HashSet<>();
-            for (UUID domainId : domainIds) {
-                domainRepository.findById(domainId).ifPresent(domains::add);
-            }
-            
-            List<Users> updatedUsers = new ArrayList<>();
-            for (UUID userId : userIds) {
-                userRepository.findById(userId).ifPresent(user -> {
-                    // Get existing domains and add new ones
-                    Set<Domain> existingDomains = user.getDomains();
-                    existingDomains.addAll(domains);
-                    user.setDomains(existingDomains);
-                    updatedUsers.add(userRepository.save(user));
-                });
-            }
+            int changed = assign
+                    ? domainService.assignDomainsToUsers(userIds, domainIds)
+                    : domainService.revokeDomainsFromUsers(userIds, domainIds);
             
-            return ResponseEntity.ok(new MessageResponse(updatedUsers.size() + " users updated successfully"));
+            Map<String, Object> response = new HashMap<>();
+            response.put(assign ? "assigned" : "revoked", changed);
+            response.put("message", changed + (assign ? " domain assignments added" : " domain assignments removed"));
+            return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             // Handle invalid UUID format
             return ResponseEntity.badRequest().body(new MessageResponse("Invalid ID format: " + e.getMessage()));
@@ -474,30 +549,34 @@ public class UserController {
         }
     }
     
-    // Bulk delete users
+    // Bulk delete users along with their progress data, as a background job
     @DeleteMapping("/bulk")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> bulkDeleteUsers(@RequestBody List<UUID> userIds) {
-        int deletedCount = 0;
-        for (UUID userId : userIds) {
-            if (userRepository.existsById(userId)) {
-                userRepository.deleteById(userId);
-                deletedCount++;
-            }
+        BulkUserDeletionJob job;
+        try {
+            job = bulkUserDeletionService.startJob(userIds);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(new MessageResponse("Too many bulk user jobs are running, please try again later"));
         }
         
-        return ResponseEntity.ok(new MessageResponse(deletedCount + " users deleted successfully"));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/bulk/delete-jobs/" + job.getId()))
+                .body(job);
     }
     
-    // Helper method for password generation
-    private String generateSecurePassword() {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*";
-        StringBuilder password = new StringBuilder();
-        SecureRandom random = new SecureRandom();
-        for (int i = 0; i < 10; i++) {
-            password.append(chars.charAt(random.nextInt(chars.length())));
+    // Progress of a bulk user deletion job
+    @GetMapping("/bulk/delete-jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBulkUserDeletionJob(@PathVariable UUID jobId) {
+        BulkUserDeletionJob job = bulkUserDeletionService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse("Bulk user deletion job not found or expired"));
         }
-        return password.toString();
+        return ResponseEntity.ok(job);
     }
     
     // Get current user's profile with their assigned domains
@@ -7,7 +7,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "answers")
+@Table(name = "answers",
+    indexes = {
+        // Answer listings go newest first and continue after a (submitted_at, id) position
+        @Index(name = "idx_answers_user_submitted", columnList = "user_id, submitted_at, id"),
+        @Index(name = "idx_answers_question_submitted", columnList = "question_id, submitted_at, id")
+    })
 public class Answer {
     
     @Id
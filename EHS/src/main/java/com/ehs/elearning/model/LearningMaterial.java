@@ -9,7 +9,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 import com.fasterxml.jackson.annotation.JsonInclude;
 @Entity
-@Table(name = "learning_materials")
+@Table(name = "learning_materials",
+    indexes = {
+        // Stored files are shared; releasing one and the sweeper count references by path
+        @Index(name = "idx_learning_materials_file_path", columnList = "file_path")
+    })
 public class LearningMaterial {
     
 	@Transient
@@ -69,6 +73,10 @@ public class LearningMaterial {
     
     private String filePath; // Path to stored file
     
+    private String contentType; // MIME type detected from the file's magic bytes at upload
+    
+    private String compressedEncodings; // Precompressed variants of the stored file, e.g. "br,gzip"
+    
     @Column(columnDefinition = "text")
     private String content; // For direct HTML content
     
@@ -139,6 +147,22 @@ public class LearningMaterial {
         this.filePath = filePath;
     }
 
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getCompressedEncodings() {
+        return compressedEncodings;
+    }
+
+    public void setCompressedEncodings(String compressedEncodings) {
+        this.compressedEncodings = compressedEncodings;
+    }
+
     public String getContent() {
         return content;
     }
@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "material_progress")
+@Table(name = "material_progress",
+    indexes = {
+        // Per-user lookups, and the per-user deletes of bulk user removal
+        @Index(name = "idx_material_progress_user", columnList = "user_id, material_id")
+    })
 public class MaterialProgress {
     
     @Id
@@ -0,0 +1,154 @@
+package com.ehs.elearning.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A resumable file upload in progress. The bytes received so far are kept as a partial upload
+ * by the storage backend; its size is the authoritative upload offset.
+ */
+@Entity
+@Table(name = "material_uploads")
+public class MaterialUpload {
+    
+    @Id
+    @GeneratedValue
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "component_id", nullable = false)
+    private ModuleComponent component;
+    
+    @NotBlank
+    @Size(max = 100)
+    private String title;
+    
+    @Size(max = 500)
+    private String description;
+    
+    @NotNull
+    private String fileType;
+    
+    private String originalFileName;
+    
+    @NotNull
+    private String stagingFileName; // Key of the partial upload in the storage backend
+    
+    @NotNull
+    private Long uploadLength; // Total size announced by the client, in bytes
+    
+    private Integer estimatedDuration; // in seconds
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime lastActivityAt;
+    
+    // Set while an instance writes a chunk; only changed by ChunkedUploadService's own updates,
+    // so saving the entity never clears another instance's lease
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime chunkLockedUntil;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        lastActivityAt = createdAt;
+    }
+    
+    // Constructors
+    public MaterialUpload() {
+    }
+    
+    // Getters and Setters
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public ModuleComponent getComponent() {
+        return component;
+    }
+
+    public void setComponent(ModuleComponent component) {
+        this.component = component;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public String getOriginalFileName() {
+        return originalFileName;
+    }
+
+    public void setOriginalFileName(String originalFileName) {
+        this.originalFileName = originalFileName;
+    }
+
+    public String getStagingFileName() {
+        return stagingFileName;
+    }
+
+    public void setStagingFileName(String stagingFileName) {
+        this.stagingFileName = stagingFileName;
+    }
+
+    public Long getUploadLength() {
+        return uploadLength;
+    }
+
+    public void setUploadLength(Long uploadLength) {
+        this.uploadLength = uploadLength;
+    }
+
+    public Integer getEstimatedDuration() {
+        return estimatedDuration;
+    }
+
+    public void setEstimatedDuration(Integer estimatedDuration) {
+        this.estimatedDuration = estimatedDuration;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public LocalDateTime getChunkLockedUntil() {
+        return chunkLockedUntil;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ehs.elearning.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * When an upload last reused an already stored file. Kept apart from the file itself, so
+ * marking a shared file as in use leaves its validators (ETag, Last-Modified) alone. Written
+ * and read by FileStorageService under the file's advisory lock.
+ */
+@Entity
+@Table(name = "stored_file_reuses")
+public class StoredFileReuse {
+
+    @Id
+    private String fileName;
+
+    @Column(nullable = false)
+    private LocalDateTime reusedAt;
+
+    public StoredFileReuse() {
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public LocalDateTime getReusedAt() {
+        return reusedAt;
+    }
+}
@@ -10,7 +10,14 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "training_modules")
+@Table(name = "training_modules",
+    indexes = {
+        // Listings filter by status or domain and sort by title by default
+        @Index(name = "idx_training_modules_status_title", columnList = "status, title"),
+        @Index(name = "idx_training_modules_domain_status", columnList = "domain_id, status"),
+        @Index(name = "idx_training_modules_created_by", columnList = "created_by"),
+        @Index(name = "idx_training_modules_created_at", columnList = "created_at")
+    })
 public class TrainingModule {
     
     @Id
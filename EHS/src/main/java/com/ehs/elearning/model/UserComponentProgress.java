@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "user_component_progress")
+@Table(name = "user_component_progress",
+    indexes = {
+        // Per-user lookups, and the per-user deletes of bulk user removal
+        @Index(name = "idx_user_component_progress_user", columnList = "user_id, component_id")
+    })
 public class UserComponentProgress {
     
     @Id
@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "user_module_progress")
+@Table(name = "user_module_progress",
+    indexes = {
+        // Per-user lookups, and the per-user deletes of bulk user removal
+        @Index(name = "idx_user_module_progress_user", columnList = "user_id, module_id")
+    })
 public class UserModuleProgress {
     
     @Id
@@ -6,7 +6,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "user_progress")
+@Table(name = "user_progress",
+    indexes = {
+        // History listings go newest first and continue after a (timestamp, id) position
+        @Index(name = "idx_user_progress_user_timestamp", columnList = "user_id, timestamp, id"),
+        @Index(name = "idx_user_progress_module_timestamp", columnList = "module_id, timestamp, id")
+    })
 public class UserProgress {
     
     @Id
@@ -1,5 +1,6 @@
 package com.ehs.elearning.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -14,6 +15,11 @@ import java.util.UUID;
     uniqueConstraints = {
         @UniqueConstraint(columnNames = "username"),
         @UniqueConstraint(columnNames = "email")
+    },
+    indexes = {
+        @Index(name = "idx_users_role", columnList = "role"),
+        @Index(name = "idx_users_department", columnList = "department"),
+        @Index(name = "idx_users_job_title", columnList = "job_title")
     })
 public class Users {
     
@@ -27,6 +33,7 @@ public class Users {
     
     @NotBlank
     @Size(max = 100)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) // Never send the hash to clients
     private String password;
     
     @NotBlank
@@ -46,7 +53,9 @@ public class Users {
     @JoinTable(
         name = "user_domains",
         joinColumns = @JoinColumn(name = "user_id"),
-        inverseJoinColumns = @JoinColumn(name = "domain_id")
+        inverseJoinColumns = @JoinColumn(name = "domain_id"),
+        // The primary key leads with user_id; this one serves lookups and counts by domain
+        indexes = @Index(name = "idx_user_domains_domain", columnList = "domain_id, user_id")
     )
     private Set<Domain> domains = new HashSet<>();
     
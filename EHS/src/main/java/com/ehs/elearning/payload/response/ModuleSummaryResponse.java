@@ -0,0 +1,165 @@
+package com.ehs.elearning.payload.response;
+
+import com.ehs.elearning.model.ModuleStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of a module shown in catalog lists, selected directly by listing queries together
+ * with the few domain and author columns displayed next to them
+ */
+public class ModuleSummaryResponse {
+
+    private final UUID id;
+    private final String title;
+    private final String description;
+    private final ModuleStatus status;
+    private final LocalDateTime createdAt;
+    private final Integer estimatedDuration;
+    private final Integer requiredCompletionScore;
+    private final DomainSummary domain;
+    private final AuthorSummary createdBy;
+
+    // Access flags, only present in listings that report them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean hasAccess;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean hasAssignedAccess;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean canView;
+
+    public ModuleSummaryResponse(UUID id, String title, String description, ModuleStatus status,
+                                 LocalDateTime createdAt, Integer estimatedDuration, Integer requiredCompletionScore,
+                                 UUID domainId, String domainName, String domainDescription,
+                                 UUID authorId, String authorUsername, String authorFirstName, String authorLastName) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.estimatedDuration = estimatedDuration;
+        this.requiredCompletionScore = requiredCompletionScore;
+        this.domain = new DomainSummary(domainId, domainName, domainDescription);
+        this.createdBy = new AuthorSummary(authorId, authorUsername, authorFirstName, authorLastName);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public ModuleStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Integer getEstimatedDuration() {
+        return estimatedDuration;
+    }
+
+    public Integer getRequiredCompletionScore() {
+        return requiredCompletionScore;
+    }
+
+    public DomainSummary getDomain() {
+        return domain;
+    }
+
+    public AuthorSummary getCreatedBy() {
+        return createdBy;
+    }
+
+    public Boolean getHasAccess() {
+        return hasAccess;
+    }
+
+    public void setHasAccess(Boolean hasAccess) {
+        this.hasAccess = hasAccess;
+    }
+
+    public Boolean getHasAssignedAccess() {
+        return hasAssignedAccess;
+    }
+
+    public void setHasAssignedAccess(Boolean hasAssignedAccess) {
+        this.hasAssignedAccess = hasAssignedAccess;
+    }
+
+    public Boolean getCanView() {
+        return canView;
+    }
+
+    public void setCanView(Boolean canView) {
+        this.canView = canView;
+    }
+
+    public static class DomainSummary {
+
+        private final UUID id;
+        private final String name;
+        private final String description;
+
+        public DomainSummary(UUID id, String name, String description) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public static class AuthorSummary {
+
+        private final UUID id;
+        private final String username;
+        private final String firstName;
+        private final String lastName;
+
+        public AuthorSummary(UUID id, String username, String firstName, String lastName) {
+            this.id = id;
+            this.username = username;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ehs.elearning.payload.response;
+
+import java.util.UUID;
+
+/**
+ * One full-text search match: a module, component, learning material or question, with the
+ * module it belongs to and a snippet in which the matched words are wrapped in mark tags.
+ * The snippet is HTML-escaped apart from those tags; the titles are plain text.
+ */
+public class SearchHitResponse {
+
+    private final String type;
+    private final UUID id;
+    private final UUID moduleId;
+    private final String moduleTitle;
+    private final String title;
+    private final String snippet;
+    private final double rank;
+
+    public SearchHitResponse(String type, UUID id, UUID moduleId, String moduleTitle, String title,
+                             String snippet, double rank) {
+        this.type = type;
+        this.id = id;
+        this.moduleId = moduleId;
+        this.moduleTitle = moduleTitle;
+        this.title = title;
+        this.snippet = snippet;
+        this.rank = rank;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getModuleId() {
+        return moduleId;
+    }
+
+    public String getModuleTitle() {
+        return moduleTitle;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public double getRank() {
+        return rank;
+    }
+}
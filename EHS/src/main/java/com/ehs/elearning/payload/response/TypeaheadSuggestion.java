@@ -0,0 +1,40 @@
+package com.ehs.elearning.payload.response;
+
+import java.util.UUID;
+
+/**
+ * A published module or a domain whose title matches what the user is typing
+ */
+public class TypeaheadSuggestion {
+
+    private final String type;
+    private final UUID id;
+    private final String title;
+    private final UUID domainId;
+
+    public TypeaheadSuggestion(String type, UUID id, String title, UUID domainId) {
+        this.type = type;
+        this.id = id;
+        this.title = title;
+        this.domainId = domainId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return The module's domain, or for a domain its own id
+     */
+    public UUID getDomainId() {
+        return domainId;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ehs.elearning.payload.response;
+
+import com.ehs.elearning.model.Role;
+
+import java.util.UUID;
+
+/**
+ * The columns of a user shown in admin lists, selected directly by search queries
+ */
+public class UserSummaryResponse {
+
+    private final UUID id;
+    private final String username;
+    private final String email;
+    private final Role role;
+    private final String firstName;
+    private final String lastName;
+    private final String jobTitle;
+    private final String department;
+
+    public UserSummaryResponse(UUID id, String username, String email, Role role, String firstName,
+                               String lastName, String jobTitle, String department) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.role = role;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.jobTitle = jobTitle;
+        this.department = department;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getJobTitle() {
+        return jobTitle;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+}
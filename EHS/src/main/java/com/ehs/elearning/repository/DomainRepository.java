@@ -3,6 +3,8 @@ package com.ehs.elearning.repository;
 
 import com.ehs.elearning.model.Domain;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +14,12 @@ import java.util.UUID;
 public interface DomainRepository extends JpaRepository<Domain, UUID> {
     boolean existsByName(String name);
     List<Domain> findByNameContainingIgnoreCase(String name);
+    
+    // Answered from the (domain_id, user_id) index of the join table
+    @Query(value = "SELECT count(*) FROM user_domains WHERE domain_id = :domainId", nativeQuery = true)
+    long countMembers(@Param("domainId") UUID domainId);
+    
+    // Rows of [domain_id, member count], for domains with at least one member
+    @Query(value = "SELECT domain_id, count(*) FROM user_domains GROUP BY domain_id", nativeQuery = true)
+    List<Object[]> countMembersByDomain();
 }
\ No newline at end of file
@@ -3,10 +3,17 @@ package com.ehs.elearning.repository;
 import com.ehs.elearning.model.LearningMaterial;
 import com.ehs.elearning.model.ModuleComponent;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -35,4 +42,49 @@ public interface LearningMaterialRepository extends JpaRepository<LearningMateri
      * @return Count of learning materials
      */
     long countByComponent(ModuleComponent component);
+    
+    /**
+     * Count the learning materials that reference a stored file
+     * 
+     * @param filePath The stored filename
+     * @return Count of referencing materials
+     */
+    long countByFilePath(String filePath);
+    
+    /**
+     * Find a learning material that references a stored file
+     * 
+     * @param filePath The stored filename
+     * @return Any one of the referencing materials
+     */
+    Optional<LearningMaterial> findFirstByFilePath(String filePath);
+    
+    /**
+     * Find which of the given stored files are referenced by a learning material
+     * 
+     * @param filePaths The stored filenames to check
+     * @return The subset that is referenced
+     */
+    @Query("SELECT DISTINCT m.filePath FROM LearningMaterial m WHERE m.filePath IN :filePaths")
+    Set<String> findReferencedFilePaths(@Param("filePaths") Collection<String> filePaths);
+    
+    /**
+     * Find learning materials whose stored file is a raster image, including ones uploaded
+     * before content types were detected
+     * 
+     * @param pageable The page to return
+     * @return A page of image materials
+     */
+    @Query("SELECT m FROM LearningMaterial m WHERE m.filePath IS NOT NULL AND "
+         + "(m.contentType IN ('image/jpeg', 'image/png', 'image/gif', 'image/bmp') "
+         + "OR (m.contentType IS NULL AND m.fileType = 'IMAGE'))")
+    Page<LearningMaterial> findImageMaterials(Pageable pageable);
+
+    /**
+     * Files of compressible materials whose compressed variants have not been recorded yet
+     */
+    @Query("SELECT DISTINCT m.filePath FROM LearningMaterial m WHERE m.filePath IS NOT NULL "
+         + "AND m.compressedEncodings IS NULL AND m.contentType IN :contentTypes")
+    List<String> findFilesAwaitingCompression(@Param("contentTypes") Collection<String> contentTypes,
+                                              Pageable pageable);
 }
\ No newline at end of file
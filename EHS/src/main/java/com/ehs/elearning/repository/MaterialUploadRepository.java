@@ -0,0 +1,22 @@
+package com.ehs.elearning.repository;
+
+import com.ehs.elearning.model.MaterialUpload;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MaterialUploadRepository extends JpaRepository<MaterialUpload, UUID> {
+    
+    /**
+     * Find uploads that have not received any data since the given time
+     * 
+     * @param cutoff The inactivity cutoff
+     * @return List of abandoned uploads
+     */
+    List<MaterialUpload> findByLastActivityAtBefore(LocalDateTime cutoff);
+}
\ No newline at end of file
@@ -22,15 +22,11 @@ public interface TrainingModuleRepository extends JpaRepository<TrainingModule,
     List<TrainingModule> findByDomainAndStatus(Domain domain, ModuleStatus status);
     List<TrainingModule> findByTitleContainingIgnoreCase(String title);
     
-    // Paged query methods for better pagination support
+    // Paged query methods for better pagination support; filtered listings go through ModuleQueryService
     Page<TrainingModule> findAll(Pageable pageable);
-    Page<TrainingModule> findByDomain(Domain domain, Pageable pageable);
     Page<TrainingModule> findByStatus(ModuleStatus status, Pageable pageable);
-    Page<TrainingModule> findByDomainAndStatus(Domain domain, ModuleStatus status, Pageable pageable);
     Page<TrainingModule> findByTitleContainingIgnoreCase(String title, Pageable pageable);
-    Page<TrainingModule> findByTitleContainingIgnoreCaseAndDomain(String title, Domain domain, Pageable pageable);
     Page<TrainingModule> findByTitleContainingIgnoreCaseAndStatus(String title, ModuleStatus status, Pageable pageable);
-    Page<TrainingModule> findByTitleContainingIgnoreCaseAndDomainAndStatus(String title, Domain domain, ModuleStatus status, Pageable pageable);
     
     // Additional query methods that might be useful
     List<TrainingModule> findByCreatedByAndStatus(Users createdBy, ModuleStatus status);
@@ -0,0 +1,86 @@
+package com.ehs.elearning.repository;
+
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.TrainingModule;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Composable filters for training module queries. Each returns null for a missing argument,
+ * which {@link Specification#and} ignores. Domain and creator are compared by their foreign
+ * key column, so no join and no lookup of the referenced row is needed.
+ */
+public final class TrainingModuleSpecifications {
+
+    private TrainingModuleSpecifications() {
+    }
+
+    public static Specification<TrainingModule> titleContains(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + text.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("title")), pattern, '\\');
+    }
+
+    public static Specification<TrainingModule> inDomain(UUID domainId) {
+        if (domainId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("domain").get("id"), domainId);
+    }
+
+    /**
+     * @param domainIds The allowed domains; an empty collection matches nothing
+     */
+    public static Specification<TrainingModule> inDomains(Collection<UUID> domainIds) {
+        if (domainIds == null) {
+            return null;
+        }
+        if (domainIds.isEmpty()) {
+            return (root, query, cb) -> cb.disjunction();
+        }
+        return (root, query, cb) -> root.get("domain").get("id").in(domainIds);
+    }
+
+    public static Specification<TrainingModule> hasStatus(ModuleStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<TrainingModule> createdBy(UUID userId) {
+        if (userId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("createdBy").get("id"), userId);
+    }
+
+    /**
+     * @param from Inclusive lower bound of the creation time
+     */
+    public static Specification<TrainingModule> createdFrom(LocalDateTime from) {
+        if (from == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), from);
+    }
+
+    /**
+     * @param to Exclusive upper bound of the creation time
+     */
+    public static Specification<TrainingModule> createdBefore(LocalDateTime to) {
+        if (to == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThan(root.get("createdAt"), to);
+    }
+}
@@ -1,10 +1,18 @@
 package com.ehs.elearning.repository;
 
+import com.ehs.elearning.model.Role;
 import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.UserSummaryResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -12,4 +20,22 @@ public interface UserRepository extends JpaRepository<Users, UUID> {
     Optional<Users> findByUsername(String username);
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email);
+    
+    @Query("SELECT u.role FROM Users u WHERE u.id = :id")
+    Optional<Role> findRoleById(@Param("id") UUID id);
+
+    @Query("SELECT u.username FROM Users u WHERE u.username IN :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.email FROM Users u WHERE u.email IN :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT d.id FROM Users u JOIN u.domains d WHERE u.id = :id")
+    Set<UUID> findDomainIdsById(@Param("id") UUID id);
+
+    @Query(value = "SELECT new com.ehs.elearning.payload.response.UserSummaryResponse("
+            + "u.id, u.username, u.email, u.role, u.firstName, u.lastName, u.jobTitle, u.department) "
+            + "FROM Users u JOIN u.domains d WHERE d.id = :domainId",
+            countQuery = "SELECT count(u) FROM Users u JOIN u.domains d WHERE d.id = :domainId")
+    Page<UserSummaryResponse> findSummariesByDomainId(@Param("domainId") UUID domainId, Pageable pageable);
 }
\ No newline at end of file
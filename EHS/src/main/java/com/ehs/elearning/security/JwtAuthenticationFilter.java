@@ -9,10 +9,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -21,6 +23,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
 
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -31,15 +36,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             if (jwt != null) {
                
                 
-                if (jwtTokenProvider.validateToken(jwt)) {
-                    Authentication auth = jwtTokenProvider.getAuthentication(jwt);
+                // Verified once; everything below works from the parsed claims
+                JwtClaims claims = jwtTokenProvider.parseToken(jwt);
+                if (claims != null && tokenRevocationList.isRevoked(claims)) {
+                    claims = null;
+                }
+                Authentication auth = claims != null ? jwtTokenProvider.getAuthentication(claims) : null;
+                if (auth != null) {
                     
                     // Set authentication in context
                     SecurityContextHolder.getContext().setAuthentication(auth);
                     
                     // Optional: You can also add token claims as request attributes for easier access in controllers
-                    request.setAttribute("userId", jwtTokenProvider.getUserIdFromToken(jwt));
-                    request.setAttribute("userRoles", jwtTokenProvider.getRolesFromToken(jwt));
+                    request.setAttribute("jwtClaims", claims);
+                    request.setAttribute("userId", claims.getUserId());
+                    request.setAttribute("userRoles", auth.getAuthorities().stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .collect(Collectors.joining(",")));
                     
                 
                 } else {
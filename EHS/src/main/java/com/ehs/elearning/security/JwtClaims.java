@@ -0,0 +1,102 @@
+package com.ehs.elearning.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The claims of a verified token, read once by {@link JwtTokenProvider#parseToken} and passed
+ * on to everything that needs them instead of the raw token.
+ */
+public class JwtClaims {
+
+    private final UUID tokenId;
+    private final String username;
+    private final UUID userId;
+    private final String email;
+    private final List<String> roles;
+    private final Date issuedAt;
+    private final Date expiration;
+
+    public JwtClaims(UUID tokenId, String username, UUID userId, String email, List<String> roles, Date issuedAt,
+                     Date expiration) {
+        this.tokenId = tokenId;
+        this.username = username;
+        this.userId = userId;
+        this.email = email;
+        this.roles = roles;
+        this.issuedAt = issuedAt;
+        this.expiration = expiration;
+    }
+
+    /**
+     * Read the claims set by {@link JwtTokenProvider#generateToken}
+     *
+     * @param fallbackTokenId Identifies tokens issued without a "jti" claim
+     */
+    static JwtClaims from(Claims claims, UUID fallbackTokenId) {
+        String id = claims.get("id", String.class);
+        String roles = claims.get("roles", String.class);
+        return new JwtClaims(
+                claims.getId() != null ? UUID.fromString(claims.getId()) : fallbackTokenId,
+                claims.getSubject(),
+                id != null ? UUID.fromString(id) : null,
+                claims.get("email", String.class),
+                roles != null && !roles.isEmpty()
+                        ? Collections.unmodifiableList(Arrays.stream(roles.split(",")).collect(Collectors.toList()))
+                        : Collections.emptyList(),
+                getIssuedAt(claims),
+                claims.getExpiration());
+    }
+
+    /**
+     * The standard "iat" claim has whole seconds only; tokens issued before the millisecond
+     * claim was added fall back to it
+     */
+    private static Date getIssuedAt(Claims claims) {
+        Long issuedAtMillis = claims.get(JwtTokenProvider.ISSUED_AT_MILLIS_CLAIM, Long.class);
+        return issuedAtMillis != null ? new Date(issuedAtMillis) : claims.getIssuedAt();
+    }
+
+    /**
+     * @return The "jti" claim, used to revoke this token alone
+     */
+    public UUID getTokenId() {
+        return tokenId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return Granted authorities, e.g. "ROLE_ADMIN"
+     */
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return The issue time to the millisecond, or to the second for older tokens
+     */
+    public Date getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Date getExpiration() {
+        return expiration;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ehs.elearning.security;
 
+import com.ehs.elearning.model.Role;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -12,6 +13,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
@@ -21,7 +23,9 @@ import javax.crypto.SecretKey;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -30,6 +34,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class JwtTokenProvider {
 
+    /**
+     * Issue time in epoch milliseconds, so a sign-out and a new sign-in in the same second can
+     * be told apart
+     */
+    static final String ISSUED_AT_MILLIS_CLAIM = "issuedAtMillis";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
@@ -42,14 +52,29 @@ public class JwtTokenProvider {
     @Value("${jwt.prefix}")
     private String jwtPrefix;
 
+    // Build the principal from the token instead of loading the user on every request
+    @Value("${jwt.stateless:true}")
+    private boolean stateless;
+
     private SecretKey secretKey;
+
+    // Immutable and thread-safe, so built once instead of per call
+    private JwtParser jwtParser;
+
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private UserRoleCache userRoleCache;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
     @PostConstruct
     protected void init() {
         String encodedSecret = Base64.getEncoder().encodeToString(jwtSecret.getBytes());
         secretKey = Keys.hmacShaKeyFor(encodedSecret.getBytes());
+        jwtParser = Jwts.parserBuilder().setSigningKey(secretKey).build();
     }
 
     public String generateToken(Authentication authentication) {
@@ -69,9 +94,11 @@ public class JwtTokenProvider {
         
         // Add email to the token
         claims.put("email", userPrincipal.getEmail());
+        claims.put(ISSUED_AT_MILLIS_CLAIM, now.getTime());
 
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userPrincipal.getUsername())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
@@ -79,48 +106,28 @@ public class JwtTokenProvider {
                 .compact();
     }
 
-    public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
-    
-    public UUID getUserIdFromToken(String token) {
-        String id = Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("id", String.class);
-        return UUID.fromString(id);
-    }
-    
-    public String getRolesFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("roles", String.class);
-    }
+    /**
+     * Verify a token and read its claims. This is the only place a token is parsed, and a
+     * token seen before is answered from the verified-token cache without a signature check.
+     *
+     * @return The claims, or null if the token is invalid or expired
+     */
+    public JwtClaims parseToken(String token) {
+        byte[] digest = verifiedTokenCache.digest(token);
+        JwtClaims cached = verifiedTokenCache.get(digest);
+        if (cached != null) {
+            return cached;
+        }
 
-    public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token);
-            return true;
-        } catch (SecurityException | MalformedJwtException e) {
-
-        } catch (ExpiredJwtException e) {
-    
-        } catch (UnsupportedJwtException e) {
-  
-        } catch (IllegalArgumentException e) {
-      
+            // Tokens issued before "jti" was added are identified by their digest
+            JwtClaims claims = JwtClaims.from(jwtParser.parseClaimsJws(token).getBody(), UUID.nameUUIDFromBytes(digest));
+            verifiedTokenCache.put(digest, claims);
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            // Invalid signature, malformed, expired or unsupported token
+            return null;
         }
-        return false;
     }
 
     public String resolveToken(HttpServletRequest request) {
@@ -131,8 +138,31 @@ public class JwtTokenProvider {
         return null;
     }
 
-    public Authentication getAuthentication(String token) {
-        UserDetails userDetails = userDetailsService.loadUserByUsername(getUsernameFromToken(token));
-        return new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
+    /**
+     * Build the authentication for verified claims
+     *
+     * @return The authentication, or null if the user no longer exists
+     */
+    public Authentication getAuthentication(JwtClaims claims) {
+        if (!stateless) {
+            UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getUsername());
+            return new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
+        }
+
+        if (claims.getUserId() == null) {
+            return null;
+        }
+
+        // The role comes from a short-lived cache so role changes and deletions are not
+        // held back until the token expires
+        Optional<Role> role = userRoleCache.getRole(claims.getUserId());
+        if (!role.isPresent()) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.get().name()));
+        UserDetailsImpl userDetails = new UserDetailsImpl(
+                claims.getUserId(), claims.getUsername(), claims.getEmail(), "", authorities);
+        return new UsernamePasswordAuthenticationToken(userDetails, "", authorities);
     }
 }
\ No newline at end of file
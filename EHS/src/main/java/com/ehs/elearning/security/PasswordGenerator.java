@@ -0,0 +1,32 @@
+package com.ehs.elearning.security;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+
+/**
+ * Generates the initial passwords of users created by an administrator, singly or in bulk.
+ * The plain password is returned to the administrator once; only its hash is stored.
+ */
+@Component
+public class PasswordGenerator {
+
+    private static final String ALPHANUMERIC_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private static final String PASSWORD_CHARS = ALPHANUMERIC_CHARS + "!@#$%^&*";
+
+    private static final int PASSWORD_LENGTH = 10;
+
+    // Thread-safe, and seeding it once is what makes it cheap
+    private final SecureRandom random = new SecureRandom();
+
+    public String generate() {
+        StringBuilder password = new StringBuilder(PASSWORD_LENGTH);
+        // A leading "@" would be read as a formula where passwords end up in spreadsheets
+        password.append(ALPHANUMERIC_CHARS.charAt(random.nextInt(ALPHANUMERIC_CHARS.length())));
+        for (int i = 1; i < PASSWORD_LENGTH; i++) {
+            password.append(PASSWORD_CHARS.charAt(random.nextInt(PASSWORD_CHARS.length())));
+        }
+        return password.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.ehs.elearning.security;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt work (login verification, password hashing) on a dedicated bounded pool so a
+ * login storm cannot take over the request threads other API calls need. When the queue is
+ * full, or a task has waited longer than a client would, work is rejected straight away and
+ * the caller answers 503 instead of letting requests pile up.
+ */
+@Component
+public class PasswordHashingService {
+
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitMs;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitMs = new AtomicLong();
+    private final AtomicLong totalRunMs = new AtomicLong();
+
+    public PasswordHashingService(@Value("${auth.password.threads:0}") int threads,
+                                  @Value("${auth.password.queue-capacity:200}") int queueCapacity,
+                                  @Value("${auth.password.max-queue-wait-ms:10000}") long maxQueueWaitMs) {
+        // BCrypt is pure CPU; more threads than cores only adds contention
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.maxQueueWaitMs = maxQueueWaitMs;
+    }
+
+    /**
+     * Run password work on the hashing pool
+     *
+     * @return The result, completed exceptionally with RejectedExecutionException if the task
+     *         waited longer than the configured maximum
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long queuedAt = System.currentTimeMillis();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.currentTimeMillis();
+                totalQueueWaitMs.addAndGet(startedAt - queuedAt);
+                if (startedAt - queuedAt > maxQueueWaitMs) {
+                    // The client has most likely given up; do not spend a hash on it
+                    expiredCount.incrementAndGet();
+                    throw new RejectedExecutionException("Password verification waited too long");
+                }
+
+                try {
+                    return task.get();
+                } finally {
+                    completedCount.incrementAndGet();
+                    totalRunMs.addAndGet(System.currentTimeMillis() - startedAt);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Pool size, queue depth and rejection counters
+     */
+    public Map<String, Object> getStats() {
+        long completed = completedCount.get();
+        long started = completed + expiredCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        stats.put("completedCount", completed);
+        stats.put("rejectedCount", rejectedCount.get());
+        stats.put("expiredCount", expiredCount.get());
+        stats.put("averageQueueWaitMs", started > 0 ? (double) totalQueueWaitMs.get() / started : 0);
+        stats.put("averageRunMs", completed > 0 ? (double) totalRunMs.get() / completed : 0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -2,6 +2,7 @@ package com.ehs.elearning.security;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -13,7 +14,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -37,6 +37,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationEntryPoint unauthorizedHandler;
 
+    @Value("${auth.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
@@ -47,6 +50,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Stored hashes with a different BCrypt cost are replaced after a successful login
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -57,7 +62,7 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new RehashingBCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -68,13 +73,33 @@ public class SecurityConfig {
             "http://localhost:8080",  // Spring Boot backend
             "https://your-production-domain.com"
         ));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList(
             "authorization", 
             "content-type", 
-            "x-auth-token"
+            "x-auth-token",
+            "upload-length",   // Resumable uploads
+            "upload-offset",
+            "range",           // Partial content requests
+            "if-range",
+            "if-none-match",
+            "if-modified-since"
+        ));
+        configuration.setExposedHeaders(Arrays.asList(
+            "x-auth-token",
+            "upload-offset",
+            "upload-length",
+            "location",
+            "accept-ranges",
+            "content-range",
+            "etag",
+            "x-total-pages",   // Paged listings
+            "x-total-elements",
+            "x-total-count",
+            "x-has-next",
+            "x-next-cursor",   // Cursor listings
+            "x-total-estimate"
         ));
-        configuration.setExposedHeaders(Arrays.asList("x-auth-token"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -118,6 +143,7 @@ public class SecurityConfig {
                     .requestMatchers("/api/modules/{id}/publish").hasAuthority("ROLE_ADMIN")  // Only ADMIN can publish modules
                     .requestMatchers("/api/modules/{id}/archive").hasAuthority("ROLE_ADMIN")  // Only ADMIN can archive modules
                     .requestMatchers("/api/modules/{id}/clone").authenticated()  // All users can clone modules
+                    .requestMatchers(HttpMethod.GET, "/api/search").authenticated()  // All users can search content (filtered by service)
                     
                     // Component management endpoints
                     .requestMatchers(HttpMethod.GET, "/api/modules/{moduleId}/components").authenticated()  // All users can view components
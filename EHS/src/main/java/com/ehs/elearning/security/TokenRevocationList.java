@@ -0,0 +1,146 @@
+package com.ehs.elearning.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory denylist of revoked tokens: single tokens revoked at logout, and all tokens of a
+ * user issued before a point in time for forced sign-out. A Bloom filter over token and user
+ * ids sits in front of the exact maps, so the check made on every request is a few bit
+ * tests with no allocation; only ids the filter reports are looked up in the maps. Entries
+ * are dropped once the tokens they cover have expired, and the filter is then rebuilt.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final int HASH_FUNCTIONS = 4;
+
+    // Token id -> expiry of that token (epoch millis)
+    private final Map<UUID, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // User id -> tokens issued before this time are revoked (epoch millis)
+    private final Map<UUID, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    private final int bloomBits;
+    private final long jwtExpirationMs;
+
+    private volatile AtomicLongArray bloom;
+
+    public TokenRevocationList(@Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits,
+                               @Value("${jwt.expiration}") long jwtExpirationMs) {
+        // Round up to a power of two so a probe is a mask instead of a division
+        this.bloomBits = Integer.highestOneBit(Math.max(64, bloomBits - 1)) << 1;
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.bloom = new AtomicLongArray(this.bloomBits / 64);
+    }
+
+    /**
+     * @return true if the token was revoked, by itself or by a sign-out of its user
+     */
+    public boolean isRevoked(JwtClaims claims) {
+        AtomicLongArray filter = bloom;
+
+        UUID tokenId = claims.getTokenId();
+        if (tokenId != null && mightContain(filter, tokenId) && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+
+        UUID userId = claims.getUserId();
+        if (userId != null && mightContain(filter, userId)) {
+            Long revokedBefore = revokedUsers.get(userId);
+            // Strictly before: a sign-in right after the sign-out, even in the same second, stays valid
+            return revokedBefore != null && claims.getIssuedAt() != null
+                    && claims.getIssuedAt().getTime() < revokedBefore;
+        }
+        return false;
+    }
+
+    /**
+     * Revoke a single token, e.g. at logout
+     */
+    public synchronized void revokeToken(JwtClaims claims) {
+        long expiresAt = claims.getExpiration() != null
+                ? claims.getExpiration().getTime()
+                : System.currentTimeMillis() + jwtExpirationMs;
+        revokedTokens.put(claims.getTokenId(), expiresAt);
+        add(bloom, claims.getTokenId());
+    }
+
+    /**
+     * Revoke every token issued to a user so far; the user has to sign in again
+     */
+    public synchronized void revokeUser(UUID userId) {
+        revokedUsers.put(userId, System.currentTimeMillis());
+        add(bloom, userId);
+    }
+
+    /**
+     * Drop entries whose tokens have all expired and rebuild the filter without them, so its
+     * false positive rate does not grow over time
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval:600000}")
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        boolean removed = revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        removed |= revokedUsers.values().removeIf(revokedBefore -> revokedBefore + jwtExpirationMs < now);
+        if (!removed) {
+            return;
+        }
+
+        AtomicLongArray filter = new AtomicLongArray(bloomBits / 64);
+        revokedTokens.keySet().forEach(tokenId -> add(filter, tokenId));
+        revokedUsers.keySet().forEach(userId -> add(filter, userId));
+        bloom = filter;
+    }
+
+    /**
+     * @return Number of revoked tokens and signed-out users currently tracked
+     */
+    public int size() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+
+    private boolean mightContain(AtomicLongArray filter, UUID id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (h1 + i * h2) & (bloomBits - 1);
+            if ((filter.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(AtomicLongArray filter, UUID id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (h1 + i * h2) & (bloomBits - 1);
+            long mask = 1L << bit;
+            filter.getAndUpdate(bit >>> 6, word -> word | mask);
+        }
+    }
+
+    /**
+     * 64-bit mix of both halves of the id (the MurmurHash3 finalizer); ids may be random or
+     * name-based, so the bits are spread before use
+     */
+    private long hash(UUID id) {
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fca8ea52bL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
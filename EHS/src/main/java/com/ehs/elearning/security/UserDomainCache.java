@@ -0,0 +1,52 @@
+package com.ehs.elearning.security;
+
+import com.ehs.elearning.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ids of the domains each user is assigned to, read from the database at most once per TTL,
+ * for hot paths that filter by domain access. Assignments made on this instance take effect
+ * immediately via {@link #invalidate}; those made elsewhere within the TTL.
+ */
+@Component
+public class UserDomainCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Cache<UUID, Set<UUID>> cache;
+
+    public UserDomainCache(@Value("${jwt.user-status-ttl:PT1M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * @return The user's domain ids; empty if the user has none or does not exist
+     */
+    public Set<UUID> getDomainIds(UUID userId) {
+        return cache.get(userId, id -> Set.copyOf(userRepository.findDomainIdsById(id)));
+    }
+
+    /**
+     * Forget the domains of a user whose assignments changed
+     */
+    public void invalidate(UUID userId) {
+        cache.invalidate(userId);
+    }
+
+    public void invalidateAll(Collection<UUID> userIds) {
+        cache.invalidateAll(userIds);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ehs.elearning.security;
+
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Current role of each user, read from the database at most once per TTL. Stateless
+ * authentication checks tokens against it, so a role change or deletion reaches every
+ * instance within the TTL, and the instance that made the change immediately via
+ * {@link #invalidate}.
+ */
+@Component
+public class UserRoleCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Cache<UUID, Optional<Role>> cache;
+
+    public UserRoleCache(@Value("${jwt.user-status-ttl:PT1M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * @return The user's current role, or empty if the user no longer exists
+     */
+    public Optional<Role> getRole(UUID userId) {
+        return cache.get(userId, userRepository::findRoleById);
+    }
+
+    /**
+     * Forget what is known about a user whose role changed or who was deleted
+     */
+    public void invalidate(UUID userId) {
+        cache.invalidate(userId);
+    }
+
+    public void invalidateAll(Collection<UUID> userIds) {
+        cache.invalidateAll(userIds);
+    }
+}
@@ -0,0 +1,86 @@
+package com.ehs.elearning.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims of tokens whose signature has already been verified, keyed by the token's SHA-256
+ * so the tokens themselves are not kept in memory. An entry lives until its token expires,
+ * so a client that sends the same token all day pays for one HMAC verification.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final boolean enabled;
+    private final Cache<ByteBuffer, JwtClaims> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.token-cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.token-cache.max-size:100000}") long maxSize,
+                              @Value("${jwt.expiration}") long jwtExpirationMs) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<ByteBuffer, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, JwtClaims claims, long currentTime) {
+                        long remainingMs = claims.getExpiration() != null
+                                ? claims.getExpiration().getTime() - System.currentTimeMillis()
+                                : jwtExpirationMs;
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, JwtClaims claims, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, JwtClaims claims, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return The SHA-256 of a token, the key for {@link #get} and {@link #put}
+     */
+    public byte[] digest(String token) {
+        return SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return The verified claims of the token with this digest, or null if not cached
+     */
+    public JwtClaims get(byte[] digest) {
+        return enabled ? cache.getIfPresent(ByteBuffer.wrap(digest)) : null;
+    }
+
+    /**
+     * Remember the claims of a token whose signature was verified
+     */
+    public void put(byte[] digest, JwtClaims claims) {
+        if (enabled) {
+            cache.put(ByteBuffer.wrap(digest), claims);
+        }
+    }
+}
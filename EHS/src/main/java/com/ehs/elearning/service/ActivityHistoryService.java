@@ -0,0 +1,176 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.Answer;
+import com.ehs.elearning.model.UserProgress;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Newest-first, cursor-paginated listings of progress records and submitted answers. Both
+ * tables only grow, so the rows are selected as plain columns: loading the entities would pull
+ * in the user, module, component and material of every row, which are mapped eagerly.
+ */
+@Service
+public class ActivityHistoryService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TotalCountCache totalCountCache;
+
+    /**
+     * Find progress records, newest first
+     *
+     * @param userId Only this user's records; optional
+     * @param moduleId Only records for this module; optional
+     * @param cursor Where to continue, or null for the first page
+     * @throws IllegalArgumentException if the cursor does not belong to this listing
+     */
+    public KeysetPage<Map<String, Object>> findProgress(UUID userId, UUID moduleId, KeysetCursor cursor, int size) {
+        checkCursor(cursor, "timestamp", size);
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> select = cb.createTupleQuery();
+        Root<UserProgress> progress = select.from(UserProgress.class);
+
+        List<Predicate> predicates = progressFilters(cb, progress, userId, moduleId);
+        if (cursor != null) {
+            predicates.add(cursor.after(cb, progress));
+        }
+        // The ids come from the foreign key columns, without joining the referenced tables
+        select.multiselect(
+                        progress.get("id").alias("id"),
+                        progress.get("user").get("id").alias("userId"),
+                        progress.get("module").get("id").alias("moduleId"),
+                        progress.get("component").get("id").alias("componentId"),
+                        progress.get("material").get("id").alias("materialId"),
+                        progress.get("progressType").alias("progressType"),
+                        progress.get("progressValue").alias("progressValue"),
+                        progress.get("scoreValue").alias("scoreValue"),
+                        progress.get("timeSpent").alias("timeSpent"),
+                        progress.get("timestamp").alias("timestamp"))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(KeysetCursor.orderBy(cb, progress, "timestamp", false));
+
+        return fetch(select, size, "timestamp");
+    }
+
+    /**
+     * Number of progress records matching the filters, possibly cached for a short while
+     */
+    public long estimateProgressTotal(UUID userId, UUID moduleId) {
+        return totalCountCache.getTotal("progress|" + userId + "|" + moduleId, () -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> count = cb.createQuery(Long.class);
+            Root<UserProgress> progress = count.from(UserProgress.class);
+            count.select(cb.count(progress))
+                    .where(progressFilters(cb, progress, userId, moduleId).toArray(new Predicate[0]));
+            return entityManager.createQuery(count).getSingleResult();
+        });
+    }
+
+    /**
+     * Find submitted answers, newest first
+     *
+     * @param userId Only this user's answers; optional
+     * @param questionId Only answers to this question; optional
+     * @param cursor Where to continue, or null for the first page
+     * @throws IllegalArgumentException if the cursor does not belong to this listing
+     */
+    public KeysetPage<Map<String, Object>> findAnswers(UUID userId, UUID questionId, KeysetCursor cursor, int size) {
+        checkCursor(cursor, "submittedAt", size);
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> select = cb.createTupleQuery();
+        Root<Answer> answer = select.from(Answer.class);
+
+        List<Predicate> predicates = answerFilters(cb, answer, userId, questionId);
+        if (cursor != null) {
+            predicates.add(cursor.after(cb, answer));
+        }
+        select.multiselect(
+                        answer.get("id").alias("id"),
+                        answer.get("question").get("id").alias("questionId"),
+                        answer.get("user").get("id").alias("userId"),
+                        answer.get("userAnswer").alias("userAnswer"),
+                        answer.get("isCorrect").alias("isCorrect"),
+                        answer.get("score").alias("score"),
+                        answer.get("attemptNumber").alias("attemptNumber"),
+                        answer.get("submittedAt").alias("submittedAt"))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(KeysetCursor.orderBy(cb, answer, "submittedAt", false));
+
+        return fetch(select, size, "submittedAt");
+    }
+
+    /**
+     * Number of answers matching the filters, possibly cached for a short while
+     */
+    public long estimateAnswerTotal(UUID userId, UUID questionId) {
+        return totalCountCache.getTotal("answers|" + userId + "|" + questionId, () -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> count = cb.createQuery(Long.class);
+            Root<Answer> answer = count.from(Answer.class);
+            count.select(cb.count(answer))
+                    .where(answerFilters(cb, answer, userId, questionId).toArray(new Predicate[0]));
+            return entityManager.createQuery(count).getSingleResult();
+        });
+    }
+
+    private List<Predicate> progressFilters(CriteriaBuilder cb, Root<UserProgress> progress,
+                                            UUID userId, UUID moduleId) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (userId != null) {
+            predicates.add(cb.equal(progress.get("user").get("id"), userId));
+        }
+        if (moduleId != null) {
+            predicates.add(cb.equal(progress.get("module").get("id"), moduleId));
+        }
+        return predicates;
+    }
+
+    private List<Predicate> answerFilters(CriteriaBuilder cb, Root<Answer> answer, UUID userId, UUID questionId) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (userId != null) {
+            predicates.add(cb.equal(answer.get("user").get("id"), userId));
+        }
+        if (questionId != null) {
+            predicates.add(cb.equal(answer.get("question").get("id"), questionId));
+        }
+        return predicates;
+    }
+
+    private void checkCursor(KeysetCursor cursor, String sortBy, int size) {
+        if (cursor != null && (!sortBy.equals(cursor.getSortBy()) || cursor.isAscending())) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+    }
+
+    private KeysetPage<Map<String, Object>> fetch(CriteriaQuery<Tuple> select, int size, String sortBy) {
+        List<Tuple> rows = entityManager.createQuery(select).setMaxResults(size + 1).getResultList();
+        return KeysetPage.of(rows, size,
+                        row -> new KeysetCursor(sortBy, false, row.get(sortBy), row.get("id", UUID.class)))
+                .map(row -> {
+                    Map<String, Object> item = new HashMap<>();
+                    row.getElements().forEach(element -> item.put(element.getAlias(), row.get(element)));
+                    return item;
+                });
+    }
+}
@@ -0,0 +1,119 @@
+package com.ehs.elearning.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of an asynchronous bulk user deletion job
+ */
+public class BulkUserDeletionJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final UUID id = UUID.randomUUID();
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final int totalUsers;
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AtomicInteger notFound = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final List<UUID> skippedUserIds = Collections.synchronizedList(new ArrayList<>());
+    private volatile Status status = Status.PENDING;
+    private volatile String message;
+    private volatile LocalDateTime completedAt;
+
+    BulkUserDeletionJob(int totalUsers) {
+        this.totalUsers = totalUsers;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+        if (status == Status.COMPLETED || status == Status.FAILED) {
+            this.completedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * @return Why the job failed, or why some users could not be deleted
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    public int getTotalUsers() {
+        return totalUsers;
+    }
+
+    public int getProcessedUsers() {
+        return deleted.get() + notFound.get() + failed.get() + skippedUserIds.size();
+    }
+
+    public int getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return Users that did not exist (any more) when their chunk was processed
+     */
+    public int getNotFound() {
+        return notFound.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return Users kept because they created training modules, which cannot lose their author
+     */
+    public List<UUID> getSkippedUserIds() {
+        synchronized (skippedUserIds) {
+            return new ArrayList<>(skippedUserIds);
+        }
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    void addDeleted(int count) {
+        deleted.addAndGet(count);
+    }
+
+    void addNotFound(int count) {
+        notFound.addAndGet(count);
+    }
+
+    void addFailed(int count) {
+        failed.addAndGet(count);
+    }
+
+    void addSkipped(Collection<UUID> userIds) {
+        skippedUserIds.addAll(userIds);
+    }
+}
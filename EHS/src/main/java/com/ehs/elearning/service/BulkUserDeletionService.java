@@ -0,0 +1,225 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.security.TokenRevocationList;
+import com.ehs.elearning.security.UserRoleCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes users and their progress data in the background. Users are processed in chunks,
+ * each deleted with one statement per dependent table in its own short transaction. A lock
+ * timeout keeps a chunk from queueing behind learner activity for long: the chunk is retried
+ * after a back-off instead, and the job pauses between chunks to leave room for other work.
+ */
+@Service
+public class BulkUserDeletionService {
+
+    // Children first, so no foreign key is violated
+    private static final String[] DEPENDENT_DELETES = {
+            "DELETE FROM answers WHERE user_id = ANY(?)",
+            "DELETE FROM material_progress WHERE user_id = ANY(?)",
+            "DELETE FROM user_component_progress WHERE user_id = ANY(?)",
+            "DELETE FROM user_module_progress WHERE user_id = ANY(?)",
+            "DELETE FROM user_progress WHERE user_id = ANY(?)",
+            "DELETE FROM user_domains WHERE user_id = ANY(?)"
+    };
+
+    private static final String FIND_MODULE_AUTHORS_SQL =
+            "SELECT DISTINCT created_by FROM training_modules WHERE created_by = ANY(?)";
+
+    private static final String DELETE_USERS_SQL = "DELETE FROM users WHERE id = ANY(?) RETURNING id";
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final String LOCK_TIMEOUT_SQL_STATE = "55P03";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRoleCache userRoleCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Value("${bulk.users.delete-chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${bulk.users.delete-lock-timeout-ms:2000}")
+    private long lockTimeoutMs;
+
+    @Value("${bulk.users.delete-pause-ms:50}")
+    private long pauseMs;
+
+    private final ThreadPoolExecutor executor;
+    private final Cache<UUID, BulkUserDeletionJob> jobs;
+
+    public BulkUserDeletionService(@Value("${bulk.users.job-queue-capacity:10}") int jobQueueCapacity,
+                                   @Value("${bulk.users.job-retention:PT1H}") Duration jobRetention) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // One job at a time; deletions compete for the same rows and locks anyway
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(jobQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-user-delete-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobRetention)
+                .build();
+    }
+
+    /**
+     * Start deleting users in the background
+     *
+     * @return The job to poll
+     * @throws RejectedExecutionException if too many jobs are already waiting
+     */
+    public BulkUserDeletionJob startJob(Collection<UUID> userIds) {
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        BulkUserDeletionJob job = new BulkUserDeletionJob(ids.size());
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> {
+                job.setStatus(BulkUserDeletionJob.Status.RUNNING);
+                try {
+                    for (int i = 0; i < ids.size(); i += chunkSize) {
+                        if (i > 0 && pauseMs > 0) {
+                            Thread.sleep(pauseMs);
+                        }
+                        deleteChunk(job, ids.subList(i, Math.min(i + chunkSize, ids.size())));
+                    }
+                    job.setStatus(BulkUserDeletionJob.Status.COMPLETED);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    job.setMessage("Interrupted");
+                    job.setStatus(BulkUserDeletionJob.Status.FAILED);
+                } catch (Exception e) {
+                    System.err.println("Bulk user deletion job " + job.getId() + " failed: " + e.getMessage());
+                    job.setMessage(e.getMessage());
+                    job.setStatus(BulkUserDeletionJob.Status.FAILED);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Get a job started within the retention period
+     */
+    public BulkUserDeletionJob getJob(UUID jobId) {
+        return jobs.getIfPresent(jobId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void deleteChunk(BulkUserDeletionJob job, List<UUID> chunk) throws InterruptedException {
+        UUID[] ids = chunk.toArray(new UUID[0]);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Set<UUID> authors = new HashSet<>();
+                List<UUID> deleted = transactionTemplate.execute(status -> {
+                    // Applies to this transaction only
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+
+                    // Modules keep a reference to their author, so those users stay
+                    authors.addAll(queryIds(FIND_MODULE_AUTHORS_SQL, ids));
+                    UUID[] deletable = chunk.stream().filter(id -> !authors.contains(id)).toArray(UUID[]::new);
+                    if (deletable.length == 0) {
+                        return List.of();
+                    }
+
+                    for (String sql : DEPENDENT_DELETES) {
+                        jdbcTemplate.update(connection -> {
+                            PreparedStatement statement = connection.prepareStatement(sql);
+                            statement.setArray(1, connection.createArrayOf("uuid", deletable));
+                            return statement;
+                        });
+                    }
+                    return queryIds(DELETE_USERS_SQL, deletable);
+                });
+
+                job.addSkipped(authors);
+                job.addDeleted(deleted.size());
+                job.addNotFound(chunk.size() - authors.size() - deleted.size());
+                if (!authors.isEmpty()) {
+                    job.setMessage("Users who created training modules were not deleted");
+                }
+
+                // Signed-in sessions of deleted users end now rather than when their tokens expire
+                userRoleCache.invalidateAll(deleted);
+                deleted.forEach(tokenRevocationList::revokeUser);
+                return;
+            } catch (DataAccessException e) {
+                if (!isLockConflict(e)) {
+                    throw e;
+                }
+                // Lock timeout or deadlock with concurrent activity; the transaction was rolled back
+                if (attempt >= MAX_ATTEMPTS) {
+                    System.err.println("Bulk user deletion gave up on a chunk: " + e.getMessage());
+                    job.addFailed(chunk.size());
+                    job.setMessage("Some users could not be deleted because their data stayed locked");
+                    return;
+                }
+                Thread.sleep(lockTimeoutMs * attempt);
+            }
+        }
+    }
+
+    /**
+     * Deadlocks are translated to a locking failure, but PostgreSQL's lock timeout (55P03) is
+     * left uncategorized
+     */
+    private static boolean isLockConflict(DataAccessException e) {
+        if (e instanceof PessimisticLockingFailureException) {
+            return true;
+        }
+        Throwable cause = e.getMostSpecificCause();
+        return cause instanceof SQLException
+                && LOCK_TIMEOUT_SQL_STATE.equals(((SQLException) cause).getSQLState());
+    }
+
+    private List<UUID> queryIds(String sql, UUID[] ids) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("uuid", ids));
+            return statement;
+        }, (rs, rowNum) -> rs.getObject(1, UUID.class));
+    }
+}
@@ -0,0 +1,186 @@
+package com.ehs.elearning.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress and per-row results of an asynchronous bulk user provisioning job. Jobs live in
+ * memory only: results include the generated passwords, which must never be persisted.
+ */
+public class BulkUserJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Outcome of one input row
+     */
+    public static class RowResult {
+        private final int row;
+        private final String username;
+        private final String email;
+        private final String status;
+        private final String message;
+        private UUID id;
+        private String role;
+        private String password;
+
+        RowResult(int row, String username, String email, String status, String message) {
+            this.row = row;
+            this.username = username;
+            this.email = email;
+            this.status = status;
+            this.message = message;
+        }
+
+        static RowResult success(int row, UUID id, String username, String email, String role, String password) {
+            RowResult result = new RowResult(row, username, email, "success", null);
+            result.id = id;
+            result.role = role;
+            result.password = password;
+            return result;
+        }
+
+        static RowResult error(int row, String username, String email, String message) {
+            return new RowResult(row, username, email, "error", message);
+        }
+
+        /**
+         * @return The 1-based position of the row in the input
+         */
+        public int getRow() {
+            return row;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        /**
+         * @return The generated password, in plain text, for created users
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @JsonIgnore
+        public boolean isSuccess() {
+            return "success".equals(status);
+        }
+    }
+
+    private final UUID id = UUID.randomUUID();
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final List<RowResult> results = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int totalRows;
+    private volatile Status status = Status.PENDING;
+    private volatile String message;
+    private volatile LocalDateTime completedAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+        if (status == Status.COMPLETED || status == Status.FAILED) {
+            this.completedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * @return Why the job failed, if it did
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return Rows received so far; final once the job has completed
+     */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    void setTotalRows(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public int getProcessedRows() {
+        return succeeded.get() + failed.get();
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * @return A snapshot of the row results so far, in completion order
+     */
+    public List<RowResult> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    void addResult(RowResult result) {
+        results.add(result);
+        if (result.isSuccess()) {
+            succeeded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+}
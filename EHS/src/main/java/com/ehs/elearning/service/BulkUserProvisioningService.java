@@ -0,0 +1,289 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.repository.UserRepository;
+import com.ehs.elearning.security.PasswordGenerator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates users in bulk as a background job. Rows are validated against the constraints of
+ * {@link Users} with the Validator bean. Each batch of rows is then checked against existing
+ * usernames and emails with one set-based query per column, passwords are hashed in
+ * parallel on a bounded pool, and the users are inserted with a single JDBC batch. Jobs and
+ * their per-row results are kept in memory for a limited time for the client to poll.
+ */
+@Service
+public class BulkUserProvisioningService {
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (id, username, password, email, role, first_name, last_name, job_title, department) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    // Postgres handles long IN lists, but the statement is kept to a reasonable size
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PasswordGenerator passwordGenerator;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${bulk.users.batch-size:500}")
+    private int batchSize;
+
+    private final ThreadPoolExecutor jobExecutor;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final Cache<UUID, BulkUserJob> jobs;
+
+    public BulkUserProvisioningService(@Value("${bulk.users.job-threads:1}") int jobThreads,
+                                       @Value("${bulk.users.job-queue-capacity:10}") int jobQueueCapacity,
+                                       @Value("${bulk.users.hashing-threads:0}") int hashingThreads,
+                                       @Value("${bulk.users.job-retention:PT1H}") Duration jobRetention) {
+        this.jobExecutor = newExecutor("bulk-users-", jobThreads, new ArrayBlockingQueue<>(jobQueueCapacity));
+        // Half the cores by default so logins and requests keep the rest
+        int hashingPoolSize = hashingThreads > 0
+                ? hashingThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        // Jobs and imports each hand over one batch at a time and are limited in number,
+        // which bounds the queue
+        this.hashingExecutor = newExecutor("bulk-users-hashing-", hashingPoolSize, new LinkedBlockingQueue<>());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobRetention)
+                .build();
+    }
+
+    /**
+     * Start provisioning users in the background
+     *
+     * @param rows User data: username, email and optionally role, firstName, lastName,
+     *             jobTitle and department
+     * @return The job to poll
+     * @throws RejectedExecutionException if too many jobs are already waiting
+     */
+    public BulkUserJob startJob(List<Map<String, String>> rows) {
+        BulkUserJob job = new BulkUserJob();
+        job.setTotalRows(rows.size());
+        jobs.put(job.getId(), job);
+
+        try {
+            jobExecutor.execute(() -> {
+                job.setStatus(BulkUserJob.Status.RUNNING);
+                try {
+                    for (int i = 0; i < rows.size(); i += batchSize) {
+                        int end = Math.min(i + batchSize, rows.size());
+                        List<Integer> rowNumbers = new ArrayList<>();
+                        for (int row = i + 1; row <= end; row++) {
+                            rowNumbers.add(row);
+                        }
+                        provisionBatch(rows.subList(i, end), rowNumbers, job::addResult);
+                    }
+                    job.setStatus(BulkUserJob.Status.COMPLETED);
+                } catch (Exception e) {
+                    System.err.println("Bulk user job " + job.getId() + " failed: " + e.getMessage());
+                    job.setMessage(e.getMessage());
+                    job.setStatus(BulkUserJob.Status.FAILED);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Get a job started within the retention period
+     */
+    public BulkUserJob getJob(UUID jobId) {
+        return jobs.getIfPresent(jobId);
+    }
+
+    /**
+     * Provision one batch of rows and report a result for each. Blocks until the batch is done.
+     *
+     * @param rowNumbers The input position of each row, as reported back in the results
+     * @param results Receives one result per row, on the calling thread
+     */
+    public void provisionBatch(List<Map<String, String>> rows, List<Integer> rowNumbers,
+                               Consumer<BulkUserJob.RowResult> results)
+            throws InterruptedException, ExecutionException {
+        // Validate, and reject duplicates within the batch itself
+        List<Integer> candidates = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, String> row = rows.get(i);
+            String username = row.get("username");
+            String email = row.get("email");
+            String invalid = validate(username, email);
+            if (invalid != null) {
+                results.accept(BulkUserJob.RowResult.error(rowNumbers.get(i), username, email, invalid));
+            } else if (!usernames.add(username) || !emails.add(email)) {
+                results.accept(BulkUserJob.RowResult.error(rowNumbers.get(i), username, email,
+                        "Duplicate username or email in this upload"));
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        // One set-based lookup per column instead of two queries per row
+        Set<String> existingUsernames = findExisting(usernames, userRepository::findExistingUsernames);
+        Set<String> existingEmails = findExisting(emails, userRepository::findExistingEmails);
+
+        List<Integer> toCreate = new ArrayList<>();
+        for (int i : candidates) {
+            Map<String, String> row = rows.get(i);
+            if (existingUsernames.contains(row.get("username")) || existingEmails.contains(row.get("email"))) {
+                results.accept(BulkUserJob.RowResult.error(rowNumbers.get(i), row.get("username"), row.get("email"),
+                        "User already exists"));
+            } else {
+                toCreate.add(i);
+            }
+        }
+        if (toCreate.isEmpty()) {
+            return;
+        }
+
+        // BCrypt dominates the cost, so the hashes are computed in parallel
+        String[] passwords = new String[toCreate.size()];
+        List<Callable<String>> hashTasks = new ArrayList<>();
+        for (int j = 0; j < toCreate.size(); j++) {
+            passwords[j] = passwordGenerator.generate();
+            String password = passwords[j];
+            hashTasks.add(() -> passwordEncoder.encode(password));
+        }
+        List<Future<String>> hashes = hashingExecutor.invokeAll(hashTasks);
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        UUID[] ids = new UUID[toCreate.size()];
+        Role[] roles = new Role[toCreate.size()];
+        for (int j = 0; j < toCreate.size(); j++) {
+            Map<String, String> row = rows.get(toCreate.get(j));
+            ids[j] = UUID.randomUUID();
+            roles[j] = parseRole(row.get("role"));
+            batchArgs.add(new Object[] {
+                    ids[j], row.get("username"), hashes.get(j).get(), row.get("email"), roles[j].name(),
+                    row.get("firstName"), row.get("lastName"), row.get("jobTitle"), row.get("department") });
+        }
+
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_USER_SQL, batchArgs));
+
+        for (int j = 0; j < toCreate.size(); j++) {
+            int rowIndex = toCreate.get(j);
+            Map<String, String> row = rows.get(rowIndex);
+            // 0 rows means a concurrent insert took the username or email after the pre-check
+            if (counts != null && counts[j] == 0) {
+                results.accept(BulkUserJob.RowResult.error(rowNumbers.get(rowIndex), row.get("username"),
+                        row.get("email"), "User already exists"));
+            } else {
+                results.accept(BulkUserJob.RowResult.success(rowNumbers.get(rowIndex), ids[j], row.get("username"),
+                        row.get("email"), roles[j].name(), passwords[j]));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        hashingExecutor.shutdownNow();
+    }
+
+    private Set<String> findExisting(Set<String> values,
+                                     Function<Collection<String>, Set<String>> lookup) {
+        Set<String> existing = new HashSet<>();
+        List<String> list = new ArrayList<>(values);
+        for (int i = 0; i < list.size(); i += LOOKUP_CHUNK_SIZE) {
+            existing.addAll(lookup.apply(list.subList(i, Math.min(i + LOOKUP_CHUNK_SIZE, list.size()))));
+        }
+        return existing;
+    }
+
+    /**
+     * Check a row against the constraints declared on {@link Users}, which the JDBC insert
+     * would otherwise bypass
+     *
+     * @return The violations as one message, or null if the row is valid
+     */
+    private String validate(String username, String email) {
+        Set<ConstraintViolation<Users>> violations = new LinkedHashSet<>();
+        violations.addAll(validator.validateValue(Users.class, "username", username));
+        violations.addAll(validator.validateValue(Users.class, "email", email));
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private Role parseRole(String role) {
+        if (role == null || role.isEmpty()) {
+            return Role.USER;
+        }
+        try {
+            return Role.valueOf(role.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Role.USER;
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(String namePrefix, int threads,
+                                                  BlockingQueue<Runnable> queue) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ehs.elearning.service;
+
+import java.util.UUID;
+
+/**
+ * Published when a training module or a domain is created, changed or deleted, so anything
+ * holding a copy of the catalog can refresh that entry.
+ */
+public class CatalogChangedEvent {
+
+    private final UUID moduleId;
+    private final UUID domainId;
+
+    private CatalogChangedEvent(UUID moduleId, UUID domainId) {
+        this.moduleId = moduleId;
+        this.domainId = domainId;
+    }
+
+    public static CatalogChangedEvent module(UUID moduleId) {
+        return new CatalogChangedEvent(moduleId, null);
+    }
+
+    public static CatalogChangedEvent domain(UUID domainId) {
+        return new CatalogChangedEvent(null, domainId);
+    }
+
+    /**
+     * @return The module that changed, or null if a domain changed
+     */
+    public UUID getModuleId() {
+        return moduleId;
+    }
+
+    /**
+     * @return The domain that changed, or null if a module changed
+     */
+    public UUID getDomainId() {
+        return domainId;
+    }
+}
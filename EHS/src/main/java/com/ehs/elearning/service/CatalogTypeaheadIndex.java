@@ -0,0 +1,207 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.payload.response.TypeaheadSuggestion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index of published module titles and domain names, for suggestions while
+ * the user types. Every word of a title is a key in a sorted map, so the titles with a word
+ * starting with some prefix are one range scan away; lookups never touch the database. The
+ * index is loaded at startup and kept current entry by entry through {@link CatalogChangedEvent}.
+ */
+@Component
+public class CatalogTypeaheadIndex {
+
+    public static final String MODULE = "MODULE";
+    public static final String DOMAIN = "DOMAIN";
+
+    // Candidates considered per lookup, so a one-letter prefix does not walk the whole index.
+    // Only entries the caller may see count, so other domains cannot use up the budget.
+    private static final int MAX_CANDIDATES = 500;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String PUBLISHED_MODULES_SQL =
+            "SELECT id, title, domain_id FROM training_modules WHERE status = 'PUBLISHED'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // "word\0entry key" to entry; keys sharing a word prefix are adjacent
+    private final ConcurrentSkipListMap<String, Entry> words = new ConcurrentSkipListMap<>();
+
+    // Entry key to entry, to find the words to drop when an entry changes
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Suggest titles in which every word typed starts some word of the title
+     *
+     * @param text What the user typed so far
+     * @param domainIds Only suggest modules in, and domains among, these; null for all
+     * @param limit Maximum number of suggestions
+     * @return Titles starting with the text first, then shorter titles first
+     */
+    public List<TypeaheadSuggestion> suggest(String text, Set<UUID> domainIds, int limit) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Scan by the longest word typed, as it narrows the range the most
+        String probe = tokens.stream().max(Comparator.comparingInt(String::length)).get();
+        ConcurrentNavigableMap<String, Entry> range = words.subMap(probe, true, probe + Character.MAX_VALUE, true);
+
+        Set<Entry> matches = new HashSet<>();
+        int scanned = 0;
+        for (Entry entry : range.values()) {
+            if (domainIds != null && !domainIds.contains(entry.domainId)) {
+                continue;
+            }
+            if (++scanned > MAX_CANDIDATES) {
+                break;
+            }
+            if (entry.matches(tokens)) {
+                matches.add(entry);
+            }
+        }
+
+        String typed = String.join(" ", tokens);
+        return matches.stream()
+                .sorted(Comparator.comparing((Entry entry) -> !entry.normalizedTitle.startsWith(typed))
+                        .thenComparingInt(entry -> entry.title.length())
+                        .thenComparing(entry -> entry.normalizedTitle))
+                .limit(limit)
+                .map(entry -> new TypeaheadSuggestion(entry.type, entry.id, entry.title, entry.domainId))
+                .toList();
+    }
+
+    /**
+     * Load every published module and every domain
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        try {
+            jdbcTemplate.query(PUBLISHED_MODULES_SQL, rs -> {
+                put(new Entry(MODULE, rs.getObject("id", UUID.class), rs.getString("title"),
+                        rs.getObject("domain_id", UUID.class)));
+            });
+            jdbcTemplate.query("SELECT id, name FROM domains", rs -> {
+                UUID id = rs.getObject("id", UUID.class);
+                put(new Entry(DOMAIN, id, rs.getString("name"), id));
+            });
+        } catch (Exception e) {
+            System.err.println("Could not load the typeahead index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read one changed module or domain; unpublished and deleted modules leave the index
+     */
+    @EventListener
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getModuleId() != null) {
+            UUID id = event.getModuleId();
+            List<Entry> rows = jdbcTemplate.query(PUBLISHED_MODULES_SQL + " AND id = ?",
+                    (rs, rowNum) -> new Entry(MODULE, id, rs.getString("title"), rs.getObject("domain_id", UUID.class)),
+                    id);
+            if (rows.isEmpty()) {
+                remove(MODULE + ":" + id);
+            } else {
+                put(rows.get(0));
+            }
+        }
+        if (event.getDomainId() != null) {
+            UUID id = event.getDomainId();
+            List<Entry> rows = jdbcTemplate.query("SELECT name FROM domains WHERE id = ?",
+                    (rs, rowNum) -> new Entry(DOMAIN, id, rs.getString("name"), id), id);
+            if (rows.isEmpty()) {
+                remove(DOMAIN + ":" + id);
+            } else {
+                put(rows.get(0));
+            }
+        }
+    }
+
+    // Callers hold the lock, so the words of an entry are never half replaced by two writers
+    private void put(Entry entry) {
+        remove(entry.key);
+        if (entry.words.isEmpty()) {
+            return;
+        }
+        entries.put(entry.key, entry);
+        for (String word : entry.words) {
+            words.put(word + '\0' + entry.key, entry);
+        }
+    }
+
+    private void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            for (String word : previous.words) {
+                words.remove(word + '\0' + key);
+            }
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return Arrays.stream(WORD_SEPARATORS.split(folded.toLowerCase(Locale.ROOT)))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private static final class Entry {
+
+        private final String type;
+        private final UUID id;
+        private final String title;
+        private final UUID domainId;
+        private final String key;
+        private final String normalizedTitle;
+        private final List<String> words;
+
+        private Entry(String type, UUID id, String title, UUID domainId) {
+            this.type = type;
+            this.id = id;
+            this.title = title != null ? title : "";
+            this.domainId = domainId;
+            this.key = type + ":" + id;
+            List<String> tokens = tokenize(title);
+            this.normalizedTitle = String.join(" ", tokens);
+            this.words = tokens.stream().distinct().toList();
+        }
+
+        // Every word typed must start one of the title's words
+        private boolean matches(List<String> tokens) {
+            for (String token : tokens) {
+                if (words.stream().noneMatch(word -> word.startsWith(token))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
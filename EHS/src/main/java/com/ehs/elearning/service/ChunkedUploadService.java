@@ -0,0 +1,271 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.*;
+import com.ehs.elearning.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable (tus-style) uploads for file-based learning materials.
+ * Chunks are appended directly to a partial upload kept by the storage backend; when the last
+ * byte arrives it is moved to its content-addressed name and the material is created.
+ *
+ * Consecutive chunks may reach different instances. The partial upload and a lease on the
+ * upload row (one chunk at a time) are shared. The SHA-256 accumulated in memory as chunks
+ * stream in is not: an instance only keeps it while it receives every chunk, and otherwise
+ * the upload is hashed again once complete.
+ */
+@Service
+public class ChunkedUploadService {
+
+    @Autowired
+    private MaterialUploadRepository uploadRepository;
+
+    @Autowired
+    private ModuleComponentRepository componentRepository;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.servlet.multipart.max-file-size}")
+    private DataSize maxUploadSize;
+
+    @Value("${file.upload.session-expiry-hours:24}")
+    private long sessionExpiryHours;
+
+    @Value("${file.upload.chunk-lease-minutes:30}")
+    private long chunkLeaseMinutes;
+
+    // Running content digest per upload, valid for exactly the bytes before the recorded offset
+    private final Map<UUID, UploadDigest> uploadDigests = new ConcurrentHashMap<>();
+
+    private static class UploadDigest {
+        private final MessageDigest digest;
+        private long offset;
+        private LocalDateTime lastUsedAt = LocalDateTime.now();
+
+        UploadDigest(MessageDigest digest) {
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Result of appending a chunk
+     */
+    public static class ChunkResult {
+        private final long offset;
+        private final LearningMaterial material;
+
+        public ChunkResult(long offset, LearningMaterial material) {
+            this.offset = offset;
+            this.material = material;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The created material once the upload is complete, otherwise null
+         */
+        public LearningMaterial getMaterial() {
+            return material;
+        }
+    }
+
+    /**
+     * Start a new resumable upload for a learning material component
+     */
+    public MaterialUpload createUpload(UUID componentId, String originalFileName, long uploadLength,
+                                       String fileType, String title, String description,
+                                       Integer estimatedDuration) throws IOException {
+        Optional<ModuleComponent> componentOpt = componentRepository.findById(componentId);
+        if (!componentOpt.isPresent()) {
+            throw new RuntimeException("Component not found");
+        }
+
+        ModuleComponent component = componentOpt.get();
+        if (component.getType() != ComponentType.LEARNING_MATERIAL &&
+            component.getType() != ComponentType.LEARNING_MATERIALS) {
+            throw new RuntimeException("Component is not a learning material type");
+        }
+
+        if (uploadLength <= 0 || uploadLength > maxUploadSize.toBytes()) {
+            throw new RuntimeException("Upload length must be between 1 and " + maxUploadSize.toBytes() + " bytes");
+        }
+
+        MaterialUpload upload = new MaterialUpload();
+        upload.setComponent(component);
+        upload.setTitle(title);
+        upload.setDescription(description);
+        upload.setFileType(fileType);
+        upload.setOriginalFileName(originalFileName);
+        upload.setStagingFileName(fileStorageService.generateFileName(originalFileName));
+        upload.setUploadLength(uploadLength);
+        upload.setEstimatedDuration(estimatedDuration);
+
+        return uploadRepository.save(upload);
+    }
+
+    /**
+     * Get an upload in progress
+     */
+    public Optional<MaterialUpload> getUpload(UUID uploadId) {
+        return uploadRepository.findById(uploadId);
+    }
+
+    /**
+     * Get the number of bytes received so far
+     */
+    public long getOffset(MaterialUpload upload) throws IOException {
+        return fileStorageService.getPartialFileSize(upload.getStagingFileName());
+    }
+
+    /**
+     * Append a chunk at the given offset. When the final byte has been received the file is
+     * moved into place and the learning material is created.
+     *
+     * @throws IllegalStateException if another chunk for the same upload is being written
+     */
+    public ChunkResult appendChunk(MaterialUpload upload, long offset, InputStream data) throws IOException {
+        if (!tryLockChunk(upload.getId())) {
+            throw new IllegalStateException("Another chunk is already being written for this upload");
+        }
+
+        try {
+            UploadDigest uploadDigest = uploadDigests.get(upload.getId());
+            if (uploadDigest == null && offset == 0) {
+                uploadDigest = new UploadDigest(fileStorageService.newContentDigest());
+                uploadDigests.put(upload.getId(), uploadDigest);
+            } else if (uploadDigest != null && uploadDigest.offset != offset) {
+                uploadDigests.remove(upload.getId());
+                uploadDigest = null;
+            }
+
+            InputStream source = uploadDigest != null ? new DigestInputStream(data, uploadDigest.digest) : data;
+            long remaining = upload.getUploadLength() - offset;
+            long newOffset;
+            try {
+                newOffset = fileStorageService.appendToPartialFile(
+                        upload.getStagingFileName(), offset, remaining, source);
+            } catch (IOException e) {
+                // The digest may have seen bytes that never reached the disk
+                uploadDigests.remove(upload.getId());
+                throw e;
+            }
+
+            if (newOffset < upload.getUploadLength()) {
+                if (uploadDigest != null) {
+                    uploadDigest.offset = newOffset;
+                    uploadDigest.lastUsedAt = LocalDateTime.now();
+                }
+                upload.setLastActivityAt(LocalDateTime.now());
+                uploadRepository.save(upload);
+                return new ChunkResult(newOffset, null);
+            }
+
+            uploadDigests.remove(upload.getId());
+            String fileName = fileStorageService.completePartialFile(upload.getStagingFileName(),
+                    uploadDigest != null ? uploadDigest.digest : null);
+            LearningMaterial material = createMaterial(upload, fileName);
+            uploadRepository.delete(upload);
+            return new ChunkResult(newOffset, material);
+        } finally {
+            unlockChunk(upload.getId());
+        }
+    }
+
+    /**
+     * Take the chunk lease of an upload. The lease expires by itself, so an instance that dies
+     * mid-chunk does not block the upload for longer than that.
+     *
+     * @return false if another request holds it
+     */
+    private boolean tryLockChunk(UUID uploadId) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update("UPDATE material_uploads SET chunk_locked_until = ? "
+                        + "WHERE id = ? AND (chunk_locked_until IS NULL OR chunk_locked_until < ?)",
+                now.plusMinutes(chunkLeaseMinutes), uploadId, now) == 1;
+    }
+
+    private void unlockChunk(UUID uploadId) {
+        jdbcTemplate.update("UPDATE material_uploads SET chunk_locked_until = NULL WHERE id = ?", uploadId);
+    }
+
+    /**
+     * Abort an upload and discard the bytes received so far
+     */
+    public void abortUpload(MaterialUpload upload) throws IOException {
+        uploadDigests.remove(upload.getId());
+        fileStorageService.deletePartialFile(upload.getStagingFileName());
+        uploadRepository.delete(upload);
+    }
+
+    /**
+     * Remove uploads that have been idle longer than the configured expiry
+     */
+    @Scheduled(fixedDelayString = "${file.upload.session-cleanup-interval:3600000}")
+    public void cleanupAbandonedUploads() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusHours(sessionExpiryHours);
+        List<MaterialUpload> abandoned = uploadRepository.findByLastActivityAtBefore(cutoff);
+
+        // Digests of uploads whose later chunks went to another instance are never used again
+        uploadDigests.values().removeIf(uploadDigest -> uploadDigest.lastUsedAt.isBefore(cutoff));
+
+        for (MaterialUpload upload : abandoned) {
+            if (upload.getChunkLockedUntil() != null && upload.getChunkLockedUntil().isAfter(now)) {
+                continue;
+            }
+            try {
+                abortUpload(upload);
+            } catch (IOException e) {
+                // Log error but continue with the remaining uploads
+                System.err.println("Error removing abandoned upload " + upload.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private LearningMaterial createMaterial(MaterialUpload upload, String fileName) throws IOException {
+        ModuleComponent component = upload.getComponent();
+
+        LearningMaterial material = new LearningMaterial();
+        material.setComponent(component);
+        material.setTitle(upload.getTitle());
+        material.setDescription(upload.getDescription());
+        material.setFileType(upload.getFileType());
+        materialService.attachFile(material, fileName, upload.getOriginalFileName());
+        material.setEstimatedDuration(upload.getEstimatedDuration());
+
+        // Set sequence order
+        List<LearningMaterial> existingMaterials =
+            materialRepository.findByComponentOrderBySequenceOrderAsc(component);
+        material.setSequenceOrder(existingMaterials.size() + 1);
+
+        return materialRepository.save(material);
+    }
+}
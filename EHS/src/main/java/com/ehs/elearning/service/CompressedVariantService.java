@@ -0,0 +1,310 @@
+package com.ehs.elearning.service;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates gzip and brotli variants of stored files once, in the background after upload, and
+ * picks the one to serve from the request's Accept-Encoding. Variants are stored next to their
+ * source as derived files (see {@link FileStorageService#getDerivedFileName}) and are only kept
+ * when they are noticeably smaller than the original.
+ *
+ * A material's compressedEncodings stays null, and the file is served as stored, until its
+ * variants are done; then it becomes the available encodings, or "" if none was worth keeping.
+ * A backfill job picks up materials still at null, such as those saved after their file's
+ * variants were finished.
+ */
+@Service
+public class CompressedVariantService {
+
+    public static final String ENCODING_BROTLI = "br";
+    public static final String ENCODING_GZIP = "gzip";
+
+    // In order of preference when the client accepts several
+    private static final List<String> ENCODINGS = List.of(ENCODING_BROTLI, ENCODING_GZIP);
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StoredFileMetadataService storedFileMetadataService;
+
+    @Autowired
+    private ContentTypeDetector contentTypeDetector;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${file.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${file.compression.max-size:50MB}")
+    private DataSize maxSize;
+
+    @Value("${file.compression.min-saving-percent:10}")
+    private int minSavingPercent;
+
+    @Value("${file.compression.brotli-quality:11}")
+    private int brotliQuality;
+
+    @Value("${file.compression.backfill-batch-size:50}")
+    private int backfillBatchSize;
+
+    private final ThreadPoolExecutor executor;
+
+    // Files queued or being compressed, so duplicate uploads do not compress twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public CompressedVariantService(@Value("${file.compression.threads:1}") int threads,
+                                    @Value("${file.compression.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "compressed-variant-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Brotli at quality 11 is slow; uploads and downloads come first
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue variant creation for a newly stored file; returns immediately. When done, every
+     * material referencing the file gets the available encodings.
+     *
+     * @param fileName The stored filename
+     * @param contentType The detected content type
+     */
+    public void scheduleVariants(String fileName, String contentType) {
+        if (contentTypeDetector.isCompressible(contentType) && !scheduleVariants(fileName)) {
+            // Left at null; the backfill queues it again later
+            System.err.println("Compression queue full, deferring variants for " + fileName);
+        }
+    }
+
+    /**
+     * Queue variant creation for a stored file of a compressible type; returns immediately
+     *
+     * @return false if the queue was full and the file was not queued
+     */
+    private boolean scheduleVariants(String fileName) {
+        if (!compressionEnabled || !pending.add(fileName)) {
+            return true;
+        }
+
+        try {
+            executor.execute(() -> {
+                String encodings = "";
+                try {
+                    StoredFileInfo info = fileStorageService.getFileInfo(fileName);
+                    String available = createVariants(fileName, info.getSize());
+                    encodings = available != null ? available : "";
+                } catch (Exception e) {
+                    // Recorded as having no variants, so the backfill does not retry it forever
+                    System.err.println("Error creating compressed variants for " + fileName + ": " + e.getMessage());
+                } finally {
+                    try {
+                        recordEncodings(fileName, encodings);
+                    } finally {
+                        pending.remove(fileName);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            return false;
+        }
+    }
+
+    /**
+     * Set the encodings of all materials referencing the file, including ones that share it
+     * through deduplication
+     */
+    private void recordEncodings(String fileName, String encodings) {
+        jdbcTemplate.update("UPDATE learning_materials SET compressed_encodings = ? WHERE file_path = ?",
+                encodings, fileName);
+        storedFileMetadataService.evict(fileName);
+    }
+
+    /**
+     * @return true while variants for the file are queued or being created
+     */
+    public boolean isPending(String fileName) {
+        return pending.contains(fileName);
+    }
+
+    /**
+     * Queue files whose materials have no recorded encodings yet, as far as the executor has room
+     */
+    @Scheduled(fixedDelayString = "${file.compression.backfill-interval:300000}", initialDelay = 60000)
+    public synchronized void backfillVariants() {
+        if (!compressionEnabled || executor.getQueue().remainingCapacity() < backfillBatchSize) {
+            return;
+        }
+
+        List<String> fileNames = materialRepository.findFilesAwaitingCompression(
+                contentTypeDetector.getCompressibleTypes(), PageRequest.of(0, backfillBatchSize));
+        for (String fileName : fileNames) {
+            scheduleVariants(fileName);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Create the compressed variants of a stored file
+     *
+     * @param fileName The stored filename
+     * @param size The size of the stored file
+     * @return The encodings now available, e.g. "br,gzip", or null if there are none
+     */
+    private String createVariants(String fileName, long size) throws IOException {
+        if (!compressionEnabled || size == 0 || size > maxSize.toBytes()) {
+            return null;
+        }
+
+        List<String> available = new ArrayList<>();
+        for (String encoding : ENCODINGS) {
+            if (encoding.equals(ENCODING_BROTLI) && !Brotli4jLoader.isAvailable()) {
+                continue;
+            }
+
+            String variantName = fileStorageService.getDerivedFileName(fileName, encoding);
+            // Content-addressed files are shared, so an earlier upload may have made it already
+            if (fileStorageService.fileExists(variantName) || createVariant(fileName, size, encoding, variantName)) {
+                available.add(encoding);
+            }
+        }
+
+        return available.isEmpty() ? null : String.join(",", available);
+    }
+
+    /**
+     * Choose the variant to send
+     *
+     * @param acceptEncoding The request's Accept-Encoding header, may be null
+     * @param availableEncodings The encodings stored for the file, e.g. "br,gzip", may be null
+     * @return The encoding to send, or null to send the file as stored
+     */
+    public String negotiate(String acceptEncoding, String availableEncodings) {
+        if (acceptEncoding == null || availableEncodings == null || availableEncodings.isEmpty()) {
+            return null;
+        }
+
+        List<String> available = List.of(availableEncodings.split(","));
+        String chosen = null;
+        double chosenQuality = 0;
+        for (String encoding : ENCODINGS) {
+            if (!available.contains(encoding)) {
+                continue;
+            }
+            double quality = getQuality(acceptEncoding, encoding);
+            // Ties keep the earlier, preferred encoding
+            if (quality > chosenQuality) {
+                chosen = encoding;
+                chosenQuality = quality;
+            }
+        }
+        return chosen;
+    }
+
+    private boolean createVariant(String fileName, long size, String encoding, String variantName)
+            throws IOException {
+        Path tempFile = fileStorageService.createStagingFile();
+        try {
+            try (InputStream in = fileStorageService.openStream(fileName, 0, size);
+                 OutputStream out = compressingStream(Files.newOutputStream(tempFile), encoding)) {
+                in.transferTo(out);
+            }
+
+            // Not worth a Content-Encoding round trip for a small saving
+            if (Files.size(tempFile) * 100 > size * (100 - minSavingPercent)) {
+                return false;
+            }
+
+            fileStorageService.storeDerivedFile(variantName, tempFile);
+            return true;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private OutputStream compressingStream(OutputStream out, String encoding) throws IOException {
+        if (encoding.equals(ENCODING_BROTLI)) {
+            return new BrotliOutputStream(out, new Encoder.Parameters().setQuality(brotliQuality));
+        }
+        return new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
+
+    /**
+     * Get the quality value the client gives an encoding, falling back to a "*" entry
+     */
+    private double getQuality(String acceptEncoding, String encoding) {
+        double wildcardQuality = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (coding.equals(encoding)) {
+                return quality;
+            }
+            if (coding.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+        return wildcardQuality;
+    }
+}
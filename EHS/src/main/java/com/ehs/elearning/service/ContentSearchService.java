@@ -0,0 +1,175 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.payload.response.SearchHitResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Full-text search over modules, components, learning materials and questions, using
+ * PostgreSQL text search. Each table has a stored, generated tsvector column with a GIN index,
+ * added by the db/content-search.sql migration; the database recomputes it whenever a row is
+ * inserted or updated, and it goes away with the row, so the index never has to be maintained
+ * by the application. Titles weigh more than descriptions, which weigh more than HTML content.
+ * Matches are ranked by cover density and the top ones get a highlighted snippet.
+ */
+@Service
+public class ContentSearchService {
+
+    public static final String MODULE = "MODULE";
+    public static final String COMPONENT = "COMPONENT";
+    public static final String MATERIAL = "MATERIAL";
+    public static final String QUESTION = "QUESTION";
+    public static final Set<String> TYPES = Set.of(MODULE, COMPONENT, MATERIAL, QUESTION);
+
+    // Tags are replaced by spaces, so HTML content is indexed and highlighted as plain text
+    private static final String STRIP_TAGS = "regexp_replace(coalesce(%s, ''), '<[^>]*>', ' ', 'g')";
+
+    // Tables whose search_vector column comes from db/content-search.sql
+    private static final String[] SEARCH_TABLES =
+            { "training_modules", "module_components", "learning_materials", "questions" };
+
+    // Private-use characters mark the matches, so the snippet can be HTML-escaped before the
+    // marks are turned into tags; any in the content itself are removed first
+    private static final String START_SEL = "\uE000";
+    private static final String STOP_SEL = "\uE001";
+
+    private static final String HEADLINE_OPTIONS = "StartSel=\"" + START_SEL + "\", StopSel=\"" + STOP_SEL
+            + "\", MaxWords=30, MinWords=10, MaxFragments=2";
+
+    // One select per searchable type; learners only match content of published modules
+    private static final Map<String, String> TYPE_QUERIES = new LinkedHashMap<>();
+
+    static {
+        TYPE_QUERIES.put(MODULE,
+                "SELECT 'MODULE' AS type, m.id, m.id AS module_id, m.title, m.description AS body, "
+                        + "ts_rank_cd(m.search_vector, q.query, 1) AS rank "
+                        + "FROM training_modules m CROSS JOIN q "
+                        + "WHERE m.search_vector @@ q.query AND (:includeUnpublished OR m.status = 'PUBLISHED')");
+        TYPE_QUERIES.put(COMPONENT,
+                "SELECT 'COMPONENT' AS type, c.id, c.module_id, c.title, c.description AS body, "
+                        + "ts_rank_cd(c.search_vector, q.query, 1) AS rank "
+                        + "FROM module_components c JOIN training_modules m ON m.id = c.module_id CROSS JOIN q "
+                        + "WHERE c.search_vector @@ q.query AND (:includeUnpublished OR m.status = 'PUBLISHED')");
+        TYPE_QUERIES.put(MATERIAL,
+                "SELECT 'MATERIAL' AS type, lm.id, c.module_id, lm.title, concat_ws(' ', lm.description, lm.content) AS body, "
+                        + "ts_rank_cd(lm.search_vector, q.query, 1) AS rank "
+                        + "FROM learning_materials lm JOIN module_components c ON c.id = lm.component_id "
+                        + "JOIN training_modules m ON m.id = c.module_id CROSS JOIN q "
+                        + "WHERE lm.search_vector @@ q.query AND (:includeUnpublished OR m.status = 'PUBLISHED')");
+        TYPE_QUERIES.put(QUESTION,
+                "SELECT 'QUESTION' AS type, qu.id, c.module_id, qu.text AS title, qu.text AS body, "
+                        + "ts_rank_cd(qu.search_vector, q.query, 1) AS rank "
+                        + "FROM questions qu JOIN module_components c ON c.id = qu.component_id "
+                        + "JOIN training_modules m ON m.id = c.module_id CROSS JOIN q "
+                        + "WHERE qu.search_vector @@ q.query AND (:includeUnpublished OR m.status = 'PUBLISHED')");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Set once the search columns are known to exist
+    private volatile boolean available;
+
+    /**
+     * Search content
+     *
+     * @param text Words to look for; quoted phrases, "or" and a leading "-" are understood
+     * @param types Which of {@link #TYPES} to search
+     * @param includeUnpublished true to also match draft and archived modules
+     * @param limit Maximum number of hits
+     * @return The best matches first
+     * @throws IllegalStateException if the migration adding the search columns has not run
+     */
+    public List<SearchHitResponse> search(String text, Set<String> types, boolean includeUnpublished, int limit) {
+        if (!available && !checkSearchColumns()) {
+            throw new IllegalStateException("Search is not available");
+        }
+
+        List<String> selects = new ArrayList<>();
+        TYPE_QUERIES.forEach((type, sql) -> {
+            if (types.contains(type)) {
+                selects.add(sql);
+            }
+        });
+        if (selects.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Snippets are only built for the rows returned, as ts_headline re-parses the text
+        String sql = "WITH q AS (SELECT websearch_to_tsquery('english', :text) AS query) "
+                + "SELECT h.type, h.id, h.module_id, m.title AS module_title, h.title, "
+                + "ts_headline('english', translate(" + String.format(STRIP_TAGS, "h.body") + ", :selectors, ''), "
+                + "q.query, :headlineOptions) AS snippet, h.rank "
+                + "FROM (SELECT * FROM (" + String.join(" UNION ALL ", selects) + ") hits "
+                + "ORDER BY rank DESC, id LIMIT :limit) h "
+                + "JOIN training_modules m ON m.id = h.module_id CROSS JOIN q "
+                + "ORDER BY h.rank DESC, h.id";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("text", text)
+                .addValue("includeUnpublished", includeUnpublished)
+                .addValue("limit", limit)
+                .addValue("selectors", START_SEL + STOP_SEL)
+                .addValue("headlineOptions", HEADLINE_OPTIONS);
+
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> new SearchHitResponse(
+                rs.getString("type"),
+                rs.getObject("id", UUID.class),
+                rs.getObject("module_id", UUID.class),
+                rs.getString("module_title"),
+                rs.getString("title"),
+                highlight(rs.getString("snippet")),
+                rs.getDouble("rank")));
+    }
+
+    /**
+     * Escape a ts_headline snippet for HTML, then wrap the matches in mark tags
+     */
+    static String highlight(String snippet) {
+        if (snippet == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(snippet)
+                .replace(START_SEL, "<mark>")
+                .replace(STOP_SEL, "</mark>");
+    }
+
+    /**
+     * Check once the schema is in place whether the search migration has run
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkSearchColumnsAtStartup() {
+        if (!checkSearchColumns()) {
+            System.err.println("Content search is not available until db/content-search.sql has been run");
+        }
+    }
+
+    // Checked again on each search until found, so running the migration needs no restart
+    private boolean checkSearchColumns() {
+        try {
+            Integer found = jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.columns "
+                    + "WHERE table_schema = current_schema() AND column_name = 'search_vector' "
+                    + "AND table_name IN (?, ?, ?, ?)", Integer.class, (Object[]) SEARCH_TABLES);
+            available = found != null && found == SEARCH_TABLES.length;
+        } catch (Exception e) {
+            System.err.println("Could not check for content search columns: " + e.getMessage());
+        }
+        return available;
+    }
+}
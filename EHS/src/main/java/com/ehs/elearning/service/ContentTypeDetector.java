@@ -0,0 +1,262 @@
+package com.ehs.elearning.service;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Detects the MIME type of a file from its leading bytes ("magic numbers"). The original
+ * filename is only used to tell apart formats that share a container, such as the legacy
+ * Office formats inside OLE2.
+ */
+@Component
+public class ContentTypeDetector {
+
+    /**
+     * How many leading bytes {@link #detect} needs to see
+     */
+    public static final int HEAD_SIZE = 64 * 1024;
+
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "text/html",
+            "text/plain",
+            "text/csv",
+            "text/markdown",
+            "text/css",
+            "image/svg+xml",
+            "image/bmp",
+            "application/xml",
+            "application/json",
+            "application/javascript",
+            "application/msword",
+            "application/vnd.ms-powerpoint",
+            "application/vnd.ms-excel");
+
+    /**
+     * Detect the content type of a file
+     *
+     * @param head The first bytes of the file, up to {@link #HEAD_SIZE}
+     * @param length How many bytes of head are valid
+     * @param originalFileName The filename supplied at upload, may be null
+     * @return The MIME type
+     */
+    public String detect(byte[] head, int length, String originalFileName) {
+        String extension = getExtension(originalFileName);
+
+        if (startsWith(head, length, 0, "%PDF-")) {
+            return "application/pdf";
+        }
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, 0, "GIF87a") || startsWith(head, length, 0, "GIF89a")) {
+            return "image/gif";
+        }
+        if (startsWith(head, length, 0, "BM") && length > 14 && isBitmapHeaderSize(head[14] & 0xFF)) {
+            return "image/bmp";
+        }
+        if (startsWith(head, length, 0, "RIFF")) {
+            if (startsWith(head, length, 8, "WEBP")) {
+                return "image/webp";
+            }
+            if (startsWith(head, length, 8, "AVI ")) {
+                return "video/x-msvideo";
+            }
+            if (startsWith(head, length, 8, "WAVE")) {
+                return "audio/wav";
+            }
+        }
+        if (startsWith(head, length, 4, "ftyp")) {
+            if (startsWith(head, length, 8, "qt  ")) {
+                return "video/quicktime";
+            }
+            if (startsWith(head, length, 8, "M4A ")) {
+                return "audio/mp4";
+            }
+            if (startsWith(head, length, 8, "heic") || startsWith(head, length, 8, "mif1")) {
+                return "image/heic";
+            }
+            return "video/mp4";
+        }
+        if (startsWith(head, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return "video/webm";
+        }
+        if (startsWith(head, length, 0, 0x30, 0x26, 0xB2, 0x75, 0x8E, 0x66, 0xCF, 0x11)) {
+            return extension.equals("wma") ? "audio/x-ms-wma" : "video/x-ms-wmv";
+        }
+        if (startsWith(head, length, 0, "ID3") || startsWith(head, length, 0, 0xFF, 0xFB)) {
+            return "audio/mpeg";
+        }
+        if (startsWith(head, length, 0, 'P', 'K', 0x03, 0x04)) {
+            return detectZipBased(head, length, extension);
+        }
+        if (startsWith(head, length, 0, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)) {
+            return detectOle2Based(extension);
+        }
+
+        return detectText(head, length, extension);
+    }
+
+    /**
+     * @return The content types that get compressed variants
+     */
+    public Set<String> getCompressibleTypes() {
+        return COMPRESSIBLE_TYPES;
+    }
+
+    /**
+     * @return true if the type benefits from gzip or brotli variants
+     */
+    public boolean isCompressible(String contentType) {
+        return contentType != null && COMPRESSIBLE_TYPES.contains(contentType);
+    }
+
+    /**
+     * OOXML documents are ZIP archives; the entry names in the local file headers tell
+     * which application they belong to.
+     */
+    private String detectZipBased(byte[] head, int length, String extension) {
+        String headText = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        if (headText.contains("ppt/")) {
+            return "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+        }
+        if (headText.contains("word/")) {
+            return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+        }
+        if (headText.contains("xl/")) {
+            return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        }
+
+        // Entry names may lie beyond the inspected head
+        switch (extension) {
+            case "pptx":
+                return "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+            case "docx":
+                return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+            case "xlsx":
+                return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+            default:
+                return "application/zip";
+        }
+    }
+
+    private String detectOle2Based(String extension) {
+        switch (extension) {
+            case "ppt":
+            case "pps":
+                return "application/vnd.ms-powerpoint";
+            case "xls":
+                return "application/vnd.ms-excel";
+            case "doc":
+                return "application/msword";
+            default:
+                return "application/x-ole-storage";
+        }
+    }
+
+    private String detectText(byte[] head, int length, String extension) {
+        int start = 0;
+        if (startsWith(head, length, 0, 0xEF, 0xBB, 0xBF)) {
+            start = 3; // UTF-8 byte order mark
+        }
+
+        for (int i = start; i < length; i++) {
+            if (head[i] == 0) {
+                return DEFAULT_CONTENT_TYPE;
+            }
+        }
+        if (!isUtf8(head, start, length)) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+
+        String text = new String(head, start, length - start, StandardCharsets.UTF_8)
+                .stripLeading()
+                .toLowerCase(Locale.ROOT);
+        if (text.startsWith("<svg") || (text.startsWith("<?xml") && text.contains("<svg"))) {
+            return "image/svg+xml";
+        }
+        if (text.startsWith("<!doctype html") || text.startsWith("<html") || extension.equals("html")
+                || extension.equals("htm")) {
+            return "text/html";
+        }
+        if (text.startsWith("<?xml")) {
+            return "application/xml";
+        }
+        switch (extension) {
+            case "json":
+                return "application/json";
+            case "csv":
+                return "text/csv";
+            case "md":
+                return "text/markdown";
+            case "css":
+                return "text/css";
+            case "js":
+                return "application/javascript";
+            default:
+                return "text/plain";
+        }
+    }
+
+    private boolean isUtf8(byte[] head, int start, int length) {
+        // The head may cut a multi-byte sequence; ignore up to three trailing bytes
+        int checkedLength = length - start;
+        for (int trim = 0; trim <= 3 && trim <= checkedLength; trim++) {
+            try {
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(head, start, checkedLength - trim));
+                return true;
+            } catch (CharacterCodingException e) {
+                // Try again without the last byte
+            }
+        }
+        return false;
+    }
+
+    private boolean isBitmapHeaderSize(int size) {
+        return size == 12 || size == 40 || size == 52 || size == 56 || size == 108 || size == 124;
+    }
+
+    private boolean startsWith(byte[] head, int length, int offset, String signature) {
+        if (offset + signature.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length(); i++) {
+            if (head[offset + i] != (byte) signature.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(byte[] head, int length, int offset, int... signature) {
+        if (offset + signature.length > length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (head[offset + i] != (byte) signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getExtension(String fileName) {
+        if (fileName == null || !fileName.contains(".")) {
+            return "";
+        }
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
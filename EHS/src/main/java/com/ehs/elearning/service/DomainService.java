@@ -4,19 +4,39 @@ import com.ehs.elearning.model.Domain;
 import com.ehs.elearning.model.ModuleStatus;
 import com.ehs.elearning.model.TrainingModule;
 import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.UserSummaryResponse;
 import com.ehs.elearning.repository.DomainRepository;
 import com.ehs.elearning.repository.TrainingModuleRepository;
 import com.ehs.elearning.repository.UserRepository;
+import com.ehs.elearning.security.UserDomainCache;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class DomainService {
 
+    // Ids of unknown users or domains are dropped by the joins; existing memberships by the conflict clause
+    private static final String ASSIGN_DOMAINS_SQL =
+            "INSERT INTO user_domains (user_id, domain_id) "
+            + "SELECT u.id, d.id FROM users u CROSS JOIN domains d "
+            + "WHERE u.id = ANY(?) AND d.id = ANY(?) "
+            + "ON CONFLICT DO NOTHING";
+    
+    private static final String REVOKE_DOMAINS_SQL =
+            "DELETE FROM user_domains WHERE user_id = ANY(?) AND domain_id = ANY(?)";
+    
+    // Users per statement and transaction, so huge assignments do not hold locks for long
+    private static final int MEMBERSHIP_CHUNK_SIZE = 1000;
+
     @Autowired
     private UserRepository userRepository;
     
@@ -26,6 +46,15 @@ public class DomainService {
     @Autowired
     private TrainingModuleRepository moduleRepository;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserDomainCache userDomainCache;
+    
     /**
      * Get all domains in the system
      * 
@@ -100,7 +129,54 @@ public class DomainService {
         }
         
         user.setDomains(domains);
-        return userRepository.save(user);
+        Users savedUser = userRepository.save(user);
+        userDomainCache.invalidate(userId);
+        return savedUser;
+    }
+    
+    /**
+     * Add domains to many users at once, directly in the join table. Memberships that already
+     * exist, and ids that do not exist, are skipped.
+     * 
+     * @param userIds The IDs of the users
+     * @param domainIds The IDs of the domains to add
+     * @return Number of memberships created
+     */
+    public int assignDomainsToUsers(Collection<UUID> userIds, Collection<UUID> domainIds) {
+        return updateMemberships(ASSIGN_DOMAINS_SQL, userIds, domainIds);
+    }
+    
+    /**
+     * Remove domains from many users at once, directly in the join table
+     * 
+     * @param userIds The IDs of the users
+     * @param domainIds The IDs of the domains to remove
+     * @return Number of memberships removed
+     */
+    public int revokeDomainsFromUsers(Collection<UUID> userIds, Collection<UUID> domainIds) {
+        return updateMemberships(REVOKE_DOMAINS_SQL, userIds, domainIds);
+    }
+    
+    private int updateMemberships(String sql, Collection<UUID> userIds, Collection<UUID> domainIds) {
+        List<UUID> users = new ArrayList<>(new LinkedHashSet<>(userIds));
+        UUID[] domains = new LinkedHashSet<>(domainIds).toArray(new UUID[0]);
+        if (users.isEmpty() || domains.length == 0) {
+            return 0;
+        }
+        
+        int total = 0;
+        for (int i = 0; i < users.size(); i += MEMBERSHIP_CHUNK_SIZE) {
+            UUID[] chunk = users.subList(i, Math.min(i + MEMBERSHIP_CHUNK_SIZE, users.size())).toArray(new UUID[0]);
+            Integer count = transactionTemplate.execute(status -> jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setArray(1, connection.createArrayOf("uuid", chunk));
+                statement.setArray(2, connection.createArrayOf("uuid", domains));
+                return statement;
+            }));
+            total += count != null ? count : 0;
+        }
+        userDomainCache.invalidateAll(users);
+        return total;
     }
     
     /**
@@ -127,7 +203,9 @@ public class DomainService {
         }
         
         user.addDomain(domain);
-        return userRepository.save(user);
+        Users savedUser = userRepository.save(user);
+        userDomainCache.invalidate(userId);
+        return savedUser;
     }
     
     /**
@@ -154,7 +232,9 @@ public class DomainService {
         }
         
         user.removeDomain(domain);
-        return userRepository.save(user);
+        Users savedUser = userRepository.save(user);
+        userDomainCache.invalidate(userId);
+        return savedUser;
     }
     
     /**
@@ -234,19 +314,41 @@ public class DomainService {
     }
     
     /**
-     * Get users assigned to a domain
+     * Get users assigned to a domain, one page at a time
      * 
      * @param domainId The ID of the domain
-     * @return List of users assigned to the domain
+     * @param pageable Page and sort, on user properties
+     * @return One page of users assigned to the domain
+     * @throws IllegalArgumentException if the domain does not exist
      */
-    public List<Users> getUsersForDomain(UUID domainId) {
-        Optional<Domain> domainOpt = domainRepository.findById(domainId);
-        if (!domainOpt.isPresent()) {
-            throw new RuntimeException("Domain not found with ID: " + domainId);
+    public Page<UserSummaryResponse> getUsersForDomain(UUID domainId, Pageable pageable) {
+        if (!domainRepository.existsById(domainId)) {
+            throw new IllegalArgumentException("Domain not found with ID: " + domainId);
         }
-        
-        Domain domain = domainOpt.get();
-        return new ArrayList<>(domain.getUsers());
+        return userRepository.findSummariesByDomainId(domainId, pageable);
+    }
+    
+    /**
+     * Count the users assigned to a domain without loading them
+     * 
+     * @param domainId The ID of the domain
+     * @return Number of users assigned to the domain
+     */
+    public long countUsersForDomain(UUID domainId) {
+        return domainRepository.countMembers(domainId);
+    }
+    
+    /**
+     * Count the users of every domain with one query
+     * 
+     * @return Domain ID -> number of users; domains without users are absent
+     */
+    public Map<UUID, Long> countUsersByDomain() {
+        Map<UUID, Long> counts = new HashMap<>();
+        for (Object[] row : domainRepository.countMembersByDomain()) {
+            counts.put((UUID) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
     }
     
     /**
@@ -0,0 +1,375 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes stored files to the HTTP response without copying them through heap buffers.
+ *
+ * In "direct" mode a single region is handed to Tomcat's sendfile support when the connector
+ * offers it, otherwise bytes are moved with FileChannel.transferTo. In "x-accel-redirect" or
+ * "x-sendfile" mode only headers are written and the fronting proxy serves the bytes once the
+ * caller has done its authorization checks. Files in a remote store are answered with a
+ * redirect to a short-lived presigned URL when the backend can issue one. Precompressed
+ * variants are sent in place of the file when the client accepts their encoding.
+ *
+ * The FileChannel.transferTo fallback only avoids the heap when the target is itself a file or
+ * socket channel. The servlet output stream is neither, so there the JDK copies each region
+ * through a temporary heap buffer, costing about what the old Resource body did; the zero-copy
+ * paths are sendfile, the proxy modes and presigned redirects. FileDeliveryBenchmark measures
+ * the three.
+ */
+@Service
+public class FileDeliveryService {
+
+    public static final String MODE_DIRECT = "direct";
+    public static final String MODE_X_ACCEL_REDIRECT = "x-accel-redirect";
+    public static final String MODE_X_SENDFILE = "x-sendfile";
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private HotContentCache hotContentCache;
+
+    @Autowired
+    private CompressedVariantService compressedVariantService;
+
+    @Value("${file.delivery.mode:direct}")
+    private String deliveryMode;
+
+    @Value("${file.delivery.accel-prefix:/protected-uploads/}")
+    private String accelPrefix;
+
+    @Value("${file.delivery.sendfile-min-size:49152}")
+    private long sendfileMinSize;
+
+    @Value("${file.delivery.presigned-urls:true}")
+    private boolean presignedUrls;
+
+    @Value("${file.delivery.presigned-url-validity:PT5M}")
+    private Duration presignedUrlValidity;
+
+    /**
+     * Deliver a stored file, honouring conditional and Range requests
+     *
+     * @param fileName The stored filename
+     * @param contentType The content type to send
+     * @param downloadName The filename to advertise in Content-Disposition
+     * @return An empty entity with the status already written, for the controller to return
+     */
+    public ResponseEntity<Void> deliver(String fileName, String contentType, String downloadName,
+                                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return deliver(fileName, contentType, null, downloadName, request, response);
+    }
+
+    /**
+     * Deliver a stored file, or the compressed variant the client prefers, honouring
+     * conditional and Range requests
+     *
+     * @param fileName The stored filename
+     * @param contentType The content type to send
+     * @param compressedEncodings The stored variants, e.g. "br,gzip", or null if there are none
+     * @param downloadName The filename to advertise in Content-Disposition
+     * @return An empty entity with the status already written, for the controller to return
+     */
+    public ResponseEntity<Void> deliver(String fileName, String contentType, String compressedEncodings,
+                                        String downloadName, HttpServletRequest request,
+                                        HttpServletResponse response) throws IOException {
+        return deliver(fileName, contentType, compressedEncodings, downloadName, null, request, response);
+    }
+
+    /**
+     * Deliver a stored file as above, with a Cache-Control other than the default revalidation
+     *
+     * @param cacheControl The Cache-Control header, or null for "no-cache, private"
+     * @return An empty entity with the status already written, for the controller to return
+     */
+    public ResponseEntity<Void> deliver(String fileName, String contentType, String compressedEncodings,
+                                        String downloadName, String cacheControl, HttpServletRequest request,
+                                        HttpServletResponse response) throws IOException {
+        writeResponse(fileName, contentType, compressedEncodings, downloadName, cacheControl, request, response);
+        // Headers and body are on the response already; the entity only repeats the status
+        return ResponseEntity.status(response.getStatus()).build();
+    }
+
+    private void writeResponse(String fileName, String contentType, String compressedEncodings,
+                               String downloadName, String cacheControl, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        String contentDisposition = "inline; filename=\"" + downloadName + "\"";
+        String contentEncoding = compressedVariantService.negotiate(
+                request.getHeader(HttpHeaders.ACCEPT_ENCODING), compressedEncodings);
+        if (compressedEncodings != null && !compressedEncodings.isEmpty()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (contentEncoding != null) {
+            // Ranges and validators then apply to the encoded bytes, as HTTP defines them
+            fileName = fileStorageService.getDerivedFileName(fileName, contentEncoding);
+        }
+
+        Path filePath = fileStorageService.getLocalPath(fileName).orElse(null);
+
+        if (filePath == null && presignedUrls) {
+            // Remote store: let the client fetch the bytes directly, after our authorization check
+            Optional<URI> presignedUrl = fileStorageService.getPresignedDownloadUrl(
+                    fileName, presignedUrlValidity, contentType, contentEncoding, contentDisposition);
+            if (presignedUrl.isPresent()) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                response.setStatus(HttpServletResponse.SC_FOUND);
+                response.setHeader(HttpHeaders.LOCATION, presignedUrl.get().toString());
+                return;
+            }
+        }
+
+        // One stat per request; the validators it returns also select the cached version
+        StoredFileInfo fileInfo = fileStorageService.getFileInfo(fileName);
+        String eTag = fileInfo.getETag();
+        long lastModified = fileInfo.getLastModified();
+
+        // Answers 304 / 412 and sets the validators on the response
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl != null ? cacheControl : "no-cache, private");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        if (contentEncoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+
+        if (filePath != null && MODE_X_ACCEL_REDIRECT.equalsIgnoreCase(deliveryMode)) {
+            response.setContentType(contentType);
+            response.setHeader("X-Accel-Redirect", accelPrefix + fileStorageService.getRelativePath(fileName).get());
+            return;
+        }
+        if (filePath != null && MODE_X_SENDFILE.equalsIgnoreCase(deliveryMode)) {
+            response.setContentType(contentType);
+            response.setHeader("X-Sendfile", filePath.toString());
+            return;
+        }
+
+        // Hot small files are then answered from memory
+        HotContentCache.CachedFile cachedFile = hotContentCache.get(fileName, fileInfo);
+
+        long length = fileInfo.getSize();
+        List<HttpRange> ranges = resolveRanges(request, eTag, lastModified);
+        boolean headRequest = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!headRequest) {
+                transfer(fileName, filePath, cachedFile, 0, length, request, response);
+            }
+            return;
+        }
+
+        long[][] regions;
+        try {
+            regions = toRegions(ranges, length);
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.length == 1) {
+            long start = regions[0][0];
+            long count = regions[0][1];
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + (start + count - 1) + "/" + length);
+            response.setContentLengthLong(count);
+            if (!headRequest) {
+                transfer(fileName, filePath, cachedFile, start, count, request, response);
+            }
+            return;
+        }
+
+        // Several ranges: multipart/byteranges, each part streamed from the same channel
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        byte[][] partHeaders = new byte[regions.length][];
+        long contentLength = 0;
+        for (int i = 0; i < regions.length; i++) {
+            long start = regions[i][0];
+            long end = start + regions[i][1] - 1;
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + regions[i][1];
+        }
+        byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closingBoundary.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (headRequest) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (cachedFile != null) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < regions.length; i++) {
+                out.write(partHeaders[i]);
+                target.write(cachedFile.slice(regions[i][0], regions[i][1]));
+            }
+        } else if (filePath != null) {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                for (int i = 0; i < regions.length; i++) {
+                    out.write(partHeaders[i]);
+                    transferRegion(source, regions[i][0], regions[i][1], target);
+                }
+            }
+        } else {
+            for (int i = 0; i < regions.length; i++) {
+                out.write(partHeaders[i]);
+                try (InputStream source = fileStorageService.openStream(fileName, regions[i][0], regions[i][1])) {
+                    source.transferTo(out);
+                }
+            }
+        }
+        out.write(closingBoundary);
+        out.flush();
+    }
+
+    /**
+     * Parse the Range header, ignoring it when an If-Range validator no longer matches
+     *
+     * @return The requested ranges, or null to send the full file
+     */
+    private List<HttpRange> resolveRanges(HttpServletRequest request, String eTag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isEmpty()) {
+            return null;
+        }
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            long ifRangeDate = -1;
+            try {
+                ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            } catch (IllegalArgumentException e) {
+                // Not a date, so it was an entity tag that did not match
+            }
+            if (ifRangeDate == -1 || lastModified / 1000 > ifRangeDate / 1000) {
+                return null;
+            }
+        }
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.isEmpty() ? null : ranges;
+        } catch (IllegalArgumentException e) {
+            // Malformed Range headers are ignored, as RFC 9110 allows
+            return null;
+        }
+    }
+
+    /**
+     * Convert ranges to (start, count) pairs, rejecting ranges that cannot be satisfied
+     */
+    private long[][] toRegions(List<HttpRange> ranges, long length) {
+        long[][] regions = new long[ranges.size()][];
+        long total = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            HttpRange range = ranges.get(i);
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            // HttpRange does not reject a first position at or past the end of the file
+            if (start >= length || end < start) {
+                throw new IllegalArgumentException("Range starts beyond the end of the resource");
+            }
+            regions[i] = new long[] { start, end - start + 1 };
+            total += regions[i][1];
+        }
+        // Same guard Spring applies: many overlapping ranges must not amplify the response
+        if (ranges.size() > 1 && total > length) {
+            throw new IllegalArgumentException("Total length of ranges exceeds resource length");
+        }
+        return regions;
+    }
+
+    /**
+     * Send one region of a file: from the hot content cache, through Tomcat sendfile when
+     * available, or for files in a remote store from a ranged read. Without sendfile the
+     * transferTo below goes through a heap buffer, as the servlet stream is not a channel.
+     */
+    private void transfer(String fileName, Path filePath, HotContentCache.CachedFile cachedFile, long start,
+                          long count, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (cachedFile != null) {
+            Channels.newChannel(response.getOutputStream()).write(cachedFile.slice(start, count));
+            response.flushBuffer();
+            return;
+        }
+
+        if (filePath == null) {
+            try (InputStream source = fileStorageService.openStream(fileName, start, count)) {
+                source.transferTo(response.getOutputStream());
+            }
+            response.flushBuffer();
+            return;
+        }
+
+        if (count >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // The connector writes the bytes with sendfile once the request completes
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            transferRegion(source, start, count, target);
+        }
+        response.flushBuffer();
+    }
+
+    private void transferRegion(FileChannel source, long start, long count, WritableByteChannel target)
+            throws IOException {
+        long position = start;
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = source.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new IOException("File truncated while being served");
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+}
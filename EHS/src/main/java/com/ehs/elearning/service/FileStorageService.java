@@ -1,61 +1,369 @@
 package com.ehs.elearning.service;
 
+import com.ehs.elearning.service.storage.StorageBackend;
+import com.ehs.elearning.service.storage.StoredFileInfo;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Entry point for stored files. Uploads are staged and hashed on local disk below
+ * {@code file.upload-dir}, then handed to the configured {@link StorageBackend}
+ * (local disk or an S3-compatible store). Resumable uploads are staged in the backend
+ * itself, as their chunks may arrive at different instances. Stored filenames are logical names; callers
+ * never see how a backend lays them out.
+ *
+ * Identical uploads share one stored file, so reusing a file and deleting it must not
+ * interleave. Both take a PostgreSQL advisory lock on the filename, which holds across
+ * instances. Reuse is recorded in {@code stored_file_reuses} under that lock, rather than by
+ * touching the file, whose modification time and entity tag clients cache by. Deletion skips
+ * files stored or reused within the grace period. The row of the material that reuses a file
+ * is saved well within that time.
+ */
 @Service
 public class FileStorageService {
 
+    private static final String STAGING_DIRECTORY = "staging";
+    
+    /**
+     * Separates a stored filename from the variant name of a file derived from it, such as
+     * {@code <fileName>~gzip}. Generated filenames never contain it.
+     */
+    public static final char DERIVED_FILE_SEPARATOR = '~';
+
     private final Path fileStorageLocation;
+    
+    private final Path stagingLocation;
+    
+    private final StorageBackend storageBackend;
+    
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final TransactionTemplate transactionTemplate;
 
-    public FileStorageService(@Value("${file.upload-dir}") String uploadDir) {
+    public FileStorageService(@Value("${file.upload-dir}") String uploadDir, StorageBackend storageBackend,
+                              ApplicationEventPublisher eventPublisher, JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate) {
         this.fileStorageLocation = Paths.get(uploadDir)
                 .toAbsolutePath().normalize();
+        this.stagingLocation = this.fileStorageLocation.resolve(STAGING_DIRECTORY);
+        this.storageBackend = storageBackend;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
 
         try {
-            Files.createDirectories(this.fileStorageLocation);
+            Files.createDirectories(this.stagingLocation);
         } catch (Exception ex) {
             throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
         }
     }
 
     /**
-     * Store a file in the configured upload directory
+     * Store a file in the configured upload directory. Files are content-addressed: the
+     * SHA-256 of the bytes is computed while they are written, and identical uploads
+     * share a single stored file.
      * 
      * @param file The file to store
      * @return The filename of the stored file
      */
     public String storeFile(MultipartFile file) throws IOException {
+        String fileExtension = getFileExtension(file.getOriginalFilename());
+        Path tempFile = createStagingFile();
+        
+        try {
+            // Hash in-flight while copying, so no second read pass is needed
+            MessageDigest digest = newContentDigest();
+            try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String fileName = getContentFileName(digest, fileExtension);
+            if (!reuseExisting(fileName)) {
+                // A new file is recent by itself, so storing it needs no lock
+                storageBackend.store(fileName, tempFile);
+                eventPublisher.publishEvent(new StoredFileChangedEvent(fileName));
+            }
+            return fileName;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+    
+    /**
+     * Generate a unique filename that keeps the original extension, used for staging uploads
+     * 
+     * @param originalFilename The filename supplied by the client
+     * @return The unique filename
+     */
+    public String generateFileName(String originalFilename) throws IOException {
+        return UUID.randomUUID().toString() + getFileExtension(originalFilename);
+    }
+    
+    /**
+     * Create the digest used for content addressing
+     */
+    public MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    /**
+     * Get the content-addressed name of a file
+     * 
+     * @param digest The digest of exactly the bytes of the file
+     * @param fileExtension The extension to keep, including the dot
+     */
+    private String getContentFileName(MessageDigest digest, String fileExtension) {
+        return HexFormat.of().formatHex(digest.digest()) + fileExtension;
+    }
+    
+    /**
+     * Check whether identical content is already stored, and if so mark it as in use. The
+     * reuse is recorded under the lock, so a concurrent release or sweep sees the file as in
+     * use until the material row referencing it is saved. The stored bytes are unchanged, so
+     * caches keep the file.
+     * 
+     * @param fileName The content-addressed filename
+     * @return true if the stored file can be reused and the new bytes dropped
+     */
+    private boolean reuseExisting(String fileName) throws IOException {
+        return withFileLock(fileName, () -> {
+            if (!storageBackend.exists(fileName)) {
+                return false;
+            }
+            jdbcTemplate.update("INSERT INTO stored_file_reuses (file_name, reused_at) VALUES (?, ?) "
+                    + "ON CONFLICT (file_name) DO UPDATE SET reused_at = EXCLUDED.reused_at",
+                    fileName, LocalDateTime.now());
+            return true;
+        });
+    }
+    
+    /**
+     * @return true if an upload reused the stored file at or after the cutoff
+     */
+    private boolean reusedSince(String sourceName, long cutoff) {
+        LocalDateTime cutoffTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(cutoff), ZoneId.systemDefault());
+        return !jdbcTemplate.queryForList("SELECT 1 FROM stored_file_reuses WHERE file_name = ? AND reused_at >= ?",
+                sourceName, cutoffTime).isEmpty();
+    }
+    
+    /**
+     * Delete a stored or derived file unless it is still in use. Runs under the same lock as
+     * uploads that reuse a file, so an upload cannot pick the file up while it is deleted.
+     * 
+     * @param fileName The stored or derived filename
+     * @param graceMillis Files (or, for derived files, their source) stored or reused more recently are kept
+     * @param referenced Checked under the lock: whether a learning material references the source file
+     * @return true if the file was deleted
+     */
+    public boolean deleteIfUnused(String fileName, long graceMillis, BooleanSupplier referenced) throws IOException {
+        String sourceName = getSourceFileName(fileName);
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        
+        boolean deleted = withFileLock(sourceName, () -> {
+            if (!storageBackend.exists(fileName) || storageBackend.stat(fileName).getLastModified() >= cutoff) {
+                return false;
+            }
+            if (!sourceName.equals(fileName) && storageBackend.exists(sourceName)
+                    && storageBackend.stat(sourceName).getLastModified() >= cutoff) {
+                return false;
+            }
+            if (reusedSince(sourceName, cutoff) || referenced.getAsBoolean()) {
+                return false;
+            }
+            storageBackend.delete(fileName);
+            if (sourceName.equals(fileName)) {
+                jdbcTemplate.update("DELETE FROM stored_file_reuses WHERE file_name = ?", fileName);
+            }
+            return true;
+        });
+        
+        if (deleted) {
+            eventPublisher.publishEvent(new StoredFileChangedEvent(fileName));
+        }
+        return deleted;
+    }
+    
+    /**
+     * Run an action while holding the advisory lock of a stored filename, for the length of a
+     * short transaction
+     */
+    private boolean withFileLock(String fileName, StorageAction action) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtextextended(?, 0))", fileName);
+                try {
+                    return action.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    @FunctionalInterface
+    private interface StorageAction {
+        boolean run() throws IOException;
+    }
+    
+    private String getFileExtension(String originalFilename) throws IOException {
         // Normalize file name
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
+        String originalFileName = StringUtils.cleanPath(originalFilename);
         
         // Check if the file's name contains invalid characters
         if (originalFileName.contains("..")) {
             throw new IOException("Filename contains invalid path sequence " + originalFileName);
         }
         
-        // Generate a unique filename
-        String fileExtension = "";
         if (originalFileName.contains(".")) {
-            fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
+            return originalFileName.substring(originalFileName.lastIndexOf(".")).toLowerCase();
         }
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+        return "";
+    }
+    
+    /**
+     * Get the name under which a file derived from a stored file is kept
+     * 
+     * @param fileName The stored filename
+     * @param variant The variant name, e.g. "gzip"
+     * @return The derived filename
+     */
+    public String getDerivedFileName(String fileName, String variant) {
+        return fileName + DERIVED_FILE_SEPARATOR + variant;
+    }
+    
+    /**
+     * Get the stored file a derived file was made from
+     * 
+     * @param fileName A stored or derived filename
+     * @return The stored filename it belongs to
+     */
+    public String getSourceFileName(String fileName) {
+        int separator = fileName.indexOf(DERIVED_FILE_SEPARATOR);
+        return separator >= 0 ? fileName.substring(0, separator) : fileName;
+    }
+    
+    /**
+     * Create an empty file in the staging directory, to be written and then handed to
+     * {@link #storeDerivedFile}
+     * 
+     * @return The staging file
+     */
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(this.stagingLocation, "upload-", ".tmp");
+    }
+    
+    /**
+     * Store a file derived from a stored file, replacing any previous version
+     * 
+     * @param derivedFileName The name from {@link #getDerivedFileName}
+     * @param source A written file in the staging directory; it is moved, not copied
+     */
+    public void storeDerivedFile(String derivedFileName, Path source) throws IOException {
+        storageBackend.store(derivedFileName, source);
+        eventPublisher.publishEvent(new StoredFileChangedEvent(derivedFileName));
+    }
+    
+    /**
+     * Get the number of bytes received so far for a partial (resumable) upload. Partial
+     * uploads are kept by the storage backend, so any instance can serve the next chunk.
+     * 
+     * @param fileName The staging filename of the upload
+     * @return Bytes received, 0 if nothing has been received
+     */
+    public long getPartialFileSize(String fileName) throws IOException {
+        return storageBackend.getPartialSize(fileName);
+    }
+    
+    /**
+     * Append a chunk to a partial upload, streaming straight from the request body.
+     * The chunk is only accepted if it starts exactly at the current end of the partial upload.
+     * 
+     * @param fileName The staging filename of the upload
+     * @param offset The offset the client believes it is writing at
+     * @param maxLength The maximum number of bytes to accept
+     * @param inputStream The chunk data
+     * @return The new size of the partial upload
+     */
+    public long appendToPartialFile(String fileName, long offset, long maxLength, InputStream inputStream)
+            throws IOException {
+        return storageBackend.appendPartial(fileName, offset, maxLength, inputStream);
+    }
+    
+    /**
+     * Turn a fully received partial upload into a content-addressed stored file. The backend
+     * moves it in place (a rename on local disk, a server-side copy in S3), so the data is
+     * never sent a second time.
+     * 
+     * @param fileName The staging filename of the upload
+     * @param digest The digest computed while the chunks were received, or null if it was
+     *               lost (for example after a restart, or when chunks went to different
+     *               instances) and the upload has to be hashed again
+     * @return The stored filename
+     */
+    public String completePartialFile(String fileName, MessageDigest digest) throws IOException {
+        storageBackend.completePartial(fileName);
         
-        // Copy file to the target location
-        Path targetLocation = this.fileStorageLocation.resolve(uniqueFileName);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-        return uniqueFileName;
+        if (digest == null) {
+            digest = newContentDigest();
+            try (InputStream inputStream = new DigestInputStream(storageBackend.openPartial(fileName), digest)) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        
+        String stagingName = StringUtils.getFilename(fileName);
+        String fileExtension = stagingName.contains(".") ? stagingName.substring(stagingName.lastIndexOf(".")) : "";
+        String storedName = getContentFileName(digest, fileExtension);
+        if (reuseExisting(storedName)) {
+            storageBackend.deletePartial(fileName);
+        } else {
+            storageBackend.storePartial(fileName, storedName);
+            eventPublisher.publishEvent(new StoredFileChangedEvent(storedName));
+        }
+        return storedName;
+    }
+    
+    /**
+     * Discard a partial upload
+     * 
+     * @param fileName The staging filename of the upload
+     */
+    public void deletePartialFile(String fileName) throws IOException {
+        storageBackend.deletePartial(fileName);
     }
     
     /**
@@ -64,18 +372,29 @@ public class FileStorageService {
      * @param fileName The name of the file to delete
      */
     public void deleteFile(String fileName) throws IOException {
-        Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-        Files.deleteIfExists(filePath);
+        storageBackend.delete(fileName);
+        eventPublisher.publishEvent(new StoredFileChangedEvent(fileName));
     }
     
     /**
-     * Get the path to a stored file
+     * Get the path to a stored file on local disk
      * 
      * @param fileName The filename
-     * @return The complete file path
+     * @return The complete file path, or empty if files are stored remotely
      */
-    public Path getFilePath(String fileName) {
-        return this.fileStorageLocation.resolve(fileName).normalize();
+    public Optional<Path> getLocalPath(String fileName) {
+        return storageBackend.getLocalPath(fileName);
+    }
+    
+    /**
+     * Get the path of a locally stored file relative to the upload directory, as a fronting proxy sees it
+     * 
+     * @param fileName The filename
+     * @return The relative path with forward slashes, or empty if files are stored remotely
+     */
+    public Optional<String> getRelativePath(String fileName) {
+        return storageBackend.getLocalPath(fileName)
+                .map(path -> this.fileStorageLocation.relativize(path).toString().replace('\\', '/'));
     }
     
     /**
@@ -85,7 +404,113 @@ public class FileStorageService {
      * @return true if exists, false otherwise
      */
     public boolean fileExists(String fileName) {
-        Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-        return Files.exists(filePath);
+        try {
+            return storageBackend.exists(fileName);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Get size, modification time and entity tag of a stored file in one lookup
+     * 
+     * @param fileName The filename
+     * @return The file metadata
+     */
+    public StoredFileInfo getFileInfo(String fileName) throws IOException {
+        return storageBackend.stat(fileName);
+    }
+    
+    /**
+     * Get the last modified time of a stored file
+     * 
+     * @param fileName The filename
+     * @return Milliseconds since the epoch
+     */
+    public long getLastModified(String fileName) throws IOException {
+        return storageBackend.stat(fileName).getLastModified();
+    }
+    
+    /**
+     * Open a stream over a byte range of a stored file
+     * 
+     * @param fileName The filename
+     * @param start The first byte to read
+     * @param length The number of bytes to read
+     * @return The stream, which the caller must close
+     */
+    public InputStream openStream(String fileName, long start, long length) throws IOException {
+        return storageBackend.openStream(fileName, start, length);
+    }
+    
+    /**
+     * Get a time-limited URL from which the client can download the file directly
+     * 
+     * @param fileName The filename
+     * @param validity How long the URL stays valid
+     * @param contentType The content type the store should send
+     * @param contentEncoding The Content-Encoding the store should send, or null
+     * @param contentDisposition The Content-Disposition the store should send
+     * @return The URL, or empty if the backend serves files only through the application
+     */
+    public Optional<URI> getPresignedDownloadUrl(String fileName, Duration validity, String contentType,
+                                                 String contentEncoding, String contentDisposition) {
+        return storageBackend.getPresignedDownloadUrl(fileName, validity, contentType, contentEncoding,
+                contentDisposition);
+    }
+    
+    /**
+     * List files still stored in the flat pre-sharding layout
+     * 
+     * @param limit The maximum number of filenames to return
+     * @return Filenames found directly in the upload directory
+     */
+    public List<String> listUnshardedFiles(int limit) throws IOException {
+        return storageBackend.listUnshardedKeys(limit);
+    }
+    
+    /**
+     * Move a file from the flat layout into its shard directory
+     * 
+     * @param fileName The filename
+     */
+    public void moveToShard(String fileName) throws IOException {
+        storageBackend.moveToShard(fileName);
+    }
+    
+    /**
+     * Get the number of top-level shards
+     */
+    public int getShardCount() {
+        return storageBackend.getShardCount();
+    }
+    
+    /**
+     * List the stored files below one top-level shard
+     * 
+     * @param shard The shard index, 0 to {@link #getShardCount()} - 1
+     * @return Filenames in that shard
+     */
+    public List<String> listShardFiles(int shard) throws IOException {
+        return storageBackend.listShard(shard);
+    }
+    
+    /**
+     * Delete staging files (interrupted direct uploads) older than the given age
+     * 
+     * @param maxAgeMillis The minimum age of a staging file to be removed
+     * @return Number of files removed
+     */
+    public int deleteStaleStagingFiles(long maxAgeMillis) throws IOException {
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.stagingLocation, "upload-*.tmp")) {
+            for (Path path : stream) {
+                if (Files.getLastModifiedTime(path).toMillis() < cutoff && Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Size-bounded cache of small, frequently served files. Caffeine's W-TinyLFU policy keeps
+ * the popular hazard signs and one-page PDFs resident while one-off downloads do not
+ * displace them. Bytes are held in direct buffers, outside the Java heap, and entries are
+ * weighed by their size.
+ *
+ * Entries are keyed by filename and entity tag, so a file replaced on another
+ * instance, which sends no event here, is simply a miss. Entries also expire after a while,
+ * which frees the memory of deleted files and bounds how long any stale entry can live.
+ */
+@Service
+public class HotContentCache {
+
+    /**
+     * A cached file: its metadata and a read-only view of its bytes
+     */
+    public static class CachedFile {
+        private final StoredFileInfo info;
+        private final ByteBuffer content;
+
+        CachedFile(StoredFileInfo info, ByteBuffer content) {
+            this.info = info;
+            this.content = content;
+        }
+
+        public StoredFileInfo getInfo() {
+            return info;
+        }
+
+        /**
+         * @return A view over the given region; the cached buffer itself is never modified
+         */
+        public ByteBuffer slice(long start, long count) {
+            return content.slice((int) start, (int) count);
+        }
+    }
+
+    /**
+     * A stored file in one version, as identified by its entity tag
+     */
+    private static final class CacheKey {
+        private final String fileName;
+        private final String eTag;
+
+        CacheKey(String fileName, String eTag) {
+            this.fileName = fileName;
+            this.eTag = eTag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return fileName.equals(other.fileName) && eTag.equals(other.eTag);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileName, eTag);
+        }
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final Cache<CacheKey, CachedFile> cache;
+
+    public HotContentCache(@Value("${file.cache.enabled:true}") boolean enabled,
+                           @Value("${file.cache.max-size:64MB}") DataSize maxSize,
+                           @Value("${file.cache.max-entry-size:256KB}") DataSize maxEntrySize,
+                           @Value("${file.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((CacheKey key, CachedFile file) -> (int) Math.min(Integer.MAX_VALUE, file.getInfo().getSize()))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get a file through the cache, loading it if it is small enough. The metadata comes
+     * from storage on every request, so an entry is only used while its entity tag matches.
+     *
+     * @param fileName The stored filename
+     * @param info Metadata just read for the file
+     * @return The cached file, or null if the file is too large to cache or caching is off
+     */
+    public CachedFile get(String fileName, StoredFileInfo info) throws IOException {
+        if (!enabled || info.getSize() > maxEntrySize) {
+            return null;
+        }
+
+        try {
+            return cache.get(new CacheKey(fileName, info.getETag()), key -> load(key.fileName, info));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Drop all versions of a file whose stored bytes were written or deleted on this instance,
+     * rather than waiting for them to expire
+     */
+    @EventListener
+    public void onStoredFileChanged(StoredFileChangedEvent event) {
+        cache.asMap().keySet().removeIf(key -> key.fileName.equals(event.getFileName()));
+    }
+
+    /**
+     * @return Hit, miss and eviction counters plus current occupancy
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("entries", cache.estimatedSize());
+        result.put("weightBytes", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxWeightBytes", cache.policy().eviction().map(eviction -> eviction.getMaximum()).orElse(0L));
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionWeightBytes", stats.evictionWeight());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        return result;
+    }
+
+    private CachedFile load(String fileName, StoredFileInfo info) {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) info.getSize());
+        try (InputStream inputStream = fileStorageService.openStream(fileName, 0, info.getSize());
+             ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // Keep reading until the buffer is full
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (content.hasRemaining()) {
+            throw new UncheckedIOException(new IOException("File " + fileName + " changed while being cached"));
+        }
+        content.flip();
+        return new CachedFile(info, content.asReadOnlyBuffer());
+    }
+}
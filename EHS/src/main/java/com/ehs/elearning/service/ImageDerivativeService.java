@@ -0,0 +1,341 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Produces smaller versions of uploaded images so phones are not sent 12 MP originals: a few
+ * width-bounded variants ("<name>~w640.jpg") and a thumbnail that fits a square box
+ * ("<name>~thumb.jpg"). JPEG sources get JPEG derivatives, everything else PNG. Derivatives
+ * are made in the background at upload time, and a backfill job works through images that
+ * were uploaded before. They are never rewritten under the same name, so they can be served
+ * with immutable cache headers.
+ */
+@Service
+public class ImageDerivativeService {
+
+    public static final String THUMBNAIL = "thumbnail";
+
+    private static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/bmp");
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Value("${file.image.enabled:true}")
+    private boolean derivativesEnabled;
+
+    @Value("${file.image.widths:320,640,1280}")
+    private int[] widths;
+
+    @Value("${file.image.thumbnail-size:160}")
+    private int thumbnailSize;
+
+    @Value("${file.image.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${file.image.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${file.image.backfill-batch-size:50}")
+    private int backfillBatchSize;
+
+    private final ThreadPoolExecutor executor;
+
+    // Files queued or being processed, so duplicate uploads do not process twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // Next page of image materials the backfill job will look at
+    private int backfillPage = 0;
+
+    private boolean backfillComplete = false;
+
+    public ImageDerivativeService(@Value("${file.image.threads:2}") int threads,
+                                  @Value("${file.image.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivative-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return true if derivatives are made for the content type
+     */
+    public boolean supports(String contentType) {
+        return contentType != null && IMAGE_TYPES.contains(contentType);
+    }
+
+    /**
+     * Queue derivative generation for a newly stored image; returns immediately
+     */
+    public void scheduleDerivatives(String fileName, String contentType) {
+        if (supports(contentType) && !scheduleDerivatives(fileName)) {
+            System.err.println("Image queue full, skipping derivatives for " + fileName);
+        }
+    }
+
+    /**
+     * Queue derivative generation for a stored image; returns immediately
+     *
+     * @return false if the queue was full and the file was not queued
+     */
+    private boolean scheduleDerivatives(String fileName) {
+        if (!derivativesEnabled || !pending.add(fileName)) {
+            return true;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    createDerivatives(fileName);
+                } catch (Exception e) {
+                    System.err.println("Error creating image derivatives for " + fileName + ": " + e.getMessage());
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            return false;
+        }
+    }
+
+    /**
+     * Pick the derivative to serve for a requested size
+     *
+     * @param fileName The stored filename
+     * @param contentType The content type of the original
+     * @param size The requested width in pixels, or "thumbnail"
+     * @return The derived filename, or null to serve the original
+     */
+    public String resolveVariant(String fileName, String contentType, String size) {
+        if (size == null || !supports(contentType)) {
+            return null;
+        }
+
+        String variant;
+        if (THUMBNAIL.equalsIgnoreCase(size)) {
+            variant = "thumb";
+        } else {
+            int requestedWidth;
+            try {
+                requestedWidth = Integer.parseInt(size);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            // The smallest variant at least as wide as requested; larger requests get the original
+            variant = null;
+            for (int width : sortedWidths()) {
+                if (width >= requestedWidth) {
+                    variant = "w" + width;
+                    break;
+                }
+            }
+            if (variant == null) {
+                return null;
+            }
+        }
+
+        String derivedFileName = getDerivedFileName(fileName, variant, contentType.equals("image/jpeg"));
+        // Originals narrower than a variant have no such variant and are served as they are
+        return fileStorageService.fileExists(derivedFileName) ? derivedFileName : null;
+    }
+
+    /**
+     * @return The content type of the derivatives made from an original of the given type
+     */
+    public String getVariantContentType(String contentType) {
+        return "image/jpeg".equals(contentType) ? "image/jpeg" : "image/png";
+    }
+
+    /**
+     * Queue images uploaded before derivatives existed, a page at a time and only as fast as
+     * the executor has room for
+     */
+    @Scheduled(fixedDelayString = "${file.image.backfill-interval:300000}", initialDelay = 90000)
+    public synchronized void backfillDerivatives() {
+        if (!derivativesEnabled || backfillComplete) {
+            return;
+        }
+        if (executor.getQueue().remainingCapacity() < backfillBatchSize) {
+            return;
+        }
+
+        Page<LearningMaterial> page = materialRepository.findImageMaterials(
+                PageRequest.of(backfillPage, backfillBatchSize, Sort.by("id")));
+        for (LearningMaterial material : page.getContent()) {
+            scheduleDerivatives(material.getFilePath());
+        }
+
+        if (page.hasNext()) {
+            backfillPage++;
+        } else {
+            backfillComplete = true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void createDerivatives(String fileName) throws IOException {
+        StoredFileInfo info = fileStorageService.getFileInfo(fileName);
+        try (InputStream in = fileStorageService.openStream(fileName, 0, info.getSize());
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                boolean jpeg = reader.getFormatName().toLowerCase(Locale.ROOT).startsWith("jp");
+                if (fileStorageService.fileExists(getDerivedFileName(fileName, "thumb", jpeg))) {
+                    return; // Already done, e.g. for an identical earlier upload
+                }
+
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    System.err.println("Image " + fileName + " is too large for derivatives: " + width + "x" + height);
+                    return;
+                }
+
+                // Decode only as many pixels as the largest derivative needs, at twice its size
+                // so the final downscale stays smooth
+                int largestNeeded = thumbnailSize;
+                for (int target : widths) {
+                    if (target < width) {
+                        largestNeeded = Math.max(largestNeeded, target);
+                    }
+                }
+                int subsampling = Math.max(1, width / (largestNeeded * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                for (int target : sortedWidths()) {
+                    if (target < width) {
+                        int targetHeight = Math.max(1, (int) Math.round((double) height * target / width));
+                        store(getDerivedFileName(fileName, "w" + target, jpeg), scale(source, target, targetHeight, jpeg), jpeg);
+                    }
+                }
+
+                // The thumbnail is written last; its presence marks the derivatives as complete
+                double thumbnailScale = Math.min(1.0, (double) thumbnailSize / Math.max(width, height));
+                int thumbnailWidth = Math.max(1, (int) Math.round(width * thumbnailScale));
+                int thumbnailHeight = Math.max(1, (int) Math.round(height * thumbnailScale));
+                store(getDerivedFileName(fileName, "thumb", jpeg),
+                        scale(source, thumbnailWidth, thumbnailHeight, jpeg), jpeg);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale down in steps of at most one half, which keeps bilinear filtering from dropping
+     * detail the way a single large step does
+     */
+    private BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight, boolean jpeg) {
+        int type = jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+
+        return current;
+    }
+
+    private void store(String derivedFileName, BufferedImage image, boolean jpeg) throws IOException {
+        Path tempFile = fileStorageService.createStagingFile();
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(jpeg ? "jpeg" : "png").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (jpeg) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(jpegQuality);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            fileStorageService.storeDerivedFile(derivedFileName, tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private String getDerivedFileName(String fileName, String variant, boolean jpeg) {
+        return fileStorageService.getDerivedFileName(fileName, variant + (jpeg ? ".jpg" : ".png"));
+    }
+
+    private int[] sortedWidths() {
+        int[] sorted = widths.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,119 @@
+package com.ehs.elearning.service;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Opaque position in a listing ordered by (sort key, id). Instead of skipping rows with
+ * OFFSET, the next page seeks past the last row returned, so deep pages cost the same as the
+ * first one. The sort key must be a non-null column; the id breaks ties.
+ */
+public final class KeysetCursor {
+
+    private final String sortBy;
+    private final boolean ascending;
+    private final String value;
+    private final UUID id;
+
+    public KeysetCursor(String sortBy, boolean ascending, Object value, UUID id) {
+        this.sortBy = sortBy;
+        this.ascending = ascending;
+        this.value = value instanceof Enum ? ((Enum<?>) value).name() : String.valueOf(value);
+        this.id = id;
+    }
+
+    /**
+     * @return The position, or null for an empty token, which stands for the first page
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The value goes last, so it may contain the separator itself
+            String[] parts = decoded.split("\n", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(parts[0], "a".equals(parts[1]), parts[3], UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = sortBy + "\n" + (ascending ? "a" : "d") + "\n" + id + "\n" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Order by the sort key, then the id, both in the same direction
+     */
+    public static List<Order> orderBy(CriteriaBuilder cb, Path<?> root, String sortBy, boolean ascending) {
+        Path<?> key = root.get(sortBy);
+        Path<?> id = root.get("id");
+        return ascending
+                ? List.of(cb.asc(key), cb.asc(id))
+                : List.of(cb.desc(key), cb.desc(id));
+    }
+
+    /**
+     * Restrict a query to the rows after this position
+     *
+     * @throws IllegalArgumentException if the stored value does not fit the sort key
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Predicate after(CriteriaBuilder cb, Path<?> root) {
+        Expression key = root.get(sortBy);
+        Expression idPath = root.get("id");
+        Comparable typedValue = parse(key.getJavaType());
+        if (ascending) {
+            return cb.or(cb.greaterThan(key, typedValue),
+                    cb.and(cb.equal(key, typedValue), cb.greaterThan(idPath, id)));
+        }
+        return cb.or(cb.lessThan(key, typedValue),
+                cb.and(cb.equal(key, typedValue), cb.lessThan(idPath, id)));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Comparable parse(Class<?> type) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, value);
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        if (type == Integer.class || type == int.class) {
+            return Integer.valueOf(value);
+        }
+        if (type == Long.class || type == long.class) {
+            return Long.valueOf(value);
+        }
+        if (type == UUID.class) {
+            return UUID.fromString(value);
+        }
+        throw new IllegalArgumentException("Cannot page by " + sortBy);
+    }
+}
@@ -0,0 +1,50 @@
+package com.ehs.elearning.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing
+ */
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final KeysetCursor nextCursor;
+
+    public KeysetPage(List<T> content, KeysetCursor nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from a query that asked for one row more than the page size; that row
+     * only tells whether another page follows
+     *
+     * @param cursorOf The position of a row, to continue after the last one
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        return new KeysetPage<>(content, cursorOf.apply(content.get(size - 1)));
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * @return Where the next page starts, or null on the last page
+     */
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        List<R> mapped = new ArrayList<>(content.size());
+        content.forEach(row -> mapped.add(mapper.apply(row)));
+        return new KeysetPage<>(mapped, nextCursor);
+    }
+}
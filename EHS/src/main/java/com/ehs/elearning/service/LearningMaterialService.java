@@ -2,11 +2,14 @@ package com.ehs.elearning.service;
 
 import com.ehs.elearning.model.*;
 import com.ehs.elearning.repository.*;
+import com.ehs.elearning.service.storage.StoredFileInfo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -29,6 +32,21 @@ public class LearningMaterialService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private ContentTypeDetector contentTypeDetector;
+    
+    @Autowired
+    private CompressedVariantService compressedVariantService;
+    
+    @Autowired
+    private PreviewRenderingService previewRenderingService;
+    
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
+    @Value("${file.storage.sweeper.grace-minutes:60}")
+    private long sweeperGraceMinutes;
+    
     /**
      * Create a new learning material for a component
      */
@@ -62,7 +80,7 @@ public class LearningMaterialService {
         // Handle the file, content or external URL
         if (file != null && !file.isEmpty()) {
             String fileName = fileStorageService.storeFile(file);
-            material.setFilePath(fileName);
+            attachFile(material, fileName, file.getOriginalFilename());
         } else if (content != null && !content.isEmpty()) {
             material.setContent(content);
         } else if (externalUrl != null && !externalUrl.isEmpty()) {
@@ -203,14 +221,14 @@ public class LearningMaterialService {
         
         LearningMaterial material = materialOpt.get();
         
-        // Delete file if exists
-        if (material.getFilePath() != null && !material.getFilePath().isEmpty()) {
-            fileStorageService.deleteFile(material.getFilePath());
-        }
-        
         // Delete from database
         materialRepository.delete(material);
         
+        // Stored files are shared between identical uploads; delete only the last reference
+        if (material.getFilePath() != null && !material.getFilePath().isEmpty()) {
+            releaseFile(material.getFilePath());
+        }
+        
         // Update sequence orders of remaining materials
         ModuleComponent component = material.getComponent();
         List<LearningMaterial> materials = materialRepository.findByComponentOrderBySequenceOrderAsc(component);
@@ -221,4 +239,41 @@ public class LearningMaterialService {
             materialRepository.save(m);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Point a material at a stored file, detecting its content type from the file's leading
+     * bytes. Compressed variants where the type benefits from them, previews of presentations
+     * and documents, and smaller versions of images are made in the background.
+     */
+    public void attachFile(LearningMaterial material, String fileName, String originalFileName) throws IOException {
+        material.setFilePath(fileName);
+        
+        StoredFileInfo fileInfo = fileStorageService.getFileInfo(fileName);
+        byte[] head = new byte[(int) Math.min(ContentTypeDetector.HEAD_SIZE, fileInfo.getSize())];
+        int length = 0;
+        if (head.length > 0) {
+            try (InputStream in = fileStorageService.openStream(fileName, 0, head.length)) {
+                length = in.readNBytes(head, 0, head.length);
+            }
+        }
+        
+        String contentType = contentTypeDetector.detect(head, length, originalFileName);
+        material.setContentType(contentType);
+        // Recorded by the background job once the variants exist; served as stored until then
+        material.setCompressedEncodings(null);
+        compressedVariantService.scheduleVariants(fileName, contentType);
+        previewRenderingService.schedulePreviews(fileName, contentType);
+        imageDerivativeService.scheduleDerivatives(fileName, contentType);
+    }
+    
+    /**
+     * Delete a stored file once no learning material references it any more. Files reused by
+     * an upload within the grace period are kept, as that upload's material may not be saved
+     * yet; those, and the compressed variants, previews and image derivatives of deleted files,
+     * are reclaimed by the sweeper in {@link StorageMaintenanceService}.
+     */
+    public void releaseFile(String filePath) throws IOException {
+        fileStorageService.deleteIfUnused(filePath, sweeperGraceMinutes * 60 * 1000,
+                () -> materialRepository.countByFilePath(filePath) > 0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.repository.TrainingModuleSpecifications;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Filters for a training module listing. Every filter is optional; those that are set are
+ * combined with AND.
+ */
+public class ModuleQuery {
+
+    private String title;
+    private UUID domainId;
+    private Collection<UUID> domainIds;
+    private ModuleStatus status;
+    private UUID createdBy;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdBefore;
+
+    public Specification<TrainingModule> toSpecification() {
+        return Specification.where(TrainingModuleSpecifications.titleContains(title))
+                .and(TrainingModuleSpecifications.inDomain(domainId))
+                .and(TrainingModuleSpecifications.inDomains(domainIds))
+                .and(TrainingModuleSpecifications.hasStatus(status))
+                .and(TrainingModuleSpecifications.createdBy(createdBy))
+                .and(TrainingModuleSpecifications.createdFrom(createdFrom))
+                .and(TrainingModuleSpecifications.createdBefore(createdBefore));
+    }
+
+    /**
+     * @return A key that is equal for queries with equal filters, for caching totals
+     */
+    public String cacheKey() {
+        return String.join("|", String.valueOf(title), String.valueOf(domainId),
+                domainIds != null ? new TreeSet<>(domainIds).toString() : "null", String.valueOf(status),
+                String.valueOf(createdBy), String.valueOf(createdFrom), String.valueOf(createdBefore));
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public UUID getDomainId() {
+        return domainId;
+    }
+
+    public void setDomainId(UUID domainId) {
+        this.domainId = domainId;
+    }
+
+    /**
+     * @return Domains the modules must belong to, e.g. the caller's assigned domains
+     */
+    public Collection<UUID> getDomainIds() {
+        return domainIds;
+    }
+
+    public void setDomainIds(Collection<UUID> domainIds) {
+        this.domainIds = domainIds;
+    }
+
+    public ModuleStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ModuleStatus status) {
+        this.status = status;
+    }
+
+    public UUID getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(UUID createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public void setCreatedFrom(LocalDateTime createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+
+    public LocalDateTime getCreatedBefore() {
+        return createdBefore;
+    }
+
+    public void setCreatedBefore(LocalDateTime createdBefore) {
+        this.createdBefore = createdBefore;
+    }
+}
@@ -0,0 +1,169 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.ModuleSummaryResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs {@link ModuleQuery} filters as a single statement that selects only the listed columns
+ * into {@link ModuleSummaryResponse}, joining the domain and creator instead of loading them
+ * as entities. No entities enter the persistence context, so nothing lazy is loaded while the
+ * result is serialized. The count query is only issued when the caller needs totals.
+ */
+@Service
+public class ModuleQueryService {
+
+    public static final Set<String> SORTABLE_PROPERTIES =
+            Set.of("title", "createdAt", "status", "estimatedDuration", "requiredCompletionScore");
+
+    // Keyset paging needs sort keys that are never null
+    public static final Set<String> KEYSET_PROPERTIES = Set.of("title", "createdAt");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TotalCountCache totalCountCache;
+
+    /**
+     * Find one page of modules
+     *
+     * @param pageable Page and sort, on {@link #SORTABLE_PROPERTIES} only
+     * @param withCount true to return a {@link org.springframework.data.domain.Page} with totals;
+     *                  otherwise a slice that only knows whether there is a next page
+     */
+    public Slice<ModuleSummaryResponse> find(ModuleQuery moduleQuery, Pageable pageable, boolean withCount) {
+        Specification<TrainingModule> specification = moduleQuery.toSpecification();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<ModuleSummaryResponse> select = cb.createQuery(ModuleSummaryResponse.class);
+        Root<TrainingModule> module = select.from(TrainingModule.class);
+        select.select(summary(cb, module));
+        Predicate predicate = specification.toPredicate(module, select, cb);
+        if (predicate != null) {
+            select.where(predicate);
+        }
+
+        List<Order> orders = new ArrayList<>(QueryUtils.toOrders(pageable.getSort(), module, cb));
+        // A unique tie-breaker keeps pages stable when sort values repeat
+        orders.add(cb.asc(module.get("id")));
+        select.orderBy(orders);
+
+        TypedQuery<ModuleSummaryResponse> query = entityManager.createQuery(select)
+                .setFirstResult((int) pageable.getOffset());
+
+        if (!withCount) {
+            // One extra row tells whether another page follows
+            List<ModuleSummaryResponse> content = new ArrayList<>(query.setMaxResults(pageable.getPageSize() + 1).getResultList());
+            boolean hasNext = content.size() > pageable.getPageSize();
+            if (hasNext) {
+                content.remove(content.size() - 1);
+            }
+            return new SliceImpl<>(content, pageable, hasNext);
+        }
+
+        List<ModuleSummaryResponse> content = query.setMaxResults(pageable.getPageSize()).getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(specification));
+    }
+
+    /**
+     * Find one page of modules, with totals
+     */
+    public Page<ModuleSummaryResponse> findPage(ModuleQuery moduleQuery, Pageable pageable) {
+        return (Page<ModuleSummaryResponse>) find(moduleQuery, pageable, true);
+    }
+
+    /**
+     * Find the modules after a cursor position, ordered by a key in {@link #KEYSET_PROPERTIES}
+     *
+     * @param cursor Where to continue, or null for the first page; its sort order wins over
+     *               the one given
+     * @throws IllegalArgumentException if the sort key cannot be used for keyset paging
+     */
+    public KeysetPage<ModuleSummaryResponse> findAfter(ModuleQuery moduleQuery, String sortBy, boolean ascending,
+                                                KeysetCursor cursor, int size) {
+        String sortKey = cursor != null ? cursor.getSortBy() : sortBy;
+        boolean sortAscending = cursor != null ? cursor.isAscending() : ascending;
+        if (!KEYSET_PROPERTIES.contains(sortKey)) {
+            throw new IllegalArgumentException("Cannot page by " + sortKey);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ModuleSummaryResponse> select = cb.createQuery(ModuleSummaryResponse.class);
+        Root<TrainingModule> module = select.from(TrainingModule.class);
+        select.select(summary(cb, module));
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filter = moduleQuery.toSpecification().toPredicate(module, select, cb);
+        if (filter != null) {
+            predicates.add(filter);
+        }
+        if (cursor != null) {
+            predicates.add(cursor.after(cb, module));
+        }
+        select.where(predicates.toArray(new Predicate[0]))
+                .orderBy(KeysetCursor.orderBy(cb, module, sortKey, sortAscending));
+
+        List<ModuleSummaryResponse> rows = entityManager.createQuery(select).setMaxResults(size + 1).getResultList();
+        return KeysetPage.of(rows, size, row -> new KeysetCursor(sortKey, sortAscending,
+                "title".equals(sortKey) ? row.getTitle() : row.getCreatedAt(), row.getId()));
+    }
+
+    /**
+     * Total number of modules matching a query, possibly cached for a short while
+     */
+    public long estimateTotal(ModuleQuery moduleQuery) {
+        return totalCountCache.getTotal("modules|" + moduleQuery.cacheKey(),
+                () -> count(moduleQuery.toSpecification()));
+    }
+
+    // Both associations are mandatory, so inner joins lose no modules
+    private CompoundSelection<ModuleSummaryResponse> summary(CriteriaBuilder cb, Root<TrainingModule> module) {
+        Join<TrainingModule, Domain> domain = module.join("domain");
+        Join<TrainingModule, Users> author = module.join("createdBy");
+        return cb.construct(ModuleSummaryResponse.class,
+                module.get("id"), module.get("title"), module.get("description"), module.get("status"),
+                module.get("createdAt"), module.get("estimatedDuration"), module.get("requiredCompletionScore"),
+                domain.get("id"), domain.get("name"), domain.get("description"),
+                author.get("id"), author.get("username"), author.get("firstName"), author.get("lastName"));
+    }
+
+    private long count(Specification<TrainingModule> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        Root<TrainingModule> countRoot = count.from(TrainingModule.class);
+        count.select(cb.count(countRoot));
+        Predicate countPredicate = specification.toPredicate(countRoot, count, cb);
+        if (countPredicate != null) {
+            count.where(countPredicate);
+        }
+        return entityManager.createQuery(count).getSingleResult();
+    }
+}
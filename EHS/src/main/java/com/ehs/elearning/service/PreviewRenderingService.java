@@ -0,0 +1,332 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.usermodel.Paragraph;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.apache.poi.sl.usermodel.Shape;
+import org.apache.poi.sl.usermodel.Slide;
+import org.apache.poi.sl.usermodel.SlideShow;
+import org.apache.poi.sl.usermodel.SlideShowFactory;
+import org.apache.poi.sl.usermodel.TextShape;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders previews of presentations and documents in the background so learners can look at
+ * a deck without downloading it. Slides become PNG images ("<name>~page-<n>.png") and every
+ * supported file gets a JSON text outline ("<name>~outline.json"), stored as derived files
+ * next to the original. Rendering runs on a small bounded pool; when it is saturated new
+ * work is dropped rather than queued without limit, and the file simply has no preview.
+ */
+@Service
+public class PreviewRenderingService {
+
+    public static final String OUTLINE_VARIANT = "outline.json";
+
+    private static final Set<String> SLIDE_TYPES = Set.of(
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "application/vnd.ms-powerpoint");
+    private static final String DOCX_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    private static final String DOC_TYPE = "application/msword";
+
+    // Keeps outlines light; learners get the full text from the file itself
+    private static final int MAX_TEXT_LENGTH = 2000;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${file.preview.enabled:true}")
+    private boolean previewEnabled;
+
+    @Value("${file.preview.max-size:100MB}")
+    private DataSize maxSize;
+
+    @Value("${file.preview.max-pages:200}")
+    private int maxPages;
+
+    @Value("${file.preview.width:1280}")
+    private int previewWidth;
+
+    private final ThreadPoolExecutor executor;
+
+    // Files queued or being rendered, so duplicate uploads do not render twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public PreviewRenderingService(@Value("${file.preview.threads:2}") int threads,
+                                   @Value("${file.preview.queue-capacity:50}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "preview-render-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Uploads and downloads come first
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return true if previews can be rendered for the content type
+     */
+    public boolean supports(String contentType) {
+        return contentType != null
+                && (SLIDE_TYPES.contains(contentType) || DOCX_TYPE.equals(contentType) || DOC_TYPE.equals(contentType));
+    }
+
+    /**
+     * Queue preview rendering for a stored file; returns immediately
+     *
+     * @param fileName The stored filename
+     * @param contentType The detected content type
+     */
+    public void schedulePreviews(String fileName, String contentType) {
+        if (!previewEnabled || !supports(contentType)) {
+            return;
+        }
+        if (fileStorageService.fileExists(getOutlineFileName(fileName)) || !pending.add(fileName)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    render(fileName, contentType);
+                } catch (Exception e) {
+                    System.err.println("Error rendering previews for " + fileName + ": " + e.getMessage());
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            System.err.println("Preview queue full, skipping previews for " + fileName);
+        }
+    }
+
+    /**
+     * @return true while previews for the file are queued or being rendered
+     */
+    public boolean isPending(String fileName) {
+        return pending.contains(fileName);
+    }
+
+    /**
+     * @return The name of the derived file holding the text outline
+     */
+    public String getOutlineFileName(String fileName) {
+        return fileStorageService.getDerivedFileName(fileName, OUTLINE_VARIANT);
+    }
+
+    /**
+     * @param page The 1-based page or slide number
+     * @return The name of the derived file holding the page image
+     */
+    public String getPageFileName(String fileName, int page) {
+        return fileStorageService.getDerivedFileName(fileName, "page-" + page + ".png");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void render(String fileName, String contentType) throws IOException {
+        StoredFileInfo info = fileStorageService.getFileInfo(fileName);
+        if (info.getSize() > maxSize.toBytes()) {
+            return;
+        }
+
+        ObjectNode outline = objectMapper.createObjectNode();
+        try (InputStream in = fileStorageService.openStream(fileName, 0, info.getSize())) {
+            if (SLIDE_TYPES.contains(contentType)) {
+                renderSlides(fileName, in, outline);
+            } else if (DOCX_TYPE.equals(contentType)) {
+                outlineDocx(in, outline);
+            } else {
+                outlineDoc(in, outline);
+            }
+        }
+
+        // The outline is written last; its presence marks the previews as complete
+        Path tempFile = fileStorageService.createStagingFile();
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                objectMapper.writeValue(out, outline);
+            }
+            fileStorageService.storeDerivedFile(getOutlineFileName(fileName), tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void renderSlides(String fileName, InputStream in, ObjectNode outline) throws IOException {
+        try (SlideShow<?, ?> slideShow = SlideShowFactory.create(in)) {
+            Dimension pageSize = slideShow.getPageSize();
+            double scale = (double) previewWidth / pageSize.width;
+            int height = (int) Math.round(pageSize.height * scale);
+
+            ArrayNode pages = outline.putArray("pages");
+            int pageNumber = 0;
+            int renderedPages = 0;
+            for (Slide<?, ?> slide : slideShow.getSlides()) {
+                pageNumber++;
+                ObjectNode page = pages.addObject();
+                page.put("page", pageNumber);
+                page.put("title", slide.getTitle());
+                page.put("text", truncate(getSlideText(slide)));
+
+                if (pageNumber > maxPages) {
+                    continue;
+                }
+                BufferedImage image = new BufferedImage(previewWidth, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = image.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    graphics.setPaint(Color.WHITE);
+                    graphics.fillRect(0, 0, previewWidth, height);
+                    graphics.scale(scale, scale);
+                    slide.draw(graphics);
+                } finally {
+                    graphics.dispose();
+                }
+                storeImage(getPageFileName(fileName, pageNumber), image);
+                renderedPages = pageNumber;
+            }
+
+            outline.put("type", "slides");
+            outline.put("pageCount", pageNumber);
+            outline.put("renderedPages", renderedPages);
+            outline.put("width", previewWidth);
+            outline.put("height", height);
+        }
+    }
+
+    private void outlineDocx(InputStream in, ObjectNode outline) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(in)) {
+            ArrayNode headings = outline.putArray("headings");
+            StringBuilder text = new StringBuilder();
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                String paragraphText = paragraph.getText().trim();
+                if (paragraphText.isEmpty()) {
+                    continue;
+                }
+                String style = paragraph.getStyleID();
+                if (style != null && style.toLowerCase().startsWith("heading")) {
+                    ObjectNode heading = headings.addObject();
+                    heading.put("level", parseHeadingLevel(style.substring("heading".length())));
+                    heading.put("text", paragraphText);
+                } else if (text.length() < MAX_TEXT_LENGTH) {
+                    text.append(paragraphText).append('\n');
+                }
+            }
+
+            outline.put("type", "document");
+            outline.put("pageCount", document.getProperties().getExtendedProperties().getPages());
+            outline.put("renderedPages", 0);
+            outline.put("text", truncate(text.toString()));
+        }
+    }
+
+    private void outlineDoc(InputStream in, ObjectNode outline) throws IOException {
+        try (HWPFDocument document = new HWPFDocument(in)) {
+            ArrayNode headings = outline.putArray("headings");
+            StringBuilder text = new StringBuilder();
+            Range range = document.getRange();
+            for (int i = 0; i < range.numParagraphs(); i++) {
+                Paragraph paragraph = range.getParagraph(i);
+                String paragraphText = paragraph.text().trim();
+                if (paragraphText.isEmpty()) {
+                    continue;
+                }
+                // Built-in heading styles carry an outline level of 0-8; body text is 9
+                int level = paragraph.getLvl();
+                if (level >= 0 && level < 9) {
+                    ObjectNode heading = headings.addObject();
+                    heading.put("level", level + 1);
+                    heading.put("text", paragraphText);
+                } else if (text.length() < MAX_TEXT_LENGTH) {
+                    text.append(paragraphText).append('\n');
+                }
+            }
+
+            outline.put("type", "document");
+            outline.put("pageCount", document.getSummaryInformation() != null
+                    ? document.getSummaryInformation().getPageCount() : 0);
+            outline.put("renderedPages", 0);
+            outline.put("text", truncate(text.toString()));
+        }
+    }
+
+    private String getSlideText(Slide<?, ?> slide) {
+        StringBuilder text = new StringBuilder();
+        for (Shape<?, ?> shape : slide.getShapes()) {
+            if (shape instanceof TextShape && text.length() < MAX_TEXT_LENGTH) {
+                String shapeText = ((TextShape<?, ?>) shape).getText();
+                if (shapeText != null && !shapeText.isBlank()) {
+                    text.append(shapeText.trim()).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private void storeImage(String derivedFileName, BufferedImage image) throws IOException {
+        Path tempFile = fileStorageService.createStagingFile();
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                ImageIO.write(image, "png", out);
+            }
+            fileStorageService.storeDerivedFile(derivedFileName, tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private int parseHeadingLevel(String level) {
+        try {
+            return Integer.parseInt(level.trim());
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private String truncate(String text) {
+        String trimmed = text.trim();
+        return trimmed.length() > MAX_TEXT_LENGTH ? trimmed.substring(0, MAX_TEXT_LENGTH) : trimmed;
+    }
+}
@@ -0,0 +1,145 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Background housekeeping for the upload directory: moves files from the old flat layout
+ * into shard directories, and reclaims stored files that no learning material references
+ * (for example rows deleted by code that did not delete the file). Both jobs do a bounded
+ * amount of work per run so they can stay enabled on a busy system.
+ */
+@Service
+public class StorageMaintenanceService {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Value("${file.storage.migration-batch-size:500}")
+    private int migrationBatchSize;
+
+    @Value("${file.storage.sweeper.enabled:true}")
+    private boolean sweeperEnabled;
+
+    @Value("${file.storage.sweeper.batch-size:1000}")
+    private int sweeperBatchSize;
+
+    @Value("${file.storage.sweeper.grace-minutes:60}")
+    private long sweeperGraceMinutes;
+
+    // Next top-level shard the sweeper will scan; it cycles through all shards
+    private int nextShard = 0;
+
+    private boolean migrationComplete = false;
+
+    /**
+     * Move up to one batch of files from the flat layout into shard directories
+     */
+    @Scheduled(fixedDelayString = "${file.storage.migration-interval:60000}", initialDelay = 30000)
+    public synchronized void migrateUnshardedFiles() {
+        if (migrationComplete) {
+            return;
+        }
+
+        try {
+            List<String> fileNames = fileStorageService.listUnshardedFiles(migrationBatchSize);
+            if (fileNames.isEmpty()) {
+                migrationComplete = true;
+                return;
+            }
+
+            for (String fileName : fileNames) {
+                try {
+                    fileStorageService.moveToShard(fileName);
+                } catch (IOException e) {
+                    // Log error but continue; the file is retried on the next run
+                    System.err.println("Error moving " + fileName + " into its shard: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing upload directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Scan the next top-level shards until about one batch of files has been checked, and
+     * delete the files that are not referenced by any learning material
+     */
+    @Scheduled(fixedDelayString = "${file.storage.sweeper.interval:600000}", initialDelay = 120000)
+    public synchronized void sweepOrphanedFiles() {
+        if (!sweeperEnabled) {
+            return;
+        }
+
+        long graceMillis = sweeperGraceMinutes * 60 * 1000;
+        int checked = 0;
+        int shardsScanned = 0;
+
+        while (checked < sweeperBatchSize && shardsScanned < fileStorageService.getShardCount()) {
+            int shard = nextShard;
+            nextShard = (nextShard + 1) % fileStorageService.getShardCount();
+            shardsScanned++;
+
+            try {
+                List<String> fileNames = fileStorageService.listShardFiles(shard);
+                checked += fileNames.size();
+                if (!fileNames.isEmpty()) {
+                    reclaimUnreferenced(fileNames, graceMillis);
+                }
+            } catch (IOException e) {
+                System.err.println("Error sweeping shard " + shard + ": " + e.getMessage());
+            }
+        }
+
+        try {
+            fileStorageService.deleteStaleStagingFiles(graceMillis);
+        } catch (IOException e) {
+            System.err.println("Error cleaning staging directory: " + e.getMessage());
+        }
+    }
+
+    private void reclaimUnreferenced(List<String> fileNames, long graceMillis) throws IOException {
+        long cutoff = System.currentTimeMillis() - graceMillis;
+
+        // Check references in slices so the IN list stays a reasonable size
+        for (int i = 0; i < fileNames.size(); i += 500) {
+            List<String> slice = fileNames.subList(i, Math.min(i + 500, fileNames.size()));
+
+            // Compressed variants live as long as the file they were derived from
+            Set<String> sourceNames = new HashSet<>();
+            for (String fileName : slice) {
+                sourceNames.add(fileStorageService.getSourceFileName(fileName));
+            }
+            Set<String> referenced = materialRepository.findReferencedFilePaths(sourceNames);
+
+            List<String> orphans = new ArrayList<>();
+            for (String fileName : slice) {
+                // Recent files may belong to an upload whose row is not committed yet. Files an
+                // upload reused recently are kept by deleteIfUnused
+                if (!referenced.contains(fileStorageService.getSourceFileName(fileName))
+                        && fileStorageService.getLastModified(fileName) < cutoff) {
+                    orphans.add(fileName);
+                }
+            }
+
+            for (String fileName : orphans) {
+                // Re-checked under the file's lock, in case an upload reused it meanwhile
+                String sourceName = fileStorageService.getSourceFileName(fileName);
+                fileStorageService.deleteIfUnused(fileName, graceMillis,
+                        () -> materialRepository.countByFilePath(sourceName) > 0);
+            }
+        }
+    }
+}
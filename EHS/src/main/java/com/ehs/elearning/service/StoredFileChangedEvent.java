@@ -0,0 +1,18 @@
+package com.ehs.elearning.service;
+
+/**
+ * Published by {@link FileStorageService} when a stored file is written or deleted,
+ * so anything holding a copy of its bytes can drop it.
+ */
+public class StoredFileChangedEvent {
+
+    private final String fileName;
+
+    public StoredFileChangedEvent(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
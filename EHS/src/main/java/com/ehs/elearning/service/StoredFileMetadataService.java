@@ -0,0 +1,79 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Content type and compressed variants recorded for stored files, for requests that only
+ * carry the filename. Lookups are cached so serving a hot file does not cost a query.
+ */
+@Service
+public class StoredFileMetadataService {
+
+    /**
+     * What was recorded for a stored file at upload; both values may be null
+     */
+    public static class StoredFileMetadata {
+        private final String contentType;
+        private final String compressedEncodings;
+
+        public StoredFileMetadata(String contentType, String compressedEncodings) {
+            this.contentType = contentType;
+            this.compressedEncodings = compressedEncodings;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getCompressedEncodings() {
+            return compressedEncodings;
+        }
+    }
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    private final Cache<String, StoredFileMetadata> cache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * Get the recorded metadata of a stored file
+     *
+     * @param fileName The stored filename
+     * @return The metadata, with null values if no material records it
+     */
+    public StoredFileMetadata getMetadata(String fileName) {
+        return cache.get(fileName, key -> {
+            Optional<LearningMaterial> material = materialRepository.findFirstByFilePath(key);
+            return material
+                    .map(m -> new StoredFileMetadata(m.getContentType(), m.getCompressedEncodings()))
+                    .orElse(new StoredFileMetadata(null, null));
+        });
+    }
+
+    /**
+     * Drop the metadata of a file whose recorded values changed
+     */
+    public void evict(String fileName) {
+        cache.invalidate(fileName);
+    }
+
+    /**
+     * Drop the metadata of a file that was written or deleted
+     */
+    @EventListener
+    public void onStoredFileChanged(StoredFileChangedEvent event) {
+        cache.invalidate(event.getFileName());
+    }
+}
@@ -0,0 +1,37 @@
+package com.ehs.elearning.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of listing totals. Cursor-paginated listings only count when a client
+ * asks for the total, and then share the result for a while, so paging through a big table
+ * does not run COUNT(*) for every page. Totals are therefore estimates that may lag behind
+ * recent changes by up to the time to live.
+ */
+@Component
+public class TotalCountCache {
+
+    private final Cache<String, Long> totals;
+
+    public TotalCountCache(@Value("${pagination.total-cache-ttl:PT1M}") Duration ttl,
+                           @Value("${pagination.total-cache-max-size:1000}") long maxSize) {
+        this.totals = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * @param key Identifies the listing and its filters, e.g. "modules|PUBLISHED|domain-id"
+     * @param counter Runs the count when no recent total is cached
+     */
+    public long getTotal(String key, LongSupplier counter) {
+        return totals.get(key, k -> counter.getAsLong());
+    }
+}
@@ -0,0 +1,354 @@
+package com.ehs.elearning.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Imports users from CSV or XLSX uploads. Both formats are read as a stream (OpenCSV, and the
+ * POI event model for spreadsheets), rows are provisioned in batches through
+ * {@link BulkUserProvisioningService}, and a CSV report with one line per row is written to
+ * the response as each batch completes, so memory use does not grow with the file.
+ */
+@Service
+public class UserImportService {
+
+    // Normalized header (lower case, letters and digits only) -> field name used for provisioning
+    private static final Map<String, String> COLUMNS = Map.of(
+            "username", "username",
+            "email", "email",
+            "role", "role",
+            "firstname", "firstName",
+            "lastname", "lastName",
+            "jobtitle", "jobTitle",
+            "department", "department");
+
+    private static final String[] REPORT_HEADER = { "row", "username", "email", "role", "password", "status", "message" };
+
+    // Leading characters that make a spreadsheet treat a cell as a formula (OWASP CSV injection)
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    @Autowired
+    private BulkUserProvisioningService provisioningService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${bulk.users.batch-size:500}")
+    private int batchSize;
+
+    private final Semaphore importPermits;
+
+    public UserImportService(@Value("${bulk.users.max-concurrent-imports:2}") int maxConcurrentImports) {
+        this.importPermits = new Semaphore(maxConcurrentImports);
+    }
+
+    /**
+     * @return true if the file is a CSV or XLSX file, judged by its name
+     */
+    public boolean supports(String originalFileName) {
+        return isSpreadsheet(originalFileName)
+                || (originalFileName != null && originalFileName.toLowerCase(Locale.ROOT).endsWith(".csv"));
+    }
+
+    private boolean isSpreadsheet(String originalFileName) {
+        return originalFileName != null && originalFileName.toLowerCase(Locale.ROOT).endsWith(".xlsx");
+    }
+
+    /**
+     * Import the users in a file and write the report to the response. The first row must be
+     * a header naming at least the username and email columns.
+     *
+     * @throws RejectedExecutionException if too many imports are already running
+     * @throws IllegalArgumentException if the header is invalid; nothing has been written then
+     */
+    public void importUsers(MultipartFile file, HttpServletResponse response) throws IOException {
+        if (!importPermits.tryAcquire()) {
+            throw new RejectedExecutionException("Too many user imports are running");
+        }
+        try (ImportReport report = new ImportReport(response)) {
+            if (isSpreadsheet(file.getOriginalFilename())) {
+                importSpreadsheet(file, report);
+            } else {
+                importCsv(file, report);
+            }
+            // A file with a header and no rows still gets a report
+            report.open();
+        } finally {
+            importPermits.release();
+        }
+    }
+
+    private void importCsv(MultipartFile file, ImportReport report) throws IOException {
+        try (CSVReader reader = new CSVReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            RowBatcher batcher = new RowBatcher(header != null ? List.of(header) : List.of(), report);
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                // The header is record 1, matching the row numbers a spreadsheet would show
+                batcher.addRow((int) reader.getRecordsRead(), List.of(line));
+            }
+            batcher.flush();
+        } catch (CsvValidationException e) {
+            report.abort("Invalid CSV at line " + e.getLineNumber() + ": " + e.getMessage());
+        } catch (ImportFailedException e) {
+            report.abort(e.getCause().getMessage());
+        }
+    }
+
+    private void importSpreadsheet(MultipartFile file, ImportReport report) throws IOException {
+        // The zip needs random access, so the upload is staged on disk rather than buffered
+        Path stagedFile = fileStorageService.createStagingFile();
+        try {
+            file.transferTo(stagedFile);
+            try (OPCPackage pkg = OPCPackage.open(stagedFile.toFile(), PackageAccess.READ)) {
+                XSSFReader xssfReader = new XSSFReader(pkg);
+                Iterator<InputStream> sheets = xssfReader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    throw new IllegalArgumentException("The spreadsheet has no sheets");
+                }
+
+                SheetRowHandler rowHandler = new SheetRowHandler(report);
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(),
+                        new ReadOnlySharedStringsTable(pkg), rowHandler, new DataFormatter(), false));
+
+                // Only the first sheet is imported
+                try (InputStream sheet = sheets.next()) {
+                    parser.parse(new InputSource(sheet));
+                }
+                if (rowHandler.batcher == null) {
+                    throw new IllegalArgumentException("The spreadsheet is empty");
+                }
+                rowHandler.batcher.flush();
+            }
+        } catch (ImportFailedException e) {
+            report.abort(e.getCause().getMessage());
+        } catch (IllegalArgumentException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // Not a readable workbook, or broken part way through
+            if (!report.isStarted()) {
+                throw new IllegalArgumentException("Invalid spreadsheet: " + e.getMessage());
+            }
+            report.abort("Invalid spreadsheet: " + e.getMessage());
+        } finally {
+            Files.deleteIfExists(stagedFile);
+        }
+    }
+
+    /**
+     * Maps rows to fields by header and hands them to provisioning in batches
+     */
+    private class RowBatcher {
+        private final String[] fields;
+        private final ImportReport report;
+        private final List<Map<String, String>> rows = new ArrayList<>();
+        private final List<Integer> rowNumbers = new ArrayList<>();
+
+        RowBatcher(List<String> header, ImportReport report) {
+            this.report = report;
+            this.fields = new String[header.size()];
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i) != null ? header.get(i) : "";
+                fields[i] = COLUMNS.get(name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", ""));
+            }
+            List<String> mapped = Arrays.asList(fields);
+            if (!mapped.contains("username") || !mapped.contains("email")) {
+                throw new IllegalArgumentException("The first row must be a header with username and email columns");
+            }
+        }
+
+        void addRow(int rowNumber, List<String> values) throws IOException {
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < values.size() && i < fields.length; i++) {
+                String value = values.get(i) != null ? values.get(i).trim() : "";
+                if (fields[i] != null && !value.isEmpty()) {
+                    row.put(fields[i], value);
+                }
+            }
+            // Blank lines are common at the end of exported sheets
+            if (row.isEmpty()) {
+                return;
+            }
+
+            rows.add(row);
+            rowNumbers.add(rowNumber);
+            if (rows.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                provisioningService.provisionBatch(rows, rowNumbers, report::write);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ImportFailedException(new IOException("Import interrupted", e));
+            } catch (Exception e) {
+                throw new ImportFailedException(new IOException("Import failed: " + e.getMessage(), e));
+            }
+            report.flush();
+            rows.clear();
+            rowNumbers.clear();
+        }
+    }
+
+    /**
+     * Receives spreadsheet rows from the SAX parser. Cells that are empty are not reported,
+     * so values are placed by their column.
+     */
+    private class SheetRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final ImportReport report;
+        private final List<String> values = new ArrayList<>();
+        private RowBatcher batcher;
+
+        SheetRowHandler(ImportReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values.clear();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            while (values.size() <= column) {
+                values.add(null);
+            }
+            values.set(column, formattedValue);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            try {
+                if (batcher == null) {
+                    batcher = new RowBatcher(new ArrayList<>(values), report);
+                } else {
+                    batcher.addRow(rowNum + 1, values);
+                }
+            } catch (ImportFailedException | IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                // The SAX callbacks cannot throw checked exceptions
+                throw new ImportFailedException(e);
+            }
+        }
+    }
+
+    /**
+     * The per-row CSV report. The response is only started with the first line, so a
+     * rejected header can still be answered with an error status.
+     */
+    private static class ImportReport implements AutoCloseable {
+        private final HttpServletResponse response;
+        private CSVWriter writer;
+
+        ImportReport(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        void write(BulkUserJob.RowResult result) {
+            open();
+            // Generated passwords never start with a formula character, and must be shown as they are
+            writer.writeNext(new String[] {
+                    String.valueOf(result.getRow()), escape(result.getUsername()), escape(result.getEmail()),
+                    escape(result.getRole()), result.getPassword(), result.getStatus(), escape(result.getMessage()) });
+        }
+
+        void abort(String message) throws IOException {
+            System.err.println("User import stopped: " + message);
+            open();
+            writer.writeNext(new String[] { "", null, null, null, null, "error", escape("Import stopped: " + message) });
+        }
+
+        /**
+         * Keep spreadsheet applications from evaluating uploaded values as formulas when the
+         * report is opened
+         */
+        private static String escape(String value) {
+            if (value != null && !value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                return "'" + value;
+            }
+            return value;
+        }
+
+        boolean isStarted() {
+            return writer != null;
+        }
+
+        void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        private void open() {
+            if (writer != null) {
+                return;
+            }
+            try {
+                response.setContentType("text/csv;charset=UTF-8");
+                response.setHeader("Content-Disposition", "attachment; filename=\"user-import-report.csv\"");
+                response.setHeader("Cache-Control", "no-store");
+                writer = new CSVWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+                writer.writeNext(REPORT_HEADER);
+            } catch (IOException e) {
+                throw new ImportFailedException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static class ImportFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ImportFailedException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.UserSummaryResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Paged user search that runs in the database and selects only the columns of
+ * {@link UserSummaryResponse}. Text filters match anywhere in the value, case-insensitively;
+ * trigram indexes on the lower-cased columns, from the db/user-search.sql migration, keep
+ * those matches off a full table scan.
+ * Role, department and job title are exact filters on plain indexes.
+ */
+@Service
+public class UserSearchService {
+
+    public static final Set<String> SORTABLE_PROPERTIES =
+            Set.of("username", "email", "firstName", "lastName", "role", "department", "jobTitle");
+
+    // Keyset paging needs sort keys that are never null
+    public static final Set<String> KEYSET_PROPERTIES = Set.of("username", "email");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TotalCountCache totalCountCache;
+
+    /**
+     * Search users
+     *
+     * @param query Matched against username, email, first and last name; optional
+     * @param username Matched against the username; optional
+     * @param email Matched against the email; optional
+     * @param role Exact role; optional
+     * @param department Exact department; optional
+     * @param jobTitle Exact job title; optional
+     * @param pageable Page and sort, on {@link #SORTABLE_PROPERTIES} only
+     * @return One page of users
+     */
+    public Page<UserSummaryResponse> search(String query, String username, String email, Role role,
+                                            String department, String jobTitle, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<UserSummaryResponse> select = cb.createQuery(UserSummaryResponse.class);
+        Root<Users> user = select.from(Users.class);
+        select.select(cb.construct(UserSummaryResponse.class,
+                        user.get("id"), user.get("username"), user.get("email"), user.get("role"),
+                        user.get("firstName"), user.get("lastName"), user.get("jobTitle"), user.get("department")))
+                .where(filters(cb, user, query, username, email, role, department, jobTitle));
+
+        List<Order> orders = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            orders.add(order.isAscending() ? cb.asc(user.get(order.getProperty())) : cb.desc(user.get(order.getProperty())));
+        }
+        // A unique tie-breaker keeps pages stable when sort values repeat
+        orders.add(cb.asc(user.get("id")));
+        select.orderBy(orders);
+
+        List<UserSummaryResponse> content = entityManager.createQuery(select)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        // The count is skipped when the page itself shows the total
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> count(query, username, email, role, department, jobTitle));
+    }
+
+    /**
+     * Search users after a cursor position, with the same filters as
+     * {@link #search(String, String, String, Role, String, String, Pageable)}
+     *
+     * @param sortBy One of {@link #KEYSET_PROPERTIES}
+     * @param cursor Where to continue, or null for the first page; its sort order wins over
+     *               the one given
+     * @throws IllegalArgumentException if the sort key cannot be used for keyset paging
+     */
+    public KeysetPage<UserSummaryResponse> searchAfter(String query, String username, String email, Role role,
+                                                       String department, String jobTitle, String sortBy,
+                                                       boolean ascending, KeysetCursor cursor, int size) {
+        String sortKey = cursor != null ? cursor.getSortBy() : sortBy;
+        boolean sortAscending = cursor != null ? cursor.isAscending() : ascending;
+        if (!KEYSET_PROPERTIES.contains(sortKey)) {
+            throw new IllegalArgumentException("Cannot page by " + sortKey);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserSummaryResponse> select = cb.createQuery(UserSummaryResponse.class);
+        Root<Users> user = select.from(Users.class);
+
+        List<Predicate> predicates = new ArrayList<>(
+                List.of(filters(cb, user, query, username, email, role, department, jobTitle)));
+        if (cursor != null) {
+            predicates.add(cursor.after(cb, user));
+        }
+        select.select(cb.construct(UserSummaryResponse.class,
+                        user.get("id"), user.get("username"), user.get("email"), user.get("role"),
+                        user.get("firstName"), user.get("lastName"), user.get("jobTitle"), user.get("department")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(KeysetCursor.orderBy(cb, user, sortKey, sortAscending));
+
+        List<UserSummaryResponse> rows = entityManager.createQuery(select).setMaxResults(size + 1).getResultList();
+        return KeysetPage.of(rows, size, row -> new KeysetCursor(sortKey, sortAscending,
+                "username".equals(sortKey) ? row.getUsername() : row.getEmail(), row.getId()));
+    }
+
+    /**
+     * Number of users matching the filters, possibly cached for a short while
+     */
+    public long estimateTotal(String query, String username, String email, Role role,
+                              String department, String jobTitle) {
+        String key = String.join("|", "users", String.valueOf(query), String.valueOf(username),
+                String.valueOf(email), String.valueOf(role), String.valueOf(department), String.valueOf(jobTitle));
+        return totalCountCache.getTotal(key, () -> count(query, username, email, role, department, jobTitle));
+    }
+
+    private long count(String query, String username, String email, Role role, String department, String jobTitle) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        Root<Users> countRoot = count.from(Users.class);
+        count.select(cb.count(countRoot))
+                .where(filters(cb, countRoot, query, username, email, role, department, jobTitle));
+        return entityManager.createQuery(count).getSingleResult();
+    }
+
+    private Predicate[] filters(CriteriaBuilder cb, Root<Users> user, String query, String username, String email,
+                                Role role, String department, String jobTitle) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (hasText(query)) {
+            String pattern = containsPattern(query);
+            predicates.add(cb.or(
+                    cb.like(cb.lower(user.get("username")), pattern, '\\'),
+                    cb.like(cb.lower(user.get("email")), pattern, '\\'),
+                    cb.like(cb.lower(user.get("firstName")), pattern, '\\'),
+                    cb.like(cb.lower(user.get("lastName")), pattern, '\\')));
+        }
+        if (hasText(username)) {
+            predicates.add(cb.like(cb.lower(user.get("username")), containsPattern(username), '\\'));
+        }
+        if (hasText(email)) {
+            predicates.add(cb.like(cb.lower(user.get("email")), containsPattern(email), '\\'));
+        }
+        if (role != null) {
+            predicates.add(cb.equal(user.get("role"), role));
+        }
+        if (hasText(department)) {
+            predicates.add(cb.equal(user.get("department"), department.trim()));
+        }
+        if (hasText(jobTitle)) {
+            predicates.add(cb.equal(user.get("jobTitle"), jobTitle.trim()));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    // Wildcards typed by the user are matched literally
+    private String containsPattern(String value) {
+        String escaped = value.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
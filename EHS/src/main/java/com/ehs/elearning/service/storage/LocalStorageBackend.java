@@ -0,0 +1,261 @@
+package com.ehs.elearning.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores files on local disk below {@code file.upload-dir}, using the shard layout
+ * {@code ab/cd/<key>}. Files from the older flat layout are still found at the top level
+ * until they have been moved. Partial uploads are {@code staging/<key>.part}; with several
+ * instances the upload directory is a shared volume, which covers them as well.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final String STAGING_DIRECTORY = "staging";
+
+    private final Path fileStorageLocation;
+
+    private final Path stagingLocation;
+
+    public LocalStorageBackend(@Value("${file.upload-dir}") String uploadDir) {
+        this.fileStorageLocation = Paths.get(uploadDir)
+                .toAbsolutePath().normalize();
+        this.stagingLocation = this.fileStorageLocation.resolve(STAGING_DIRECTORY);
+
+        try {
+            Files.createDirectories(this.stagingLocation);
+        } catch (Exception ex) {
+            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
+        }
+    }
+
+    @Override
+    public void store(String key, Path source) throws IOException {
+        Path targetLocation = getShardedPath(key);
+        Files.createDirectories(targetLocation.getParent());
+        Files.move(source, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    /**
+     * Stored files are written once under a unique name, so size and modification time
+     * identify the exact bytes served.
+     */
+    @Override
+    public StoredFileInfo stat(String key) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(attributes.size()) + "\"";
+        return new StoredFileInfo(attributes.size(), lastModified, eTag);
+    }
+
+    @Override
+    public InputStream openStream(String key, long start, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(start);
+        InputStream inputStream = Channels.newInputStream(channel);
+        return new InputStream() {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = inputStream.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = inputStream.read(buffer, offset, (int) Math.min(count, remaining));
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                inputStream.close();
+            }
+        };
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(getShardedPath(key));
+        Files.deleteIfExists(getLegacyPath(key));
+    }
+
+    @Override
+    public long getPartialSize(String key) throws IOException {
+        Path partialPath = getPartialPath(key);
+        return Files.exists(partialPath) ? Files.size(partialPath) : 0;
+    }
+
+    /**
+     * Streams straight from the request body into the partial file; the chunk is only
+     * accepted if it starts exactly at the current end of the file
+     */
+    @Override
+    public long appendPartial(String key, long offset, long maxLength, InputStream inputStream) throws IOException {
+        Path partialPath = getPartialPath(key);
+        try (FileChannel channel = FileChannel.open(partialPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() != offset) {
+                throw new IOException("Upload offset mismatch: expected " + channel.size() + " but got " + offset);
+            }
+            ReadableByteChannel source = Channels.newChannel(inputStream);
+            long position = offset;
+            long remaining = maxLength;
+            while (remaining > 0) {
+                long written = channel.transferFrom(source, position, remaining);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            channel.force(false);
+            return position;
+        }
+    }
+
+    @Override
+    public InputStream openPartial(String key) throws IOException {
+        return Files.newInputStream(getPartialPath(key));
+    }
+
+    /**
+     * A rename, so the data is never copied a second time
+     */
+    @Override
+    public void storePartial(String key, String targetKey) throws IOException {
+        store(targetKey, getPartialPath(key));
+    }
+
+    @Override
+    public void deletePartial(String key) throws IOException {
+        Files.deleteIfExists(getPartialPath(key));
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    @Override
+    public List<String> listShard(int shard) throws IOException {
+        Path shardDirectory = this.fileStorageLocation.resolve(String.format("%02x", shard));
+        List<String> keys = new ArrayList<>();
+        if (!Files.isDirectory(shardDirectory)) {
+            return keys;
+        }
+
+        try (DirectoryStream<Path> subdirectories = Files.newDirectoryStream(shardDirectory)) {
+            for (Path subdirectory : subdirectories) {
+                if (!Files.isDirectory(subdirectory)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(subdirectory)) {
+                    for (Path file : files) {
+                        if (Files.isRegularFile(file)) {
+                            keys.add(file.getFileName().toString());
+                        }
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<String> listUnshardedKeys(int limit) throws IOException {
+        List<String> keys = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.fileStorageLocation)) {
+            for (Path path : stream) {
+                if (keys.size() >= limit) {
+                    break;
+                }
+                if (Files.isRegularFile(path)) {
+                    keys.add(path.getFileName().toString());
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The move is a rename, so readers see the file either at its old or at its new location
+     */
+    @Override
+    public void moveToShard(String key) throws IOException {
+        Path legacyPath = getLegacyPath(key);
+        Path shardedPath = getShardedPath(key);
+        Files.createDirectories(shardedPath.getParent());
+
+        if (Files.exists(shardedPath)) {
+            // Already migrated (identical content-addressed file); drop the flat copy
+            Files.deleteIfExists(legacyPath);
+        } else {
+            try {
+                Files.move(legacyPath, shardedPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // Deleted meanwhile, nothing left to move
+            }
+        }
+    }
+
+    private Path resolve(String key) {
+        Path shardedPath = getShardedPath(key);
+        if (!Files.exists(shardedPath)) {
+            Path legacyPath = getLegacyPath(key);
+            if (Files.isRegularFile(legacyPath)) {
+                return legacyPath;
+            }
+        }
+        return shardedPath;
+    }
+
+    private Path getShardedPath(String key) {
+        return this.fileStorageLocation.resolve(StorageBackend.shardPath(key)).normalize();
+    }
+
+    private Path getPartialPath(String key) {
+        return this.stagingLocation.resolve(key + ".part").normalize();
+    }
+
+    private Path getLegacyPath(String key) {
+        return this.fileStorageLocation.resolve(key).normalize();
+    }
+}
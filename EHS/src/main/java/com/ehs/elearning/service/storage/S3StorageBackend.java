@@ -0,0 +1,529 @@
+package com.ehs.elearning.service.storage;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores files in an S3-compatible object store (AWS S3, MinIO and similar), using the
+ * same {@code ab/cd/<key>} layout as local disk. Works against a local MinIO by pointing
+ * {@code file.storage.s3.endpoint} at it with path-style access.
+ *
+ * Partial uploads are S3 multipart uploads of {@code staging/<key>}, so every instance sees
+ * the same state. S3 needs parts of at least 5 MB, which is more than a chunk usually is:
+ * bytes that do not fill a part are kept in a tail object {@code staging/<key>.tail-<n>},
+ * where n is the number of the part they will become. Only the tail matching the uploaded
+ * parts counts, so a crash between uploading a part and replacing the tail loses nothing the
+ * offset claims.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String STAGING_PREFIX = "staging/";
+
+    private static final String TAIL_SUFFIX = ".tail-";
+
+    // Parts other than the last one must be at least 5 MB
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final S3Presigner presigner;
+    private final String bucket;
+
+    public S3StorageBackend(@Value("${file.storage.s3.bucket}") String bucket,
+                            @Value("${file.storage.s3.region:us-east-1}") String region,
+                            @Value("${file.storage.s3.endpoint:}") String endpoint,
+                            @Value("${file.storage.s3.access-key:}") String accessKey,
+                            @Value("${file.storage.s3.secret-key:}") String secretKey,
+                            @Value("${file.storage.s3.path-style-access:true}") boolean pathStyleAccess) {
+        this.bucket = bucket;
+
+        AwsCredentialsProvider credentialsProvider = StringUtils.hasText(accessKey)
+                ? StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey))
+                : DefaultCredentialsProvider.create();
+        S3Configuration serviceConfiguration = S3Configuration.builder()
+                .pathStyleAccessEnabled(pathStyleAccess)
+                .build();
+
+        S3ClientBuilder clientBuilder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .serviceConfiguration(serviceConfiguration);
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .serviceConfiguration(serviceConfiguration);
+
+        if (StringUtils.hasText(endpoint)) {
+            try {
+                URI endpointUri = new URI(endpoint);
+                clientBuilder.endpointOverride(endpointUri);
+                presignerBuilder.endpointOverride(endpointUri);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid S3 endpoint " + endpoint, e);
+            }
+        }
+
+        this.s3Client = clientBuilder.build();
+        this.presigner = presignerBuilder.build();
+    }
+
+    @PreDestroy
+    public void close() {
+        presigner.close();
+        s3Client.close();
+    }
+
+    @Override
+    public void store(String key, Path source) throws IOException {
+        try {
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(StorageBackend.shardPath(key))
+                            .build(),
+                    RequestBody.fromFile(source));
+        } catch (SdkException e) {
+            throw new IOException("Failed to store " + key + " in bucket " + bucket, e);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            head(key);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public StoredFileInfo stat(String key) throws IOException {
+        HeadObjectResponse head = head(key);
+        return new StoredFileInfo(head.contentLength(), head.lastModified().toEpochMilli(), head.eTag());
+    }
+
+    @Override
+    public InputStream openStream(String key, long start, long length) throws IOException {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(StorageBackend.shardPath(key))
+                    .range("bytes=" + start + "-" + (start + length - 1))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(StorageBackend.shardPath(key))
+                    .build());
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public long getPartialSize(String key) throws IOException {
+        try {
+            PartialUpload partial = findPartial(key);
+            if (partial.uploadId == null && partial.tailSize == 0) {
+                // Completed, or nothing received yet
+                return sizeOf(STAGING_PREFIX + key);
+            }
+            return partial.size();
+        } catch (SdkException e) {
+            throw new IOException("Failed to read partial upload " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    /**
+     * Fills part-sized buffers from the input and uploads each as a part. Whatever is left,
+     * including the bytes read before the input failed, becomes the new tail.
+     */
+    @Override
+    public long appendPartial(String key, long offset, long maxLength, InputStream inputStream) throws IOException {
+        String stagingKey = STAGING_PREFIX + key;
+        try {
+            PartialUpload partial = findPartial(key);
+            if (partial.size() != offset) {
+                throw new IOException("Upload offset mismatch: expected " + partial.size() + " but got " + offset);
+            }
+
+            byte[] buffer = new byte[PART_SIZE];
+            int filled = 0;
+            String oldTailKey = null;
+            if (partial.tailSize > 0) {
+                oldTailKey = tailKey(key, partial.partCount + 1);
+                try (InputStream tail = s3Client.getObject(GetObjectRequest.builder()
+                        .bucket(bucket).key(oldTailKey).build())) {
+                    filled = tail.readNBytes(buffer, 0, PART_SIZE);
+                }
+            }
+
+            long remaining = maxLength;
+            try {
+                while (remaining > 0) {
+                    if (filled == PART_SIZE) {
+                        if (partial.uploadId == null) {
+                            partial.uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                                    .bucket(bucket).key(stagingKey).build()).uploadId();
+                        }
+                        uploadPart(stagingKey, partial.uploadId, partial.partCount + 1, buffer, filled);
+                        partial.partCount++;
+                        partial.partsSize += filled;
+                        filled = 0;
+                    }
+                    int read = inputStream.read(buffer, filled, (int) Math.min(PART_SIZE - filled, remaining));
+                    if (read < 0) {
+                        break;
+                    }
+                    filled += read;
+                    remaining -= read;
+                }
+            } finally {
+                String newTailKey = tailKey(key, partial.partCount + 1);
+                if (filled > 0) {
+                    s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(newTailKey).build(),
+                            RequestBody.fromBytes(Arrays.copyOf(buffer, filled)));
+                }
+                if (oldTailKey != null && (filled == 0 || !oldTailKey.equals(newTailKey))) {
+                    deleteObject(oldTailKey);
+                }
+            }
+            return partial.partsSize + filled;
+        } catch (SdkException e) {
+            throw new IOException("Failed to append to partial upload " + key + " in bucket " + bucket, e);
+        }
+    }
+
+    /**
+     * Uploads the tail as the last part and completes the multipart upload. An upload smaller
+     * than one part never started one; its tail is simply copied.
+     */
+    @Override
+    public void completePartial(String key) throws IOException {
+        String stagingKey = STAGING_PREFIX + key;
+        try {
+            PartialUpload partial = findPartial(key);
+            String tailKey = tailKey(key, partial.partCount + 1);
+            if (partial.uploadId == null) {
+                if (partial.tailSize > 0) {
+                    copyObject(tailKey, stagingKey);
+                    deleteObject(tailKey);
+                } else if (sizeOf(stagingKey) == 0) {
+                    s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(stagingKey).build(),
+                            RequestBody.empty());
+                }
+                return;
+            }
+
+            if (partial.tailSize > 0) {
+                byte[] tail = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                        .bucket(bucket).key(tailKey).build()).asByteArray();
+                uploadPart(stagingKey, partial.uploadId, partial.partCount + 1, tail, tail.length);
+            }
+            List<CompletedPart> completedParts = new ArrayList<>();
+            for (Part part : listParts(stagingKey, partial.uploadId)) {
+                completedParts.add(CompletedPart.builder()
+                        .partNumber(part.partNumber())
+                        .eTag(part.eTag())
+                        .build());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(stagingKey)
+                    .uploadId(partial.uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+            if (partial.tailSize > 0) {
+                deleteObject(tailKey);
+            }
+        } catch (SdkException e) {
+            throw new IOException("Failed to complete partial upload " + key + " in bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public InputStream openPartial(String key) throws IOException {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(STAGING_PREFIX + key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read partial upload " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    /**
+     * A server-side copy, so the bytes do not pass through the application again. CopyObject
+     * is limited to 5 GB, well above the upload size limit.
+     */
+    @Override
+    public void storePartial(String key, String targetKey) throws IOException {
+        try {
+            copyObject(STAGING_PREFIX + key, StorageBackend.shardPath(targetKey));
+            deleteObject(STAGING_PREFIX + key);
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to store partial upload " + key + " as " + targetKey
+                    + " in bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void deletePartial(String key) throws IOException {
+        String stagingKey = STAGING_PREFIX + key;
+        try {
+            String uploadId = findMultipartUpload(stagingKey);
+            if (uploadId != null) {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(stagingKey)
+                        .uploadId(uploadId)
+                        .build());
+            }
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(stagingKey)
+                    .build();
+            for (S3Object object : s3Client.listObjectsV2Paginator(request).contents()) {
+                if (object.key().equals(stagingKey) || object.key().startsWith(stagingKey + TAIL_SUFFIX)) {
+                    deleteObject(object.key());
+                }
+            }
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete partial upload " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<URI> getPresignedDownloadUrl(String key, Duration validity, String contentType,
+                                                 String contentEncoding, String contentDisposition) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(StorageBackend.shardPath(key))
+                .responseContentType(contentType)
+                .responseContentEncoding(contentEncoding)
+                .responseContentDisposition(contentDisposition)
+                .build();
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(validity)
+                .getObjectRequest(getObjectRequest)
+                .build();
+
+        try {
+            return Optional.of(presigner.presignGetObject(presignRequest).url().toURI());
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public List<String> listShard(int shard) throws IOException {
+        String prefix = String.format("%02x/", shard);
+        List<String> keys = new ArrayList<>();
+        try {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(prefix)
+                    .build();
+            for (S3Object object : s3Client.listObjectsV2Paginator(request).contents()) {
+                String objectKey = object.key();
+                keys.add(objectKey.substring(objectKey.lastIndexOf('/') + 1));
+            }
+        } catch (SdkException e) {
+            throw new IOException("Failed to list shard " + prefix + " in bucket " + bucket, e);
+        }
+        return keys;
+    }
+
+    /**
+     * The state of a partial upload as stored: the multipart upload if one was started, its
+     * parts, and the size of the tail that follows them
+     */
+    private static class PartialUpload {
+        private String uploadId;
+        private int partCount;
+        private long partsSize;
+        private long tailSize;
+
+        long size() {
+            return partsSize + tailSize;
+        }
+    }
+
+    private PartialUpload findPartial(String key) {
+        String stagingKey = STAGING_PREFIX + key;
+        PartialUpload partial = new PartialUpload();
+        partial.uploadId = findMultipartUpload(stagingKey);
+        if (partial.uploadId != null) {
+            for (Part part : listParts(stagingKey, partial.uploadId)) {
+                partial.partCount++;
+                partial.partsSize += part.size();
+            }
+        }
+        partial.tailSize = sizeOf(tailKey(key, partial.partCount + 1));
+        return partial;
+    }
+
+    private String findMultipartUpload(String stagingKey) {
+        ListMultipartUploadsRequest request = ListMultipartUploadsRequest.builder()
+                .bucket(bucket)
+                .prefix(stagingKey)
+                .build();
+        for (MultipartUpload upload : s3Client.listMultipartUploadsPaginator(request).uploads()) {
+            if (upload.key().equals(stagingKey)) {
+                return upload.uploadId();
+            }
+        }
+        return null;
+    }
+
+    private List<Part> listParts(String stagingKey, String uploadId) {
+        List<Part> parts = new ArrayList<>();
+        s3Client.listPartsPaginator(ListPartsRequest.builder()
+                        .bucket(bucket)
+                        .key(stagingKey)
+                        .uploadId(uploadId)
+                        .build())
+                .parts()
+                .forEach(parts::add);
+        return parts;
+    }
+
+    private void uploadPart(String stagingKey, String uploadId, int partNumber, byte[] buffer, int length) {
+        s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(stagingKey)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build(),
+                RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+    }
+
+    private static String tailKey(String key, int partNumber) {
+        return STAGING_PREFIX + key + TAIL_SUFFIX + partNumber;
+    }
+
+    /**
+     * @return The size of an object by its full key, 0 if it does not exist
+     */
+    private long sizeOf(String objectKey) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(objectKey)
+                    .build()).contentLength();
+        } catch (NoSuchKeyException e) {
+            return 0;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private void copyObject(String sourceKey, String targetKey) {
+        s3Client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucket)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucket)
+                .destinationKey(targetKey)
+                .build());
+    }
+
+    private void deleteObject(String objectKey) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey)
+                .build());
+    }
+
+    private HeadObjectResponse head(String key) throws IOException {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(StorageBackend.shardPath(key))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new NoSuchFileException(key);
+            }
+            throw new IOException("Failed to read metadata of " + key + " from bucket " + bucket, e);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read metadata of " + key + " from bucket " + bucket, e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ehs.elearning.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where stored files live. Keys are the logical filenames kept in
+ * {@code LearningMaterial.filePath}; each backend decides how to lay them out.
+ * Uploads are always staged on local disk first and handed over with {@link #store}.
+ */
+public interface StorageBackend {
+
+    /**
+     * Move a fully written local file into the store under the given key.
+     * The source file no longer exists afterwards.
+     */
+    void store(String key, Path source) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException if the key is not stored
+     */
+    StoredFileInfo stat(String key) throws IOException;
+
+    /**
+     * Open a stream over a byte range of a stored file
+     *
+     * @param start The first byte to read
+     * @param length The number of bytes to read
+     */
+    InputStream openStream(String key, long start, long length) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Get the number of bytes received so far for a partial (resumable) upload. Partial
+     * uploads are kept in the store itself, so any instance can continue an upload that
+     * another one started.
+     *
+     * @return 0 if nothing has been received
+     */
+    long getPartialSize(String key) throws IOException;
+
+    /**
+     * Append to a partial upload, streaming from the given input. Bytes read before the
+     * input fails are kept.
+     *
+     * @param offset The current partial size, as the client believes it
+     * @param maxLength The maximum number of bytes to accept
+     * @return The new partial size
+     * @throws IOException if the offset is not the current partial size
+     */
+    long appendPartial(String key, long offset, long maxLength, InputStream inputStream) throws IOException;
+
+    /**
+     * Seal a fully received partial upload, so it can be read with {@link #openPartial}
+     */
+    default void completePartial(String key) throws IOException {
+    }
+
+    /**
+     * Open a completed partial upload, for hashing it
+     */
+    InputStream openPartial(String key) throws IOException;
+
+    /**
+     * Move a completed partial upload to a stored file; the partial upload is gone afterwards
+     */
+    void storePartial(String key, String targetKey) throws IOException;
+
+    /**
+     * Discard a partial upload, complete or not
+     */
+    void deletePartial(String key) throws IOException;
+
+    /**
+     * @return The file on local disk, for zero-copy delivery, or empty if the backend is remote
+     */
+    Optional<Path> getLocalPath(String key);
+
+    /**
+     * @return A time-limited URL the client can download from directly, or empty if the
+     *         backend cannot issue one
+     */
+    default Optional<URI> getPresignedDownloadUrl(String key, Duration validity, String contentType,
+                                                  String contentEncoding, String contentDisposition) {
+        return Optional.empty();
+    }
+
+    /**
+     * @return Number of top-level shards, see {@link #listShard}
+     */
+    default int getShardCount() {
+        return 256;
+    }
+
+    /**
+     * List the keys stored under one top-level shard
+     */
+    List<String> listShard(int shard) throws IOException;
+
+    /**
+     * List keys still stored in a pre-sharding layout, if the backend has one
+     */
+    default List<String> listUnshardedKeys(int limit) throws IOException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Move a key from the pre-sharding layout into its shard
+     */
+    default void moveToShard(String key) throws IOException {
+    }
+
+    /**
+     * Shard path of a key, {@code ab/cd/<key>}. Names generated by FileStorageService
+     * (SHA-256 or UUID) already start with random hex digits; anything else is hashed so
+     * it still spreads evenly over the shards.
+     */
+    static String shardPath(String key) {
+        String lowerCaseKey = key.toLowerCase();
+        String prefix;
+        if (lowerCaseKey.length() >= 4 && HexFormat.isHexDigit(lowerCaseKey.charAt(0))
+                && HexFormat.isHexDigit(lowerCaseKey.charAt(1)) && HexFormat.isHexDigit(lowerCaseKey.charAt(2))
+                && HexFormat.isHexDigit(lowerCaseKey.charAt(3))) {
+            prefix = lowerCaseKey.substring(0, 4);
+        } else {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+                prefix = HexFormat.of().formatHex(hash, 0, 2);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        return prefix.substring(0, 2) + "/" + prefix.substring(2, 4) + "/" + key;
+    }
+}
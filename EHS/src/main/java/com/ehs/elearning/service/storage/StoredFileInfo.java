@@ -0,0 +1,38 @@
+package com.ehs.elearning.service.storage;
+
+/**
+ * Metadata of a stored file, as reported by a {@link StorageBackend}
+ */
+public class StoredFileInfo {
+
+    private final long size;
+    private final long lastModified;
+    private final String eTag;
+
+    public StoredFileInfo(long size, long lastModified, String eTag) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+    }
+
+    /**
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return A quoted, strong entity tag for the stored bytes
+     */
+    public String getETag() {
+        return eTag;
+    }
+}
@@ -0,0 +1,31 @@
+-- Full-text content search: a stored, generated tsvector column and a GIN index on each
+-- searchable table. Run once per database, outside a transaction block, since the indexes
+-- are built CONCURRENTLY:
+--
+--   psql -d ehs -f src/main/resources/db/content-search.sql
+--
+-- Every statement is idempotent. Adding a column fills it for the existing rows while
+-- holding an exclusive lock on the table, so run it when the tables are quiet.
+-- Titles weigh more than descriptions, which weigh more than material HTML content; tags are
+-- replaced by spaces, so HTML is indexed as plain text.
+
+ALTER TABLE training_modules ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')) STORED;
+
+ALTER TABLE module_components ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')) STORED;
+
+ALTER TABLE learning_materials ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B') ||
+    setweight(to_tsvector('english', regexp_replace(coalesce(content, ''), '<[^>]*>', ' ', 'g')), 'C')) STORED;
+
+ALTER TABLE questions ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(text, '')), 'A')) STORED;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_training_modules_search ON training_modules USING gin (search_vector);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_module_components_search ON module_components USING gin (search_vector);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_learning_materials_search ON learning_materials USING gin (search_vector);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_questions_search ON questions USING gin (search_vector);
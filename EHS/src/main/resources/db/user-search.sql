@@ -0,0 +1,15 @@
+-- User search: trigram indexes on the lower-cased text columns, so the substring matches of
+-- UserSearchService do not scan the whole users table. Run once per database, outside a
+-- transaction block, since the indexes are built CONCURRENTLY:
+--
+--   psql -d ehs -f src/main/resources/db/user-search.sql
+--
+-- Every statement is idempotent. Creating the pg_trgm extension needs a superuser, or a
+-- user allowed to create it in the database. Searches work without the indexes, only slower.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_trgm ON users USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_first_name_trgm ON users USING gin (lower(first_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_last_name_trgm ON users USING gin (lower(last_name) gin_trgm_ops);
@@ -0,0 +1,79 @@
+package com.ehs.elearning;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base class of tests that need the full application against a real PostgreSQL database.
+ * A database given with {@code -Dehs.test.jdbc-url=...} (plus {@code ehs.test.jdbc-username}
+ * and {@code ehs.test.jdbc-password}) is used as is; otherwise a Testcontainers PostgreSQL is
+ * started once for all test classes. Without either the tests are skipped.
+ *
+ * Test classes share the database, so they create their own rows with unique names rather
+ * than expecting empty tables.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestData.class)
+public abstract class PostgresIntegrationTest {
+
+    private static final String EXTERNAL_URL = System.getProperty("ehs.test.jdbc-url");
+
+    private static final PostgreSQLContainer<?> POSTGRES = startContainer();
+
+    private static final Path UPLOAD_DIR = createUploadDir();
+
+    @DynamicPropertySource
+    static void databaseProperties(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_URL != null) {
+            registry.add("spring.datasource.url", () -> EXTERNAL_URL);
+            registry.add("spring.datasource.username", () -> System.getProperty("ehs.test.jdbc-username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("ehs.test.jdbc-password", ""));
+        } else if (POSTGRES != null) {
+            registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+            registry.add("spring.datasource.username", POSTGRES::getUsername);
+            registry.add("spring.datasource.password", POSTGRES::getPassword);
+        }
+        registry.add("file.upload-dir", UPLOAD_DIR::toString);
+        registry.add("spring.jpa.show-sql", () -> "false");
+        // Tests count the statements a call issues; the per-session summary is not needed
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener", () -> "WARN");
+        // Tests that need the sweeper call it; a scheduled run would race them
+        registry.add("file.storage.sweeper.enabled", () -> "false");
+    }
+
+    @BeforeAll
+    static void requireDatabase() {
+        Assumptions.assumeTrue(EXTERNAL_URL != null || POSTGRES != null,
+                "Needs Docker or -Dehs.test.jdbc-url pointing at a PostgreSQL database");
+    }
+
+    private static PostgreSQLContainer<?> startContainer() {
+        if (EXTERNAL_URL != null || !DockerClientFactory.instance().isDockerAvailable()) {
+            return null;
+        }
+        PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:16-alpine");
+        container.start();
+        return container;
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("ehs-test-uploads-");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ehs.elearning;
+
+import com.ehs.elearning.model.ComponentType;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.model.ModuleComponent;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.repository.DomainRepository;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.ehs.elearning.repository.ModuleComponentRepository;
+import com.ehs.elearning.repository.TrainingModuleRepository;
+import com.ehs.elearning.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.UUID;
+
+/**
+ * Creates rows for integration tests. Names get a random suffix, as test classes share the
+ * database and unique columns would otherwise collide.
+ */
+@TestComponent
+public class TestData {
+
+    @Autowired
+    private DomainRepository domainRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TrainingModuleRepository moduleRepository;
+
+    @Autowired
+    private ModuleComponentRepository componentRepository;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    /**
+     * A random suffix, to keep names unique across test runs
+     */
+    public static String unique() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * A random word of letters only, for text search, which would split a word at digits
+     */
+    public static String uniqueWord() {
+        StringBuilder word = new StringBuilder("zq");
+        for (char c : unique().toCharArray()) {
+            // Digits become letters outside the hex range, so no randomness is lost
+            word.append(Character.isDigit(c) ? (char) ('g' + (c - '0')) : c);
+        }
+        return word.toString();
+    }
+
+    public Domain domain(String name) {
+        return domainRepository.save(new Domain(name + " " + unique(), "Test domain"));
+    }
+
+    public Users user(Role role, Domain... domains) {
+        String username = "test-" + unique();
+        Users user = new Users(username, username + "@example.com", "not-a-hash");
+        user.setRole(role);
+        user.setFirstName("Test");
+        user.setLastName(username);
+        for (Domain domain : domains) {
+            user.addDomain(domain);
+        }
+        return userRepository.save(user);
+    }
+
+    public TrainingModule module(String title, Domain domain, Users author, ModuleStatus status) {
+        TrainingModule module = new TrainingModule();
+        module.setTitle(title);
+        module.setDescription("Description of " + title);
+        module.setDomain(domain);
+        module.setCreatedBy(author);
+        module.setStatus(status);
+        return moduleRepository.save(module);
+    }
+
+    public ModuleComponent component(TrainingModule module, String title) {
+        ModuleComponent component = new ModuleComponent();
+        component.setTrainingModule(module);
+        component.setType(ComponentType.LEARNING_MATERIAL);
+        component.setTitle(title);
+        component.setSequenceOrder(1);
+        return componentRepository.save(component);
+    }
+
+    public LearningMaterial material(ModuleComponent component, String title, String filePath) {
+        LearningMaterial material = new LearningMaterial();
+        material.setComponent(component);
+        material.setTitle(title);
+        material.setFileType("PDF");
+        material.setFilePath(filePath);
+        material.setSequenceOrder(1);
+        return materialRepository.save(material);
+    }
+
+    /**
+     * A material referencing the given stored file, in a fresh draft module
+     */
+    public LearningMaterial materialWithFile(String filePath) {
+        Domain domain = domain("Files");
+        Users author = user(Role.ADMIN, domain);
+        TrainingModule module = module("Module " + unique(), domain, author, ModuleStatus.DRAFT);
+        return material(component(module, "Materials"), "Material " + unique(), filePath);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ehs.elearning.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends one stored file to a loopback socket the ways FileDeliveryService and its predecessor do:
+ * <ul>
+ * <li>{@code resourceCopy}: the old controller body, a UrlResource copied through an 8 KB heap
+ * buffer, as ResourceHttpMessageConverter does</li>
+ * <li>{@code transferToSocket}: FileChannel.transferTo straight into the socket, the path the
+ * kernel serves with sendfile; Tomcat's sendfile support ends up here as well</li>
+ * <li>{@code transferToWrappedStream}: FileChannel.transferTo into a channel wrapping the
+ * servlet output stream, the fallback when sendfile is unavailable; the JDK copies through a
+ * heap buffer there, so it costs about as much as resourceCopy</li>
+ * </ul>
+ * Run with {@code mvn -Pjmh test -Djmh.args="FileDeliveryBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDeliveryBenchmark {
+
+    @Param({ "65536", "8388608" })
+    private int fileSize;
+
+    private Path file;
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private Thread drain;
+
+    // Stands in for the servlet output stream, which the JDK cannot unwrap into a channel
+    private OutputStream responseStream;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("delivery-benchmark-", ".bin");
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        Files.write(file, content);
+
+        // A peer that reads and discards everything, like a client downloading the file
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel peer = server.accept();
+        drain = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            try (peer) {
+                while (peer.read(buffer.clear()) >= 0) {
+                    // discard
+                }
+            } catch (IOException e) {
+                // socket closed at tear down
+            }
+        });
+        drain.setDaemon(true);
+        drain.start();
+
+        OutputStream socketStream = Channels.newOutputStream(client);
+        responseStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                socketStream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                socketStream.write(b, off, len);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+        drain.join(1000);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long resourceCopy() throws IOException {
+        try (InputStream in = new UrlResource(file.toUri()).getInputStream()) {
+            return StreamUtils.copy(in, responseStream);
+        }
+    }
+
+    @Benchmark
+    public long transferToSocket() throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            return transfer(source, client);
+        }
+    }
+
+    @Benchmark
+    public long transferToWrappedStream() throws IOException {
+        WritableByteChannel target = Channels.newChannel(responseStream);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            return transfer(source, target);
+        }
+    }
+
+    private long transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        long position = 0;
+        long remaining = source.size();
+        while (remaining > 0) {
+            long transferred = source.transferTo(position, remaining, target);
+            position += transferred;
+            remaining -= transferred;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ehs.elearning.benchmark;
+
+import com.ehs.elearning.security.JwtClaims;
+import com.ehs.elearning.security.JwtTokenProvider;
+import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of authenticating one request from its bearer token:
+ * <ul>
+ * <li>{@code parserPerCall}: what JwtAuthenticationFilter used to do, four calls that each built
+ * a parser and verified the HS512 signature again</li>
+ * <li>{@code sharedParser}: JwtTokenProvider.parseToken with the verified-token cache off, one
+ * verification with the parser built at startup</li>
+ * <li>{@code verifiedTokenCacheHit}: parseToken for a token seen before, a SHA-256 and a cache
+ * lookup</li>
+ * </ul>
+ * Run with {@code mvn -Pjmh test -Djmh.args="JwtParsingBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtParsingBenchmark {
+
+    // Any secret of at least 512 bits; the application's comes from jwt.secret
+    private static final String SECRET = "benchmark-secret-".repeat(8);
+
+    private static final long EXPIRATION_MS = 86_400_000;
+
+    private SecretKey secretKey;
+    private JwtTokenProvider uncachedProvider;
+    private JwtTokenProvider cachedProvider;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Derived the way JwtTokenProvider.init derives it
+        secretKey = Keys.hmacShaKeyFor(Base64.getEncoder().encodeToString(SECRET.getBytes()).getBytes());
+        uncachedProvider = provider(false);
+        cachedProvider = provider(true);
+
+        UserDetailsImpl user = new UserDetailsImpl(UUID.randomUUID(), "benchmark", "benchmark@example.com", "",
+                List.of(new SimpleGrantedAuthority("ROLE_LEARNER")));
+        token = cachedProvider.generateToken(new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities()));
+        cachedProvider.parseToken(token);
+    }
+
+    @Benchmark
+    public void parserPerCall(Blackhole blackhole) {
+        // validateToken, getAuthentication, getUserIdFromToken, getRolesFromToken
+        for (int i = 0; i < 4; i++) {
+            Claims claims = Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token).getBody();
+            blackhole.consume(claims);
+        }
+    }
+
+    @Benchmark
+    public JwtClaims sharedParser() {
+        return uncachedProvider.parseToken(token);
+    }
+
+    @Benchmark
+    public JwtClaims verifiedTokenCacheHit() {
+        return cachedProvider.parseToken(token);
+    }
+
+    private static JwtTokenProvider provider(boolean tokenCache) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(provider, "verifiedTokenCache",
+                new VerifiedTokenCache(tokenCache, 1000, EXPIRATION_MS));
+        ReflectionTestUtils.invokeMethod(provider, "init");
+        return provider;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.Users;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WithMockUser(roles = "ADMIN")
+class DomainControllerTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void listsDomainUsersOnePageAtATime() throws Exception {
+        Domain domain = testData.domain("Members");
+        Users first = testData.user(Role.USER, domain);
+        Users second = testData.user(Role.USER, domain);
+        testData.user(Role.USER);
+        String expectedFirst = first.getUsername().compareTo(second.getUsername()) < 0
+                ? first.getUsername() : second.getUsername();
+
+        mockMvc.perform(get("/api/domains/" + domain.getId() + "/users").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Elements", "2"))
+                .andExpect(header().string("X-Total-Pages", "2"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].username").value(expectedFirst));
+    }
+
+    @Test
+    void answersUnknownDomainWithNotFound() throws Exception {
+        mockMvc.perform(get("/api/domains/" + UUID.randomUUID() + "/users"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,112 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.service.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WithMockUser
+class FileControllerTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    private String fileName;
+    private String content;
+
+    @BeforeEach
+    void storeFile() throws Exception {
+        // Unique bytes, so the content-addressed name is not shared with another test
+        content = "0123456789 delivery test " + UUID.randomUUID();
+        fileName = fileStorageService.storeFile(new MockMultipartFile("file", "sample.bin",
+                "application/octet-stream", content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        mockMvc.perform(get("/api/files/" + fileName))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, content.length()))
+                .andExpect(content().string(content));
+    }
+
+    @Test
+    void keepsPartialContentStatusForRanges() throws Exception {
+        mockMvc.perform(get("/api/files/" + fileName).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/" + content.length()))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void answersMatchingEntityTagWithNotModified() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/files/" + fileName)).andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult second = mockMvc.perform(get("/api/files/" + fileName).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(second.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        mockMvc.perform(get("/api/files/" + fileName).header(HttpHeaders.RANGE, "bytes=1000-2000"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length()));
+    }
+
+    @Test
+    void answersHeadWithoutBody() throws Exception {
+        MvcResult result = mockMvc.perform(head("/api/files/" + fileName))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, content.length()))
+                .andReturn();
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void servesNewVersionWrittenWithoutEvent() throws Exception {
+        mockMvc.perform(get("/api/files/" + fileName)).andExpect(content().string(content));
+
+        // Another instance replacing the bytes sends no event to this one's cache
+        String replaced = content.toUpperCase();
+        Path path = fileStorageService.getLocalPath(fileName).orElseThrow();
+        Files.writeString(path, replaced);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        mockMvc.perform(get("/api/files/" + fileName))
+                .andExpect(status().isOk())
+                .andExpect(content().string(replaced));
+    }
+
+    @Test
+    void answersMissingFileWithNotFound() throws Exception {
+        mockMvc.perform(get("/api/files/" + UUID.randomUUID() + ".bin"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,154 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.security.UserDetailsImpl;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statements, entity loads and allocations of the module listings, for pages of 10 and 50
+ * modules that each have their own author and a component. The projection listings are
+ * compared with /modules/all, which still serializes TrainingModule entities.
+ */
+class ModuleListingCostTests extends PostgresIntegrationTest {
+
+    // Sorts before the other tests' titles, so /modules/all lists these modules first
+    private static final String TITLE_PREFIX = "AAAA Cost ";
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TestData testData;
+
+    private Users admin;
+
+    @BeforeEach
+    void createAdmin() {
+        admin = testData.user(Role.ADMIN);
+    }
+
+    @Test
+    void searchRunsTwoStatementsWithoutLoadingEntities() throws Exception {
+        Cost small = measure(get("/api/modules/search").param("domainId", modules(10).getId().toString()), 10);
+        Cost large = measure(get("/api/modules/search").param("domainId", modules(50).getId().toString()), 50);
+
+        // The page and its count
+        assertProjection(small, 2);
+        assertProjection(large, 2);
+    }
+
+    @Test
+    void modulesRunsTwoStatementsWithoutLoadingEntities() throws Exception {
+        Cost cost = measure(get("/api/modules").param("domainId", modules(10).getId().toString()), 10);
+
+        // The caller's domains come from UserDomainCache, not a query per request
+        assertProjection(cost, 2);
+    }
+
+    @Test
+    void recentRunsTwoStatementsWithoutLoadingEntities() throws Exception {
+        modules(10);
+        Cost small = measure(get("/api/modules/recent"), 10);
+        modules(50);
+        Cost large = measure(get("/api/modules/recent"), 50);
+
+        assertProjection(small, 2);
+        assertProjection(large, 2);
+    }
+
+    @Test
+    void projectionCostsLessThanTheEntityListing() throws Exception {
+        Domain domain = modules(50);
+        Cost entities = measure(get("/api/modules/all"), 50);
+        Cost projection = measure(get("/api/modules/search").param("domainId", domain.getId().toString()), 50);
+
+        // Lazy components and author domains are loaded per row while serializing
+        assertThat(entities.statements).as("entity listing statements").isGreaterThan(50);
+        assertThat(entities.entities).as("entity listing entity loads").isGreaterThanOrEqualTo(100);
+        assertThat(projection.bytes).as("bytes allocated by the projection, against %d for entities", entities.bytes)
+                .isLessThan(entities.bytes);
+    }
+
+    private static void assertProjection(Cost cost, int statements) {
+        assertThat(cost.statements).as("statements").isEqualTo(statements);
+        assertThat(cost.entities).as("entity loads").isZero();
+    }
+
+    /**
+     * A domain with this many published modules, each by its own author, created after
+     * everything else in the shared database so they make up the recent list
+     */
+    private Domain modules(int count) {
+        Domain domain = testData.domain("Cost");
+        LocalDateTime createdAt = LocalDateTime.now().plusYears(60);
+        for (int i = 0; i < count; i++) {
+            TrainingModule module = testData.module(TITLE_PREFIX + TestData.unique(), domain,
+                    testData.user(Role.ADMIN, domain), ModuleStatus.PUBLISHED);
+            testData.component(module, "Part " + i);
+            jdbcTemplate.update("UPDATE training_modules SET created_at = ? WHERE id = ?",
+                    createdAt.plusSeconds(i), module.getId());
+        }
+        return domain;
+    }
+
+    /**
+     * Average cost of a request after a warm-up. MockMvc handles the request on this thread,
+     * serialization included, so the thread's allocation counter covers all of it.
+     */
+    private Cost measure(MockHttpServletRequestBuilder request, int size) throws Exception {
+        request.param("size", String.valueOf(size)).with(user(UserDetailsImpl.build(admin)));
+        for (int i = 0; i < WARMUP; i++) {
+            mockMvc.perform(request).andExpect(status().isOk());
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < RUNS; i++) {
+            mockMvc.perform(request).andExpect(status().isOk());
+        }
+        Cost cost = new Cost();
+        cost.bytes = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / RUNS;
+        cost.statements = statistics.getPrepareStatementCount() / RUNS;
+        cost.entities = statistics.getEntityLoadCount() / RUNS;
+        return cost;
+    }
+
+    private static class Cost {
+        private long statements;
+        private long entities;
+        private long bytes;
+    }
+}
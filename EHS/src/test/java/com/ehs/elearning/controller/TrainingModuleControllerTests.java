@@ -0,0 +1,152 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Cursor listings of modules: following X-Next-Cursor visits every module once, in order,
+ * even where the sort key repeats
+ */
+class TrainingModuleControllerTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    private Domain domain;
+    private Users admin;
+
+    @BeforeEach
+    void createAdmin() {
+        domain = testData.domain("Cursor");
+        admin = testData.user(Role.ADMIN, domain);
+    }
+
+    @Test
+    void cursorWalkVisitsModulesWithEqualTitlesOnce() throws Exception {
+        String title = "Cursor " + TestData.unique();
+        List<UUID> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(testData.module(title, domain, admin, ModuleStatus.PUBLISHED).getId());
+        }
+        expected.sort(Comparator.comparing(UUID::toString));
+
+        List<UUID> visited = walk(cursor -> get("/api/modules").param("title", title).param("size", "2")
+                .param("cursor", cursor), 3);
+
+        assertThat(visited).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void firstCursorPageCanCarryATotalEstimate() throws Exception {
+        String title = "Estimate " + TestData.unique();
+        for (int i = 0; i < 3; i++) {
+            testData.module(title, domain, admin, ModuleStatus.PUBLISHED);
+        }
+
+        mockMvc.perform(get("/api/modules").param("title", title).param("cursor", "").param("size", "2")
+                        .param("withTotal", "true").with(user(UserDetailsImpl.build(admin))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-Next", "true"))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andExpect(header().string("X-Total-Estimate", "3"));
+    }
+
+    @Test
+    void recentModulesContinueAfterEqualCreationTimes() throws Exception {
+        // Later than anything else in the shared database, ModuleListingCostTests included, so these come first
+        LocalDateTime createdAt = LocalDateTime.now().plusYears(100).withNano(0);
+        List<UUID> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            TrainingModule module = testData.module("Recent " + TestData.unique(), domain, admin, ModuleStatus.PUBLISHED);
+            jdbcTemplate.update("UPDATE training_modules SET created_at = ? WHERE id = ?", createdAt, module.getId());
+            expected.add(module.getId());
+        }
+        expected.sort(Comparator.comparing(UUID::toString).reversed());
+
+        List<UUID> visited = new ArrayList<>();
+        String cursor = "";
+        while (visited.size() < expected.size()) {
+            MvcResult result = mockMvc.perform(get("/api/modules/recent").param("cursor", cursor).param("size", "3")
+                            .with(user(UserDetailsImpl.build(admin))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            visited.addAll(ids(result));
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        }
+
+        assertThat(visited.subList(0, expected.size())).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void rejectsMalformedCursor() throws Exception {
+        mockMvc.perform(get("/api/modules/recent").param("cursor", "not a cursor")
+                        .with(user(UserDetailsImpl.build(admin))))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Follow X-Next-Cursor from the first page to the last
+     */
+    private List<UUID> walk(Function<String, MockHttpServletRequestBuilder> request, int expectedPages)
+            throws Exception {
+        List<UUID> visited = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        while (cursor != null) {
+            MvcResult result = mockMvc.perform(request.apply(cursor).with(user(UserDetailsImpl.build(admin))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            pages++;
+            visited.addAll(ids(result));
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+            assertThat(result.getResponse().getHeader("X-Has-Next")).isEqualTo(String.valueOf(cursor != null));
+        }
+        assertThat(pages).isEqualTo(expectedPages);
+        return visited;
+    }
+
+    private List<UUID> ids(MvcResult result) throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (JsonNode module : objectMapper.readTree(result.getResponse().getContentAsString())) {
+            ids.add(UUID.fromString(module.get("id").asText()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,122 @@
+package com.ehs.elearning.controller;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.repository.UserRepository;
+import com.ehs.elearning.security.UserDetailsImpl;
+import com.ehs.elearning.service.CatalogChangedEvent;
+import com.ehs.elearning.service.CatalogTypeaheadIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WithMockUser(roles = "ADMIN")
+class UserControllerTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CatalogTypeaheadIndex typeaheadIndex;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void searchCursorKeepsTheRequestedOrderAcrossPages() throws Exception {
+        String department = "Cursor " + TestData.unique();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Users user = testData.user(Role.USER);
+            user.setDepartment(department);
+            expected.add(userRepository.save(user).getUsername());
+        }
+        expected.sort(Comparator.reverseOrder());
+
+        List<String> visited = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            // The cursor carries the order, so later requests need not repeat it
+            MvcResult result = mockMvc.perform(get("/api/users/search").param("department", department)
+                            .param("size", "2").param("cursor", cursor)
+                            .param("direction", cursor.isEmpty() ? "desc" : "asc"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            for (JsonNode user : objectMapper.readTree(result.getResponse().getContentAsString())) {
+                visited.add(user.get("username").asText());
+            }
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        }
+
+        assertThat(visited).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void searchCursorRejectsKeysThatCanRepeatOrBeNull() throws Exception {
+        mockMvc.perform(get("/api/users/search").param("cursor", "").param("sortBy", "department"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void addingAndRemovingADomainChangesWhatTheUserIsSuggested() throws Exception {
+        Domain own = testData.domain("Own");
+        Domain added = testData.domain("Added");
+        Users author = testData.user(Role.ADMIN, added);
+        String word = TestData.uniqueWord();
+        TrainingModule module = testData.module(word + " basics", added, author, ModuleStatus.PUBLISHED);
+        typeaheadIndex.onCatalogChanged(CatalogChangedEvent.module(module.getId()));
+        Users learner = testData.user(Role.USER, own);
+
+        // Loads the learner's domains into the cache
+        assertThat(suggestedIds(learner, word)).isEmpty();
+
+        mockMvc.perform(post("/api/users/{id}/domains/{domainId}", learner.getId(), added.getId()))
+                .andExpect(status().isOk());
+        assertThat(suggestedIds(learner, word)).containsExactly(module.getId());
+
+        mockMvc.perform(delete("/api/users/{id}/domains/{domainId}", learner.getId(), added.getId()))
+                .andExpect(status().isOk());
+        assertThat(suggestedIds(learner, word)).isEmpty();
+    }
+
+    private List<UUID> suggestedIds(Users learner, String text) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/modules/typeahead").param("q", text)
+                        .with(user(UserDetailsImpl.build(learner))))
+                .andExpect(status().isOk())
+                .andReturn();
+        List<UUID> ids = new ArrayList<>();
+        for (JsonNode suggestion : objectMapper.readTree(result.getResponse().getContentAsString())) {
+            ids.add(UUID.fromString(suggestion.get("id").asText()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ehs.elearning.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationListTests {
+
+    private static final long EXPIRATION_MS = 86_400_000;
+
+    private final TokenRevocationList revocationList = new TokenRevocationList(1 << 16, EXPIRATION_MS);
+
+    @Test
+    void signOutRevokesEarlierTokensOnly() throws Exception {
+        UUID userId = UUID.randomUUID();
+        JwtClaims before = claims(userId, System.currentTimeMillis());
+        Thread.sleep(2);
+
+        revocationList.revokeUser(userId);
+        Thread.sleep(2);
+        JwtClaims after = claims(userId, System.currentTimeMillis());
+
+        assertThat(revocationList.isRevoked(before)).isTrue();
+        assertThat(revocationList.isRevoked(after)).isFalse();
+        assertThat(revocationList.isRevoked(claims(UUID.randomUUID(), before.getIssuedAt().getTime()))).isFalse();
+    }
+
+    @Test
+    void signInInTheSameSecondAsTheSignOutIsNotRevoked() {
+        UUID userId = UUID.randomUUID();
+        JwtTokenProvider provider = provider();
+
+        long signOutTime = System.currentTimeMillis();
+        revocationList.revokeUser(userId);
+        // Issued right away, almost always within the same second as the sign-out
+        JwtClaims claims = provider.parseToken(token(provider, userId));
+
+        // A whole-second "iat" would be truncated to before the sign-out
+        assertThat(claims.getIssuedAt().getTime()).isGreaterThanOrEqualTo(signOutTime);
+        assertThat(revocationList.isRevoked(claims)).isFalse();
+    }
+
+    @Test
+    void singleTokenRevocation() {
+        JwtClaims revoked = claims(UUID.randomUUID(), System.currentTimeMillis());
+        JwtClaims other = claims(revoked.getUserId(), System.currentTimeMillis());
+
+        revocationList.revokeToken(revoked);
+
+        assertThat(revocationList.isRevoked(revoked)).isTrue();
+        assertThat(revocationList.isRevoked(other)).isFalse();
+    }
+
+    private static JwtClaims claims(UUID userId, long issuedAt) {
+        return new JwtClaims(UUID.randomUUID(), "user", userId, "user@example.com", List.of("ROLE_LEARNER"),
+                new Date(issuedAt), new Date(issuedAt + EXPIRATION_MS));
+    }
+
+    private static String token(JwtTokenProvider provider, UUID userId) {
+        UserDetailsImpl user = new UserDetailsImpl(userId, "user", "user@example.com", "",
+                List.of(new SimpleGrantedAuthority("ROLE_LEARNER")));
+        return provider.generateToken(new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities()));
+    }
+
+    private static JwtTokenProvider provider() {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", "test-secret-".repeat(12));
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(provider, "verifiedTokenCache", new VerifiedTokenCache(false, 10, EXPIRATION_MS));
+        provider.init();
+        return provider;
+    }
+}
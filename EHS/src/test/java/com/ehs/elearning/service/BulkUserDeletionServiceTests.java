@@ -0,0 +1,194 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.model.MaterialProgress;
+import com.ehs.elearning.model.ModuleComponent;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.UserComponentProgress;
+import com.ehs.elearning.model.UserModuleProgress;
+import com.ehs.elearning.model.UserProgress;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.repository.MaterialProgressRepository;
+import com.ehs.elearning.repository.UserComponentProgressRepository;
+import com.ehs.elearning.repository.UserModuleProgressRepository;
+import com.ehs.elearning.repository.UserProgressRepository;
+import com.ehs.elearning.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Background deletion of users and their progress, including chunks that meet locked rows
+ */
+class BulkUserDeletionServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private BulkUserDeletionService deletionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MaterialProgressRepository materialProgressRepository;
+
+    @Autowired
+    private UserComponentProgressRepository componentProgressRepository;
+
+    @Autowired
+    private UserModuleProgressRepository moduleProgressRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TestData testData;
+
+    @AfterEach
+    void restoreSettings() {
+        ReflectionTestUtils.setField(deletionService, "chunkSize", 200);
+        ReflectionTestUtils.setField(deletionService, "lockTimeoutMs", 2000L);
+    }
+
+    @Test
+    void deletesUsersWithTheirProgressInChunks() throws Exception {
+        ReflectionTestUtils.setField(deletionService, "chunkSize", 2);
+        LearningMaterial material = testData.materialWithFile("unused.pdf");
+        ModuleComponent component = material.getComponent();
+        TrainingModule module = component.getTrainingModule();
+        Domain domain = module.getDomain();
+        List<Users> users = List.of(testData.user(Role.USER, domain), testData.user(Role.USER, domain),
+                testData.user(Role.USER));
+        for (Users user : users) {
+            materialProgressRepository.save(new MaterialProgress(material, user));
+            componentProgressRepository.save(new UserComponentProgress(user, component));
+            moduleProgressRepository.save(new UserModuleProgress(user, module));
+            userProgressRepository.save(new UserProgress(user, module, "MODULE_STARTED"));
+        }
+        Users kept = testData.user(Role.USER, domain);
+        moduleProgressRepository.save(new UserModuleProgress(kept, module));
+
+        BulkUserDeletionJob job = await(deletionService.startJob(users.stream().map(Users::getId).toList()));
+
+        assertThat(job.getStatus()).isEqualTo(BulkUserDeletionJob.Status.COMPLETED);
+        assertThat(job.getDeleted()).isEqualTo(3);
+        assertThat(job.getProcessedUsers()).isEqualTo(3);
+        for (Users user : users) {
+            assertThat(userRepository.existsById(user.getId())).isFalse();
+            for (String table : new String[] { "material_progress", "user_component_progress",
+                    "user_module_progress", "user_progress", "user_domains" }) {
+                assertThat(rowsOf(table, user)).as(table).isZero();
+            }
+        }
+        assertThat(userRepository.existsById(kept.getId())).isTrue();
+        assertThat(rowsOf("user_module_progress", kept)).isEqualTo(1);
+    }
+
+    @Test
+    void skipsModuleAuthorsAndCountsUnknownIds() throws Exception {
+        Users author = testData.materialWithFile("unused.pdf").getComponent().getTrainingModule().getCreatedBy();
+        Users learner = testData.user(Role.USER);
+        UUID unknown = UUID.randomUUID();
+
+        BulkUserDeletionJob job = await(deletionService.startJob(
+                List.of(author.getId(), learner.getId(), unknown, learner.getId())));
+
+        assertThat(job.getTotalUsers()).isEqualTo(3);
+        assertThat(job.getDeleted()).isEqualTo(1);
+        assertThat(job.getNotFound()).isEqualTo(1);
+        assertThat(job.getSkippedUserIds()).containsExactly(author.getId());
+        assertThat(job.getMessage()).isNotNull();
+        assertThat(userRepository.existsById(author.getId())).isTrue();
+        assertThat(userRepository.existsById(learner.getId())).isFalse();
+    }
+
+    @Test
+    void retriesChunkOnceTheLockIsReleased() throws Exception {
+        ReflectionTestUtils.setField(deletionService, "lockTimeoutMs", 100L);
+        Users user = testData.user(Role.USER);
+
+        BulkUserDeletionJob job;
+        try (Connection connection = lockUser(user)) {
+            job = deletionService.startJob(List.of(user.getId()));
+            // Long enough for the first attempt to time out
+            Thread.sleep(300);
+            connection.rollback();
+        }
+        await(job);
+
+        assertThat(job.getStatus()).isEqualTo(BulkUserDeletionJob.Status.COMPLETED);
+        assertThat(job.getDeleted()).isEqualTo(1);
+        assertThat(job.getFailed()).isZero();
+        assertThat(userRepository.existsById(user.getId())).isFalse();
+    }
+
+    @Test
+    void givesUpOnChunkThatStaysLocked() throws Exception {
+        ReflectionTestUtils.setField(deletionService, "lockTimeoutMs", 50L);
+        Users user = testData.user(Role.USER, testData.domain("Locked"));
+
+        BulkUserDeletionJob job;
+        try (Connection connection = lockUser(user)) {
+            job = await(deletionService.startJob(List.of(user.getId())));
+            connection.rollback();
+        }
+
+        assertThat(job.getStatus()).isEqualTo(BulkUserDeletionJob.Status.COMPLETED);
+        assertThat(job.getFailed()).isEqualTo(1);
+        assertThat(job.getDeleted()).isZero();
+        assertThat(userRepository.existsById(user.getId())).isTrue();
+        // Dependent deletes were rolled back with the chunk
+        assertThat(rowsOf("user_domains", user)).isEqualTo(1);
+    }
+
+    /**
+     * Another session holding the user's row, as a concurrent request would
+     */
+    private Connection lockUser(Users user) throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM users WHERE id = ? FOR UPDATE")) {
+            statement.setObject(1, user.getId());
+            statement.executeQuery().close();
+        }
+        return connection;
+    }
+
+    private int rowsOf(String table, Users user) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE user_id = ?",
+                Integer.class, user.getId());
+    }
+
+    private BulkUserDeletionJob await(BulkUserDeletionJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!isDone(job) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(isDone(job)).as("job finished").isTrue();
+        return job;
+    }
+
+    private static boolean isDone(BulkUserDeletionJob job) {
+        return job.getStatus() == BulkUserDeletionJob.Status.COMPLETED
+                || job.getStatus() == BulkUserDeletionJob.Status.FAILED;
+    }
+}
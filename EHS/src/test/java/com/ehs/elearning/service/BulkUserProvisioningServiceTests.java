@@ -0,0 +1,110 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkUserProvisioningServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private BulkUserProvisioningService provisioningService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void createsUsersWithHashedGeneratedPasswords() throws Exception {
+        String username = "bulk-" + TestData.unique();
+        Map<String, String> row = row(username, username + "@example.com");
+        row.put("role", "admin");
+        row.put("department", "Safety");
+
+        List<BulkUserJob.RowResult> results = provision(List.of(row));
+
+        BulkUserJob.RowResult result = results.get(0);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getPassword()).hasSize(10);
+        Users user = userRepository.findByUsername(username).orElseThrow();
+        assertThat(user.getRole()).isEqualTo(Role.ADMIN);
+        assertThat(user.getDepartment()).isEqualTo("Safety");
+        assertThat(passwordEncoder.matches(result.getPassword(), user.getPassword())).isTrue();
+    }
+
+    @Test
+    void rejectsRowsViolatingEntityConstraints() throws Exception {
+        String valid = "bulk-" + TestData.unique();
+        List<Map<String, String>> rows = List.of(
+                row(valid, valid + "@example.com"),
+                row("bulk-" + TestData.unique(), "not-an-email"),
+                row("   ", "blank-" + TestData.unique() + "@example.com"),
+                row("x".repeat(51), "long-" + TestData.unique() + "@example.com"),
+                row(null, null));
+
+        List<BulkUserJob.RowResult> results = provision(rows);
+
+        assertThat(results).filteredOn(BulkUserJob.RowResult::isSuccess)
+                .extracting(BulkUserJob.RowResult::getUsername).containsExactly(valid);
+        assertThat(message(results, 2)).contains("email");
+        assertThat(message(results, 3)).contains("username");
+        assertThat(message(results, 4)).contains("username");
+        assertThat(message(results, 5)).contains("username").contains("email");
+        assertThat(userRepository.existsByEmail("not-an-email")).isFalse();
+    }
+
+    @Test
+    void rejectsDuplicatesWithinTheBatchAndExistingUsers() throws Exception {
+        Users existing = testData.user(Role.USER);
+        String username = "bulk-" + TestData.unique();
+        List<Map<String, String>> rows = List.of(
+                row(username, username + "@example.com"),
+                row(username, "other-" + TestData.unique() + "@example.com"),
+                row(existing.getUsername(), "new-" + TestData.unique() + "@example.com"),
+                row("bulk-" + TestData.unique(), existing.getEmail()));
+
+        List<BulkUserJob.RowResult> results = provision(rows);
+
+        assertThat(results.stream().filter(BulkUserJob.RowResult::isSuccess).count()).isEqualTo(1);
+        assertThat(message(results, 2)).isEqualTo("Duplicate username or email in this upload");
+        assertThat(message(results, 3)).isEqualTo("User already exists");
+        assertThat(message(results, 4)).isEqualTo("User already exists");
+    }
+
+    private List<BulkUserJob.RowResult> provision(List<Map<String, String>> rows) throws Exception {
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (int i = 1; i <= rows.size(); i++) {
+            rowNumbers.add(i);
+        }
+        List<BulkUserJob.RowResult> results = new ArrayList<>();
+        provisioningService.provisionBatch(rows, rowNumbers, results::add);
+        return results;
+    }
+
+    private static String message(List<BulkUserJob.RowResult> results, int row) {
+        return results.stream().filter(result -> result.getRow() == row).findFirst().orElseThrow().getMessage();
+    }
+
+    private static Map<String, String> row(String username, String email) {
+        Map<String, String> row = new HashMap<>();
+        row.put("username", username);
+        row.put("email", email);
+        return row;
+    }
+}
@@ -0,0 +1,194 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.payload.response.TypeaheadSuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The typeahead index against an in-memory catalog standing in for the database
+ */
+class CatalogTypeaheadIndexTests {
+
+    private final Map<UUID, Module> publishedModules = new HashMap<>();
+    private final Map<UUID, String> domains = new HashMap<>();
+
+    private CatalogTypeaheadIndex index;
+    private UUID safetyDomain;
+    private UUID chemicalsDomain;
+
+    @BeforeEach
+    void createIndex() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // load(): every published module, then every domain
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            if (sql.contains("training_modules")) {
+                for (Map.Entry<UUID, Module> module : publishedModules.entrySet()) {
+                    handler.processRow(moduleRow(module.getKey(), module.getValue()));
+                }
+            } else {
+                for (Map.Entry<UUID, String> domain : domains.entrySet()) {
+                    handler.processRow(domainRow(domain.getKey(), domain.getValue()));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        // onCatalogChanged(): one module or domain by id
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(UUID.class))).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowMapper<?> mapper = invocation.getArgument(1);
+            UUID id = invocation.getArgument(2);
+            List<Object> rows = new ArrayList<>();
+            if (sql.contains("training_modules") && publishedModules.containsKey(id)) {
+                rows.add(mapper.mapRow(moduleRow(id, publishedModules.get(id)), 0));
+            } else if (sql.contains("domains") && domains.containsKey(id)) {
+                rows.add(mapper.mapRow(domainRow(id, domains.get(id)), 0));
+            }
+            return rows;
+        });
+
+        index = new CatalogTypeaheadIndex();
+        ReflectionTestUtils.setField(index, "jdbcTemplate", jdbcTemplate);
+
+        safetyDomain = domain("Workplace Safety");
+        chemicalsDomain = domain("Chemicals");
+        module("Fire Safety Basics", safetyDomain);
+        module("Fire Drills", safetyDomain);
+        module("Safe Handling of Solvents", chemicalsDomain);
+        module("Sécurité incendie", safetyDomain);
+        index.load();
+    }
+
+    @Test
+    void matchesPrefixesOfAnyWord() {
+        assertThat(titles(index.suggest("saf", null, 10)))
+                .containsExactly("Safe Handling of Solvents", "Workplace Safety", "Fire Safety Basics");
+        assertThat(titles(index.suggest("afe", null, 10))).isEmpty();
+    }
+
+    @Test
+    void everyWordTypedMustMatchAndTitlesStartingWithItComeFirst() {
+        assertThat(titles(index.suggest("fire b", null, 10))).containsExactly("Fire Safety Basics");
+        assertThat(titles(index.suggest("FIRE", null, 10))).containsExactly("Fire Drills", "Fire Safety Basics");
+        // A title starting with the text beats a shorter one that only contains it
+        assertThat(titles(index.suggest("safe", null, 10)).get(0)).isEqualTo("Safe Handling of Solvents");
+    }
+
+    @Test
+    void foldsCaseAndAccents() {
+        assertThat(titles(index.suggest("SECUR", null, 10))).containsExactly("Sécurité incendie");
+        assertThat(titles(index.suggest("sécu  inc", null, 10))).containsExactly("Sécurité incendie");
+    }
+
+    @Test
+    void restrictsModulesAndDomainsToTheGivenDomains() {
+        assertThat(titles(index.suggest("s", Set.of(chemicalsDomain), 10))).containsExactly("Safe Handling of Solvents");
+        assertThat(index.suggest("ch", Set.of(chemicalsDomain), 10)).extracting(TypeaheadSuggestion::getType)
+                .containsExactly(CatalogTypeaheadIndex.DOMAIN);
+        assertThat(index.suggest("ch", Set.of(safetyDomain), 10)).isEmpty();
+        assertThat(index.suggest("fire", Set.of(), 10)).isEmpty();
+    }
+
+    @Test
+    void otherDomainsDoNotUseUpTheCandidateBudget() {
+        UUID crowded = domain("Crowded");
+        // More than the lookup cap, and all sorted before the restricted user's module
+        for (int i = 0; i < 600; i++) {
+            module("Safe " + i, crowded);
+        }
+        UUID onlyOwn = module("Safety walk", chemicalsDomain);
+        index.load();
+
+        List<TypeaheadSuggestion> suggestions = index.suggest("saf", Set.of(chemicalsDomain), 10);
+
+        assertThat(suggestions).extracting(TypeaheadSuggestion::getId).contains(onlyOwn);
+    }
+
+    @Test
+    void followsCatalogChanges() {
+        UUID added = module("Ladder inspection", safetyDomain);
+        index.onCatalogChanged(CatalogChangedEvent.module(added));
+        assertThat(titles(index.suggest("ladder", null, 10))).containsExactly("Ladder inspection");
+
+        publishedModules.put(added, new Module("Scaffold inspection", safetyDomain));
+        index.onCatalogChanged(CatalogChangedEvent.module(added));
+        assertThat(index.suggest("ladder", null, 10)).isEmpty();
+        assertThat(titles(index.suggest("scaff", null, 10))).containsExactly("Scaffold inspection");
+
+        // Unpublished or deleted
+        publishedModules.remove(added);
+        index.onCatalogChanged(CatalogChangedEvent.module(added));
+        assertThat(index.suggest("scaff", null, 10)).isEmpty();
+
+        domains.put(chemicalsDomain, "Hazardous Substances");
+        index.onCatalogChanged(CatalogChangedEvent.domain(chemicalsDomain));
+        assertThat(index.suggest("chem", null, 10)).isEmpty();
+        assertThat(titles(index.suggest("hazard", null, 10))).containsExactly("Hazardous Substances");
+
+        domains.remove(chemicalsDomain);
+        index.onCatalogChanged(CatalogChangedEvent.domain(chemicalsDomain));
+        assertThat(index.suggest("hazard", null, 10)).isEmpty();
+    }
+
+    private UUID module(String title, UUID domainId) {
+        UUID id = UUID.randomUUID();
+        publishedModules.put(id, new Module(title, domainId));
+        return id;
+    }
+
+    private UUID domain(String name) {
+        UUID id = UUID.randomUUID();
+        domains.put(id, name);
+        return id;
+    }
+
+    private static List<String> titles(List<TypeaheadSuggestion> suggestions) {
+        return suggestions.stream().map(TypeaheadSuggestion::getTitle).toList();
+    }
+
+    private static ResultSet moduleRow(UUID id, Module module) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(id);
+        when(rs.getString("title")).thenReturn(module.title);
+        when(rs.getObject("domain_id", UUID.class)).thenReturn(module.domainId);
+        return rs;
+    }
+
+    private static ResultSet domainRow(UUID id, String name) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(id);
+        when(rs.getString("name")).thenReturn(name);
+        return rs;
+    }
+
+    private static final class Module {
+        private final String title;
+        private final UUID domainId;
+
+        private Module(String title, UUID domainId) {
+            this.title = title;
+            this.domainId = domainId;
+        }
+    }
+}
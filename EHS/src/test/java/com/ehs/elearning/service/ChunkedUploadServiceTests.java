@@ -0,0 +1,128 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.model.MaterialUpload;
+import com.ehs.elearning.model.ModuleComponent;
+import com.ehs.elearning.repository.MaterialUploadRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Resumable uploads whose chunks may reach different instances: only state in the database
+ * and the storage backend may be relied on
+ */
+class ChunkedUploadServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MaterialUploadRepository uploadRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    private ModuleComponent component;
+
+    @BeforeEach
+    void createComponent() {
+        component = testData.materialWithFile("unused.pdf").getComponent();
+    }
+
+    @Test
+    void completesWhenEarlierChunksWentToAnotherInstance() throws Exception {
+        byte[] content = ("resumable upload " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        MaterialUpload upload = startUpload(content.length);
+
+        chunkedUploadService.appendChunk(upload, 0, new ByteArrayInputStream(content, 0, 10));
+        // This instance never saw the first chunk, so it has no running digest
+        uploadDigests().clear();
+        ChunkedUploadService.ChunkResult result = chunkedUploadService.appendChunk(reload(upload), 10,
+                new ByteArrayInputStream(content, 10, content.length - 10));
+
+        LearningMaterial material = result.getMaterial();
+        assertThat(material).isNotNull();
+        String expectedName = HexFormat.of().formatHex(
+                fileStorageService.newContentDigest().digest(content)) + ".pdf";
+        assertThat(material.getFilePath()).isEqualTo(expectedName);
+        assertThat(Files.readAllBytes(fileStorageService.getLocalPath(expectedName).orElseThrow())).isEqualTo(content);
+        assertThat(uploadRepository.findById(upload.getId())).isEmpty();
+    }
+
+    @Test
+    void rejectsChunkWhileAnotherInstanceHoldsTheLease() throws Exception {
+        MaterialUpload upload = startUpload(100);
+        holdLease(upload, LocalDateTime.now().plusMinutes(5));
+
+        assertThatThrownBy(() -> chunkedUploadService.appendChunk(upload, 0, new ByteArrayInputStream(new byte[10])))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(chunkedUploadService.getOffset(upload)).isZero();
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndReleased() throws Exception {
+        MaterialUpload upload = startUpload(100);
+        holdLease(upload, LocalDateTime.now().minusMinutes(1));
+
+        ChunkedUploadService.ChunkResult result = chunkedUploadService.appendChunk(upload, 0,
+                new ByteArrayInputStream(new byte[10]));
+
+        assertThat(result.getOffset()).isEqualTo(10);
+        assertThat(reload(upload).getChunkLockedUntil()).isNull();
+    }
+
+    @Test
+    void cleanupSkipsUploadsWithLiveLease() throws Exception {
+        MaterialUpload leased = startUpload(100);
+        MaterialUpload idle = startUpload(100);
+        LocalDateTime longAgo = LocalDateTime.now().minusDays(3);
+        jdbcTemplate.update("UPDATE material_uploads SET last_activity_at = ? WHERE id IN (?, ?)",
+                longAgo, leased.getId(), idle.getId());
+        holdLease(leased, LocalDateTime.now().plusMinutes(5));
+
+        chunkedUploadService.cleanupAbandonedUploads();
+
+        assertThat(uploadRepository.findById(leased.getId())).isPresent();
+        assertThat(uploadRepository.findById(idle.getId())).isEmpty();
+    }
+
+    private MaterialUpload startUpload(long length) throws Exception {
+        return chunkedUploadService.createUpload(component.getId(), "manual.pdf", length, "PDF",
+                "Upload " + TestData.unique(), null, null);
+    }
+
+    private MaterialUpload reload(MaterialUpload upload) {
+        return uploadRepository.findById(upload.getId()).orElseThrow();
+    }
+
+    private void holdLease(MaterialUpload upload, LocalDateTime until) {
+        jdbcTemplate.update("UPDATE material_uploads SET chunk_locked_until = ? WHERE id = ?", until, upload.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<UUID, ?> uploadDigests() {
+        return (Map<UUID, ?>) ReflectionTestUtils.getField(chunkedUploadService, "uploadDigests");
+    }
+}
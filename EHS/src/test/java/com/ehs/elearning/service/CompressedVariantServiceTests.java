@@ -0,0 +1,109 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compressed variants are made after upload, off the request thread, and recorded on every
+ * material referencing the file
+ */
+class CompressedVariantServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private CompressedVariantService compressedVariantService;
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void recordsVariantsOnceCreatedInTheBackground() throws Exception {
+        String fileName = store(compressibleText());
+        LearningMaterial material = testData.materialWithFile(fileName);
+
+        materialService.attachFile(material, fileName, "notes.txt");
+        // Served as stored until the variants exist
+        assertThat(material.getCompressedEncodings()).isNull();
+        materialRepository.save(material);
+        awaitVariants(fileName);
+
+        assertThat(reload(material).getCompressedEncodings()).contains(CompressedVariantService.ENCODING_GZIP);
+        assertThat(fileStorageService.fileExists(
+                fileStorageService.getDerivedFileName(fileName, CompressedVariantService.ENCODING_GZIP))).isTrue();
+    }
+
+    @Test
+    void recordsNoEncodingsWhenCompressionDoesNotPay() throws Exception {
+        byte[] noise = new byte[20_000];
+        new Random(7).nextBytes(noise);
+        String fileName = store(noise);
+        LearningMaterial material = testData.materialWithFile(fileName);
+        material.setContentType("text/plain");
+        materialRepository.save(material);
+
+        compressedVariantService.scheduleVariants(fileName, "text/plain");
+        awaitVariants(fileName);
+
+        assertThat(reload(material).getCompressedEncodings()).isEmpty();
+    }
+
+    @Test
+    void backfillRecordsMaterialsSavedAfterTheirFileWasDone() throws Exception {
+        String fileName = store(compressibleText());
+        LearningMaterial first = testData.materialWithFile(fileName);
+        first.setContentType("text/plain");
+        materialRepository.save(first);
+        compressedVariantService.scheduleVariants(fileName, "text/plain");
+        awaitVariants(fileName);
+
+        // A material sharing the file, saved only after its variants were recorded
+        LearningMaterial second = testData.materialWithFile(fileName);
+        second.setContentType("text/plain");
+        materialRepository.save(second);
+
+        compressedVariantService.backfillVariants();
+        awaitVariants(fileName);
+
+        assertThat(reload(second).getCompressedEncodings()).isEqualTo(reload(first).getCompressedEncodings());
+    }
+
+    private void awaitVariants(String fileName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (compressedVariantService.isPending(fileName) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(compressedVariantService.isPending(fileName)).isFalse();
+    }
+
+    private LearningMaterial reload(LearningMaterial material) {
+        return materialRepository.findById(material.getId()).orElseThrow();
+    }
+
+    private String store(byte[] content) throws Exception {
+        return fileStorageService.storeFile(new MockMultipartFile("file", "notes.txt", "text/plain", content));
+    }
+
+    private static byte[] compressibleText() {
+        return ("Wear eye protection in the workshop. " + UUID.randomUUID() + "\n").repeat(500)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.model.ModuleComponent;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.SearchHitResponse;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.ehs.elearning.repository.TrainingModuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Full-text search against the schema of the db/content-search.sql migration
+ */
+class ContentSearchServiceTests extends PostgresIntegrationTest {
+
+    private static boolean migrated;
+
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    @Autowired
+    private TrainingModuleRepository moduleRepository;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TestData testData;
+
+    // A made-up word, so only this test's rows match
+    private String word;
+    private Domain domain;
+    private Users author;
+
+    @BeforeEach
+    void applyMigration() {
+        if (!migrated) {
+            // Idempotent, so a database that already has the columns is fine
+            new ResourceDatabasePopulator(new ClassPathResource("db/content-search.sql")).execute(dataSource);
+            migrated = true;
+        }
+        word = TestData.uniqueWord();
+        domain = testData.domain("Search");
+        author = testData.user(Role.ADMIN, domain);
+    }
+
+    @Test
+    void titleMatchesRankAboveDescriptionMatches() {
+        TrainingModule inDescription = module("Ladder safety", "How to inspect a " + word + " before use",
+                ModuleStatus.PUBLISHED);
+        TrainingModule inTitle = module(word + " inspection", "Yearly checks", ModuleStatus.PUBLISHED);
+
+        List<SearchHitResponse> hits = search(true);
+
+        assertThat(hits).extracting(SearchHitResponse::getId)
+                .containsExactly(inTitle.getId(), inDescription.getId());
+        assertThat(hits.get(0).getRank()).isGreaterThan(hits.get(1).getRank());
+        assertThat(hits).extracting(SearchHitResponse::getType).containsOnly(ContentSearchService.MODULE);
+    }
+
+    @Test
+    void learnersOnlyFindPublishedContent() {
+        TrainingModule published = module(word + " basics", null, ModuleStatus.PUBLISHED);
+        TrainingModule draft = module(word + " advanced", null, ModuleStatus.DRAFT);
+        ModuleComponent draftComponent = testData.component(draft, word + " chapter");
+
+        assertThat(search(false)).extracting(SearchHitResponse::getId).containsExactly(published.getId());
+        assertThat(search(true)).extracting(SearchHitResponse::getId)
+                .containsExactlyInAnyOrder(published.getId(), draft.getId(), draftComponent.getId());
+    }
+
+    @Test
+    void materialContentIsSearchedWithoutItsMarkup() {
+        TrainingModule module = module("Chemical storage", null, ModuleStatus.PUBLISHED);
+        LearningMaterial material = testData.material(testData.component(module, "Reading"), "Storage rules", null);
+        material.setContent("<p>Store <b>" + word + "</b> away from heat</p>");
+        materialRepository.save(material);
+
+        List<SearchHitResponse> hits = search(false);
+
+        assertThat(hits).extracting(SearchHitResponse::getId).containsExactly(material.getId());
+        assertThat(hits.get(0).getModuleId()).isEqualTo(module.getId());
+        assertThat(hits.get(0).getSnippet()).contains("<mark>" + word + "</mark>").doesNotContain("<b>", "<p>");
+    }
+
+    @Test
+    void snippetsAreEscapedApartFromTheMarks() {
+        // Not closed, so tag stripping leaves it in place
+        module("Pressure vessels", "Keep the " + word + " valve <img src=x onerror=alert(1) & \"vent\" it",
+                ModuleStatus.PUBLISHED);
+
+        String snippet = search(false).get(0).getSnippet();
+
+        assertThat(snippet).contains("<mark>" + word + "</mark>")
+                .contains("&lt;img")
+                .contains("&amp;")
+                .contains("&quot;vent")
+                .doesNotContain("<img");
+    }
+
+    @Test
+    void sentinelCharactersInContentDoNotBecomeMarks() {
+        module("Signs", "Warning \uE000sign\uE001 next to the " + word, ModuleStatus.PUBLISHED);
+
+        String snippet = search(false).get(0).getSnippet();
+
+        assertThat(snippet).isEqualTo("Warning sign next to the <mark>" + word + "</mark>");
+    }
+
+    private List<SearchHitResponse> search(boolean includeUnpublished) {
+        return contentSearchService.search(word, ContentSearchService.TYPES, includeUnpublished, 20);
+    }
+
+    private TrainingModule module(String title, String description, ModuleStatus status) {
+        TrainingModule module = testData.module(title, domain, author, status);
+        module.setDescription(description);
+        return moduleRepository.save(module);
+    }
+}
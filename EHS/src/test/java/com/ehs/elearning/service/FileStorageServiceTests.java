@@ -0,0 +1,189 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.LearningMaterial;
+import com.ehs.elearning.repository.LearningMaterialRepository;
+import com.ehs.elearning.service.storage.StoredFileInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Content-addressed storage: identical uploads share one file, and a shared file is only
+ * deleted once nothing references or has just reused it
+ */
+class FileStorageServiceTests extends PostgresIntegrationTest {
+
+    // Older than the default sweeper grace period of 60 minutes
+    private static final Duration OLD = Duration.ofHours(2);
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    @Autowired
+    private StorageMaintenanceService storageMaintenanceService;
+
+    @Autowired
+    private LearningMaterialRepository materialRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void identicalUploadsShareOneFile() throws Exception {
+        byte[] content = uniqueContent();
+
+        String first = fileStorageService.storeFile(upload("a.pdf", content));
+        String second = fileStorageService.storeFile(upload("b.PDF", content));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first).endsWith(".pdf").hasSize(64 + 4);
+        assertThat(Files.readAllBytes(localPath(first))).isEqualTo(content);
+    }
+
+    @Test
+    void differentContentGetsDifferentFiles() throws Exception {
+        String first = fileStorageService.storeFile(upload("a.txt", uniqueContent()));
+        String second = fileStorageService.storeFile(upload("a.txt", uniqueContent()));
+
+        assertThat(second).isNotEqualTo(first);
+    }
+
+    @Test
+    void releaseKeepsFileStillReferenced() throws Exception {
+        String fileName = fileStorageService.storeFile(upload("shared.pdf", uniqueContent()));
+        testData.materialWithFile(fileName);
+        age(fileName);
+
+        materialService.releaseFile(fileName);
+
+        assertThat(fileStorageService.fileExists(fileName)).isTrue();
+    }
+
+    @Test
+    void releaseDeletesUnreferencedFile() throws Exception {
+        String fileName = fileStorageService.storeFile(upload("gone.pdf", uniqueContent()));
+        LearningMaterial material = testData.materialWithFile(fileName);
+        age(fileName);
+
+        materialRepository.delete(material);
+        materialService.releaseFile(fileName);
+
+        assertThat(fileStorageService.fileExists(fileName)).isFalse();
+    }
+
+    @Test
+    void reuseKeepsFileWithoutChangingItsValidators() throws Exception {
+        byte[] content = uniqueContent();
+        String fileName = fileStorageService.storeFile(upload("reused.pdf", content));
+        age(fileName);
+        StoredFileInfo before = fileStorageService.getFileInfo(fileName);
+
+        // An upload of the same bytes whose material is not saved yet
+        fileStorageService.storeFile(upload("again.pdf", content));
+        materialService.releaseFile(fileName);
+
+        assertThat(fileStorageService.fileExists(fileName)).isTrue();
+        StoredFileInfo after = fileStorageService.getFileInfo(fileName);
+        assertThat(after.getETag()).isEqualTo(before.getETag());
+        assertThat(after.getLastModified()).isEqualTo(before.getLastModified());
+    }
+
+    @Test
+    void concurrentReuseAndReleaseNeverLoseTheFile() throws Exception {
+        byte[] content = uniqueContent();
+        String fileName = fileStorageService.storeFile(upload("race.pdf", content));
+
+        for (int i = 0; i < 20; i++) {
+            age(fileName);
+            CompletableFuture<Void> release = CompletableFuture.runAsync(() -> {
+                try {
+                    materialService.releaseFile(fileName);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            String stored = fileStorageService.storeFile(upload("race.pdf", content));
+            release.join();
+
+            // Whichever ran first, the upload that returned must find its file
+            assertThat(fileStorageService.fileExists(stored)).as("iteration %d", i).isTrue();
+        }
+    }
+
+    @Test
+    void sweeperReclaimsOrphansWithTheirDerivedFiles() throws Exception {
+        String orphan = fileStorageService.storeFile(upload("orphan.pdf", uniqueContent()));
+        String orphanVariant = storeDerived(orphan, "gzip");
+        String kept = fileStorageService.storeFile(upload("kept.pdf", uniqueContent()));
+        String keptVariant = storeDerived(kept, "gzip");
+        String recent = fileStorageService.storeFile(upload("recent.pdf", uniqueContent()));
+        testData.materialWithFile(kept);
+        for (String fileName : new String[] { orphan, orphanVariant, kept, keptVariant }) {
+            age(fileName);
+        }
+
+        ReflectionTestUtils.setField(storageMaintenanceService, "sweeperEnabled", true);
+        try {
+            storageMaintenanceService.sweepOrphanedFiles();
+        } finally {
+            ReflectionTestUtils.setField(storageMaintenanceService, "sweeperEnabled", false);
+        }
+
+        assertThat(fileStorageService.fileExists(orphan)).isFalse();
+        assertThat(fileStorageService.fileExists(orphanVariant)).isFalse();
+        assertThat(fileStorageService.fileExists(kept)).isTrue();
+        assertThat(fileStorageService.fileExists(keptVariant)).isTrue();
+        assertThat(fileStorageService.fileExists(recent)).isTrue();
+    }
+
+    private String storeDerived(String fileName, String variant) throws Exception {
+        String derivedFileName = fileStorageService.getDerivedFileName(fileName, variant);
+        Path staging = fileStorageService.createStagingFile();
+        Files.writeString(staging, "derived from " + fileName);
+        fileStorageService.storeDerivedFile(derivedFileName, staging);
+        return derivedFileName;
+    }
+
+    /**
+     * Make a file, and any reuse of it, older than the grace period
+     */
+    private void age(String fileName) throws Exception {
+        long old = System.currentTimeMillis() - OLD.toMillis();
+        Files.setLastModifiedTime(localPath(fileName), FileTime.fromMillis(old));
+        jdbcTemplate.update("UPDATE stored_file_reuses SET reused_at = ? WHERE file_name = ?",
+                LocalDateTime.now().minus(OLD), fileName);
+    }
+
+    private Path localPath(String fileName) {
+        return fileStorageService.getLocalPath(fileName).orElseThrow();
+    }
+
+    private static byte[] uniqueContent() {
+        return ("stored file " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MockMultipartFile upload(String originalName, byte[] content) {
+        return new MockMultipartFile("file", originalName, "application/octet-stream", content);
+    }
+}
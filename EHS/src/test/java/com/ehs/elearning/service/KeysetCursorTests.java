@@ -0,0 +1,54 @@
+package com.ehs.elearning.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTests {
+
+    @Test
+    void tokenKeepsSortOrderAndPosition() {
+        UUID id = UUID.randomUUID();
+        // The value goes last in the token, so it may contain the separator
+        KeysetCursor cursor = new KeysetCursor("title", false, "Line one\nline two", id);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.getSortBy()).isEqualTo("title");
+        assertThat(decoded.isAscending()).isFalse();
+        assertThat(decoded.encode()).isEqualTo(cursor.encode());
+        assertThat(cursor.encode()).doesNotContain("=", "+", "/");
+    }
+
+    @Test
+    void timestampValuesSurviveTheToken() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000);
+        KeysetCursor cursor = new KeysetCursor("createdAt", true, createdAt, UUID.randomUUID());
+
+        String raw = new String(Base64.getUrlDecoder().decode(KeysetCursor.decode(cursor.encode()).encode()));
+
+        assertThat(raw).endsWith("\n" + createdAt);
+    }
+
+    @Test
+    void emptyTokenStandsForTheFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("")).isNull();
+    }
+
+    @Test
+    void rejectsTokensItDidNotProduce() {
+        String missingParts = Base64.getUrlEncoder().encodeToString("title\na".getBytes());
+        String badId = Base64.getUrlEncoder().encodeToString("title\na\nnot-a-uuid\nvalue".getBytes());
+
+        for (String token : new String[] { "not base64!", missingParts, badId }) {
+            assertThatThrownBy(() -> KeysetCursor.decode(token))
+                    .as(token).isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Domain;
+import com.ehs.elearning.model.ModuleStatus;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.model.TrainingModule;
+import com.ehs.elearning.model.Users;
+import com.ehs.elearning.payload.response.ModuleSummaryResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Module listings: each filter narrows the result, and a page is one statement no matter
+ * how many modules, domains and authors it holds
+ */
+class ModuleQueryServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private ModuleQueryService moduleQueryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    // Module titles carry it, so queries only see this test's modules
+    private String tag;
+    private Domain domain;
+    private Domain otherDomain;
+    private Users author;
+    private Users otherAuthor;
+
+    @BeforeEach
+    void createAuthors() {
+        tag = "mq" + TestData.unique();
+        domain = testData.domain("Listing");
+        otherDomain = testData.domain("Listing");
+        author = testData.user(Role.ADMIN, domain);
+        otherAuthor = testData.user(Role.ADMIN, otherDomain);
+    }
+
+    @Test
+    void combinedFiltersKeepOnlyModulesMatchingAll() {
+        TrainingModule match = module("Fire safety", domain, author, ModuleStatus.PUBLISHED, 5);
+        module("Fire safety", domain, author, ModuleStatus.DRAFT, 5);
+        module("Fire safety", otherDomain, author, ModuleStatus.PUBLISHED, 5);
+        module("Fire safety", domain, otherAuthor, ModuleStatus.PUBLISHED, 5);
+        module("Fire safety", domain, author, ModuleStatus.PUBLISHED, 40);
+        module("Chemical handling", domain, author, ModuleStatus.PUBLISHED, 5);
+
+        ModuleQuery query = query("fire SAFETY");
+        query.setDomainId(domain.getId());
+        query.setDomainIds(Set.of(domain.getId(), otherDomain.getId()));
+        query.setStatus(ModuleStatus.PUBLISHED);
+        query.setCreatedBy(author.getId());
+        query.setCreatedFrom(LocalDateTime.now().minusDays(10));
+        query.setCreatedBefore(LocalDateTime.now().minusDays(1));
+
+        assertThat(moduleQueryService.findPage(query, PageRequest.of(0, 20)).getContent())
+                .extracting(ModuleSummaryResponse::getId).containsExactly(match.getId());
+    }
+
+    @Test
+    void assignedDomainsRestrictTheListing() {
+        module("In domain", domain, author, ModuleStatus.PUBLISHED, 1);
+        module("Elsewhere", otherDomain, otherAuthor, ModuleStatus.PUBLISHED, 1);
+
+        ModuleQuery assigned = query(null);
+        assigned.setDomainIds(Set.of(domain.getId()));
+        ModuleQuery unassigned = query(null);
+        unassigned.setDomainIds(Set.of());
+
+        assertThat(moduleQueryService.findPage(assigned, PageRequest.of(0, 20)).getContent())
+                .extracting(ModuleSummaryResponse::getTitle).containsExactly(tag + " In domain");
+        assertThat(moduleQueryService.findPage(unassigned, PageRequest.of(0, 20)).getTotalElements()).isZero();
+    }
+
+    @Test
+    void titleWildcardsAreMatchedLiterally() {
+        module("Save 50% of incidents", domain, author, ModuleStatus.PUBLISHED, 1);
+        module("Save 500 hours", domain, author, ModuleStatus.PUBLISHED, 1);
+        module("Snake_case naming", domain, author, ModuleStatus.PUBLISHED, 1);
+        module("Snakes case", domain, author, ModuleStatus.PUBLISHED, 1);
+
+        assertThat(moduleQueryService.findPage(query("Save 50%"), PageRequest.of(0, 20)).getContent())
+                .extracting(ModuleSummaryResponse::getTitle).containsExactly(tag + " Save 50% of incidents");
+        assertThat(moduleQueryService.findPage(query("Snake_"), PageRequest.of(0, 20)).getContent())
+                .extracting(ModuleSummaryResponse::getTitle).containsExactly(tag + " Snake_case naming");
+    }
+
+    @Test
+    void pageIsOneStatementWithDomainAndAuthor() {
+        for (int i = 0; i < 6; i++) {
+            module("Module " + i, i % 2 == 0 ? domain : otherDomain, i % 3 == 0 ? author : otherAuthor,
+                    ModuleStatus.PUBLISHED, 1);
+        }
+        PageRequest firstPage = PageRequest.of(0, 4, Sort.by("title"));
+
+        Statistics statistics = statistics();
+        Slice<ModuleSummaryResponse> slice = moduleQueryService.find(query(null), firstPage, false);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(slice.getContent()).hasSize(4);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(slice.getContent().get(0).getDomain().getName()).isEqualTo(domain.getName());
+        assertThat(slice.getContent().get(0).getCreatedBy().getUsername()).isEqualTo(author.getUsername());
+
+        // Totals add the count query, and only when the page is full
+        statistics = statistics();
+        Page<ModuleSummaryResponse> page = moduleQueryService.findPage(query(null), firstPage);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(page.getTotalElements()).isEqualTo(6);
+
+        statistics = statistics();
+        moduleQueryService.findPage(query(null), PageRequest.of(0, 20));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private ModuleQuery query(String title) {
+        ModuleQuery query = new ModuleQuery();
+        query.setTitle(title != null ? tag + " " + title : tag);
+        return query;
+    }
+
+    private TrainingModule module(String title, Domain domain, Users author, ModuleStatus status, int daysAgo) {
+        TrainingModule module = testData.module(tag + " " + title, domain, author, status);
+        jdbcTemplate.update("UPDATE training_modules SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusDays(daysAgo), module.getId());
+        return module;
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
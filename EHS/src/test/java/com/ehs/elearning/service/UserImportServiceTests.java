@@ -0,0 +1,140 @@
+package com.ehs.elearning.service;
+
+import com.ehs.elearning.PostgresIntegrationTest;
+import com.ehs.elearning.TestData;
+import com.ehs.elearning.model.Role;
+import com.ehs.elearning.repository.UserRepository;
+import com.opencsv.CSVReader;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * User imports through the endpoint, reading back the streamed CSV report
+ */
+@WithMockUser(roles = "ADMIN")
+class UserImportServiceTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void reportsEachCsvRowByItsLineNumber() throws Exception {
+        String valid = "import-" + TestData.unique();
+        String invalid = "import-" + TestData.unique();
+        String csv = "User Name,E-mail,Role\n"
+                + valid + "," + valid + "@example.com,admin\n"
+                + "\n"
+                + invalid + ",not-an-email,user\n";
+
+        List<String[]> report = importFile("users.csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(report).hasSize(3);
+        assertThat(report.get(0)).containsExactly("row", "username", "email", "role", "password", "status", "message");
+        assertThat(line(report, 2)[1]).isEqualTo(valid);
+        assertThat(line(report, 2)[4]).hasSize(10);
+        assertThat(line(report, 2)[5]).isEqualTo("success");
+        assertThat(line(report, 4)[5]).isEqualTo("error");
+        assertThat(line(report, 4)[6]).contains("email");
+        assertThat(userRepository.findByUsername(valid).orElseThrow().getRole()).isEqualTo(Role.ADMIN);
+        assertThat(userRepository.findByUsername(invalid)).isEmpty();
+    }
+
+    @Test
+    void escapesValuesSpreadsheetsWouldEvaluate() throws Exception {
+        String username = "=HYPERLINK(\"http://example.com\")" + TestData.unique();
+        String email = "-import" + TestData.unique() + "@example.com";
+        String csv = "username,email,role\n"
+                + "\"" + username.replace("\"", "\"\"") + "\"," + email + ",user\n"
+                + "@SUM(1)" + TestData.unique() + ",not-an-email,user\n";
+
+        List<String[]> report = importFile("users.csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(line(report, 2)[1]).isEqualTo("'" + username);
+        assertThat(line(report, 2)[2]).isEqualTo("'" + email);
+        assertThat(line(report, 2)[4]).matches("[A-Za-z0-9].*");
+        assertThat(line(report, 3)[1]).startsWith("'@SUM(1)");
+        // The stored values are not changed
+        assertThat(userRepository.findByUsername(username)).isPresent();
+    }
+
+    @Test
+    void importsTheFirstSheetOfASpreadsheet() throws Exception {
+        String username = "import-" + TestData.unique();
+        ByteArrayOutputStream workbookBytes = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Users");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Email");
+            header.createCell(2).setCellValue("Username");
+            // Row 2 is left empty; the empty cell in column B is not reported by the parser
+            Row row = sheet.createRow(2);
+            row.createCell(0).setCellValue(username + "@example.com");
+            row.createCell(2).setCellValue(username);
+            workbook.write(workbookBytes);
+        }
+
+        List<String[]> report = importFile("users.xlsx", workbookBytes.toByteArray());
+
+        assertThat(report).hasSize(2);
+        assertThat(line(report, 3)[5]).isEqualTo("success");
+        assertThat(userRepository.findByUsername(username)).isPresent();
+    }
+
+    @Test
+    void headerOnlyFileGetsAnEmptyReport() throws Exception {
+        List<String[]> report = importFile("users.csv", "username,email\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(report).hasSize(1);
+        assertThat(report.get(0)[0]).isEqualTo("row");
+    }
+
+    @Test
+    void rejectsFileWithoutUsernameAndEmailColumns() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv",
+                "name,mail\nsomeone,someone@example.com\n".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/api/users/import").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("The first row must be a header with username and email columns"));
+    }
+
+    // Failed rows of a batch are reported before the users it created
+    private static String[] line(List<String[]> report, int row) {
+        return report.stream().filter(line -> line[0].equals(String.valueOf(row))).findFirst().orElseThrow();
+    }
+
+    private List<String[]> importFile(String originalName, byte[] content) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", originalName, "application/octet-stream", content);
+        MvcResult result = mockMvc.perform(multipart("/api/users/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn();
+        try (CSVReader reader = new CSVReader(new StringReader(
+                result.getResponse().getContentAsString(StandardCharsets.UTF_8)))) {
+            return reader.readAll();
+        }
+    }
+}
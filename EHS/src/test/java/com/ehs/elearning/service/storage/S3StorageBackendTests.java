@@ -0,0 +1,247 @@
+package com.ehs.elearning.service.storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MinIOContainer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The S3 backend against a real S3 implementation: a MinIO container, or the server given with
+ * {@code -Dehs.test.s3-endpoint=...} (plus {@code ehs.test.s3-access-key} and
+ * {@code ehs.test.s3-secret-key}). Without either the tests are skipped.
+ *
+ * Two backend instances stand in for two application instances sharing the bucket.
+ */
+class S3StorageBackendTests {
+
+    private static final String EXTERNAL_ENDPOINT = System.getProperty("ehs.test.s3-endpoint");
+
+    // Larger than the multipart part size, so chunks cross part boundaries
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private static MinIOContainer minio;
+    private static S3Client s3Client;
+    private static String bucket;
+    private static S3StorageBackend firstInstance;
+    private static S3StorageBackend secondInstance;
+
+    @BeforeAll
+    static void startStore() {
+        String endpoint = EXTERNAL_ENDPOINT;
+        String accessKey = System.getProperty("ehs.test.s3-access-key", "test");
+        String secretKey = System.getProperty("ehs.test.s3-secret-key", "test");
+        if (endpoint == null) {
+            Assumptions.assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+                    "Needs Docker or -Dehs.test.s3-endpoint pointing at an S3-compatible server");
+            minio = new MinIOContainer("minio/minio:RELEASE.2023-09-04T19-57-37Z");
+            minio.start();
+            endpoint = minio.getS3URL();
+            accessKey = minio.getUserName();
+            secretKey = minio.getPassword();
+        }
+
+        bucket = "ehs-test-" + UUID.randomUUID().toString().substring(0, 8);
+        s3Client = S3Client.builder()
+                .region(Region.US_EAST_1)
+                .endpointOverride(URI.create(endpoint))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .forcePathStyle(true)
+                .build();
+        s3Client.createBucket(request -> request.bucket(bucket));
+
+        firstInstance = new S3StorageBackend(bucket, "us-east-1", endpoint, accessKey, secretKey, true);
+        secondInstance = new S3StorageBackend(bucket, "us-east-1", endpoint, accessKey, secretKey, true);
+    }
+
+    @AfterAll
+    static void stopStore() {
+        if (firstInstance != null) {
+            firstInstance.close();
+            secondInstance.close();
+            s3Client.close();
+        }
+        if (minio != null) {
+            minio.stop();
+        }
+    }
+
+    @Test
+    void smallUploadInSeveralChunks() throws Exception {
+        byte[] content = randomBytes(100_000);
+        String key = newKey();
+
+        appendAll(key, content, 30_000);
+        firstInstance.completePartial(key);
+
+        assertThat(readPartial(key)).isEqualTo(content);
+    }
+
+    @Test
+    void chunksContinueOnAnotherInstanceAcrossParts() throws Exception {
+        byte[] content = randomBytes(2 * PART_SIZE + 1_234_567);
+        String key = newKey();
+
+        // Alternate instances, with chunks that do not line up with parts
+        long offset = 0;
+        int chunkSize = 3 * 1024 * 1024 + 17;
+        boolean first = true;
+        while (offset < content.length) {
+            S3StorageBackend backend = first ? firstInstance : secondInstance;
+            assertThat(backend.getPartialSize(key)).isEqualTo(offset);
+            offset = append(backend, key, content, offset, chunkSize);
+            first = !first;
+        }
+        secondInstance.completePartial(key);
+
+        assertThat(readPartial(key)).isEqualTo(content);
+    }
+
+    @Test
+    void interruptedChunkKeepsTheBytesReceived() throws Exception {
+        byte[] content = randomBytes(PART_SIZE + 500_000);
+        String key = newKey();
+        int receivedBeforeFailure = PART_SIZE + 100_000;
+
+        InputStream failing = new FailingInputStream(content, receivedBeforeFailure);
+        assertThatThrownBy(() -> firstInstance.appendPartial(key, 0, content.length, failing))
+                .isInstanceOf(IOException.class);
+
+        assertThat(secondInstance.getPartialSize(key)).isEqualTo(receivedBeforeFailure);
+        append(secondInstance, key, content, receivedBeforeFailure, content.length);
+        secondInstance.completePartial(key);
+        assertThat(readPartial(key)).isEqualTo(content);
+    }
+
+    @Test
+    void rejectsChunkAtWrongOffset() throws Exception {
+        byte[] content = randomBytes(10_000);
+        String key = newKey();
+        append(firstInstance, key, content, 0, 4_000);
+
+        assertThatThrownBy(() -> secondInstance.appendPartial(key, 2_000, 8_000,
+                new ByteArrayInputStream(content, 2_000, 8_000)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("offset mismatch");
+        assertThat(firstInstance.getPartialSize(key)).isEqualTo(4_000);
+    }
+
+    @Test
+    void storePartialMovesTheUploadToTheStoredFile() throws Exception {
+        byte[] content = randomBytes(PART_SIZE + 10);
+        String key = newKey();
+        String storedKey = UUID.randomUUID() + ".bin";
+        appendAll(key, content, PART_SIZE / 2);
+        firstInstance.completePartial(key);
+
+        secondInstance.storePartial(key, storedKey);
+
+        assertThat(firstInstance.stat(storedKey).getSize()).isEqualTo(content.length);
+        try (InputStream in = firstInstance.openStream(storedKey, 0, content.length)) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(stagingObjects(key)).isEmpty();
+    }
+
+    @Test
+    void deletePartialRemovesPartsAndTail() throws Exception {
+        byte[] content = randomBytes(PART_SIZE + 300_000);
+        String key = newKey();
+        append(firstInstance, key, content, 0, content.length - 1);
+
+        secondInstance.deletePartial(key);
+
+        assertThat(firstInstance.getPartialSize(key)).isZero();
+        assertThat(stagingObjects(key)).isEmpty();
+        assertThat(s3Client.listMultipartUploads(ListMultipartUploadsRequest.builder()
+                .bucket(bucket).prefix("staging/" + key).build()).uploads()).isEmpty();
+    }
+
+    private static void appendAll(String key, byte[] content, int chunkSize) throws IOException {
+        long offset = 0;
+        while (offset < content.length) {
+            offset = append(firstInstance, key, content, offset, chunkSize);
+        }
+    }
+
+    private static long append(S3StorageBackend backend, String key, byte[] content, long offset, int chunkSize)
+            throws IOException {
+        int length = (int) Math.min(chunkSize, content.length - offset);
+        long newOffset = backend.appendPartial(key, offset, length,
+                new ByteArrayInputStream(content, (int) offset, length));
+        assertThat(newOffset).isEqualTo(offset + length);
+        return newOffset;
+    }
+
+    private static byte[] readPartial(String key) throws IOException {
+        try (InputStream in = secondInstance.openPartial(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static List<String> stagingObjects(String key) {
+        return s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                        .bucket(bucket).prefix("staging/" + key).build())
+                .contents().stream().map(S3Object::key).toList();
+    }
+
+    private static String newKey() {
+        return UUID.randomUUID() + ".bin";
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A request body whose connection drops after some bytes
+     */
+    private static class FailingInputStream extends InputStream {
+        private final ByteArrayInputStream delegate;
+        private int remaining;
+
+        FailingInputStream(byte[] content, int failAfter) {
+            this.delegate = new ByteArrayInputStream(content);
+            this.remaining = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                throw new IOException("Connection reset");
+            }
+            int read = delegate.read(b, off, Math.min(len, remaining));
+            remaining -= read;
+            return read;
+        }
+    }
+}